@@ -16,7 +16,9 @@ public class EcsEntity implements EcsCleanable {
     private long destroyTime = -1;
     private final EcsEntityManager ecsEntityManager;
     private EntityArchetype archetype = EntityArchetype.EMPTY_INSTANCE;
-    private final Map<Class<? extends EcsComponent>, EcsComponent> components = new HashMap<>();
+    private int row = -1;
+    // 兼容旧的先构造后 init() 的用法，init() 之后置空
+    private Collection<? extends EcsComponent> pendingComponents;
 
     public EcsEntity(EcsEntityManager ecsEntityManager, int index, int type) {
         this.ecsEntityManager = ecsEntityManager;
@@ -24,38 +26,58 @@ public class EcsEntity implements EcsCleanable {
         this.type = type;
     }
 
+    /**
+     * @deprecated 组件已改为存储在原型的列中，实体不再持有组件。
+     * 使用 {@link #EcsEntity(EcsEntityManager, int, int)} 构造后调用 {@link #init(Collection)}
+     */
+    @Deprecated
     public EcsEntity(EcsEntityManager ecsEntityManager, int index, int type, Collection<? extends EcsComponent> components) {
-        this.ecsEntityManager = ecsEntityManager;
-        this.index = index;
-        this.type = type;
+        this(ecsEntityManager, index, type);
+        this.pendingComponents = new ArrayList<>(components);
+    }
+
+    /**
+     * @deprecated 使用 {@link #init(Collection)}
+     */
+    @Deprecated
+    public void init() {
+        Collection<? extends EcsComponent> components = pendingComponents == null ? List.of() : pendingComponents;
+        pendingComponents = null;
+        init(components);
+    }
+
+    public void init(Collection<? extends EcsComponent> components) {
+        Set<Class<? extends EcsComponent>> componentTypes = new HashSet<>();
         for (EcsComponent component : components) {
-            addComponentInstance(component);
+            componentTypes.add(component.getClass());
         }
+        init(ecsEntityManager.getOrCreateArchetype(componentTypes, components), components);
     }
 
-    public void init() {
-        this.archetype = ecsEntityManager.getOrCreateArchetype(components.keySet());
-        archetype.addEntity(this);
+    /**
+     * 以已知原型初始化实体，调用者需保证组件类型与原型一致
+     */
+    public void init(EntityArchetype archetype, Collection<? extends EcsComponent> components) {
+        this.archetype = archetype;
+        this.row = archetype.addEntity(this, components);
     }
 
+    /**
+     * 获取组件，实体不包含该组件时返回null
+     * <p><b>标记 {@link top.kgame.lib.ecs.annotation.PrimitiveComponent} 的组件返回字段值的副本，修改副本不会写回实体，
+     * 例如 {@code entity.getComponent(Pos.class).x = 1} 不生效。</b>
+     * 读写这类组件使用 {@link EcsWorld#createPrimitiveView} 创建的 {@link top.kgame.lib.ecs.core.PrimitiveComponentView}。</p>
+     */
     @SuppressWarnings({"unchecked"})
     public <T extends EcsComponent> T getComponent(Class<T> componentClass) {
-        EcsComponent ecsComponent = components.get(componentClass);
-        if (null == ecsComponent) {
-            return null;
-        }
-        return (T)ecsComponent;
+        return (T) archetype.getComponent(row, ecsEntityManager.getComponentIndex(componentClass));
     }
 
     @Override
     public void clean() {
-        components.values().forEach(component -> {
-            if (component instanceof EcsCleanable ecsCleanableComponent) {
-                ecsCleanableComponent.clean();
-            }
-        });
-        components.clear();
-        getArchetype().removeEntity(this);
+        archetype.removeEntity(this);
+        archetype = EntityArchetype.EMPTY_INSTANCE;
+        row = -1;
     }
 
     @Override
@@ -68,7 +90,7 @@ public class EcsEntity implements EcsCleanable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(index);
+        return Integer.hashCode(index);
     }
 
     @Override
@@ -78,7 +100,8 @@ public class EcsEntity implements EcsCleanable {
         result.append("index=").append(index);
         result.append("archetype=").append(archetype);
         result.append("data=[");
-        for (EcsComponent component : components.values()) {
+        for (int column = 0; column < archetype.columnCount(); column++) {
+            EcsComponent component = archetype.getComponentAt(column, row);
             if (null == component) {
                 continue;
             }
@@ -96,61 +119,84 @@ public class EcsEntity implements EcsCleanable {
         return index;
     }
 
+    /**
+     * 实体在所属原型中的行号，未加入原型时为 -1
+     */
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    /**
+     * 由 EntityArchetype 批量迁移实体时调用
+     */
+    public void setArchetype(EntityArchetype archetype, int row) {
+        this.archetype = archetype;
+        this.row = row;
+    }
+
     public boolean hasComponent(Class<? extends EcsComponent> klass) {
-        return components.containsKey(klass);
+        return archetype.hasComponent(ecsEntityManager.getComponentIndex(klass));
+    }
+
+    /**
+     * 标记组件已被修改，供 {@link top.kgame.lib.ecs.core.ComponentFilterParam#changed(Class)} 过滤使用，不包含该组件时忽略
+     */
+    public void markChanged(Class<? extends EcsComponent> componentClass) {
+        archetype.markChanged(ecsEntityManager.getComponentIndex(componentClass), row);
     }
 
+    /**
+     * @throws top.kgame.lib.ecs.exception.ParallelStructuralChangeException 在并行更新期间调用
+     */
     public boolean addComponent(EcsComponent component) {
+        ecsEntityManager.checkStructuralChange();
         Class<? extends EcsComponent> componentClass = component.getClass();
-        if (hasComponent(componentClass)) {
+        int componentIndex = ecsEntityManager.getComponentIndex(componentClass);
+        if (archetype.hasComponent(componentIndex)) {
             logger.warn("add component failed! reason: component already exists of entity:{} componentType:{}",
                     getIndex(), componentClass.getSimpleName());
             return false;
         }
-        int componentIndex = ecsEntityManager.getComponentIndex(componentClass);
-        EntityArchetype oldArchetype = getArchetype();
-        BitSet newBitset = oldArchetype.bitSet();
-        newBitset.set(componentIndex);
-        EntityArchetype newArcheType = ecsEntityManager.getArchetype(newBitset);
-        if (null == newArcheType) {
-            Set<Class<? extends EcsComponent>> newTypes = new HashSet<>(oldArchetype.getComponentTypes());
-            newTypes.add(componentClass);
-            newArcheType = ecsEntityManager.createArchetype(newBitset, newTypes);
+        if (archetype == EntityArchetype.EMPTY_INSTANCE) {
+            logger.warn("add component failed! reason: entity has been destroyed. entity:{} componentType:{}",
+                    getIndex(), componentClass.getSimpleName());
+            return false;
+        }
+        if (componentIndex < 0) {
+            throw new IllegalArgumentException("Component " + componentClass.getName() + " is not registered in EcsWorld");
         }
-        updateArchetype(newArcheType, oldArchetype);
-        this.components.put(component.getClass(), component);
+        EntityArchetype newArcheType = ecsEntityManager.getArchetypeAfterAdd(getArchetype(), componentIndex, component);
+        updateArchetype(newArcheType);
+        archetype.setComponent(row, componentIndex, component);
         return true;
     }
 
+    /**
+     * @throws top.kgame.lib.ecs.exception.ParallelStructuralChangeException 在并行更新期间调用
+     */
     public EcsComponent removeComponent(Class<? extends EcsComponent> componentClass) {
-        EntityArchetype oldArchetype = getArchetype();
+        ecsEntityManager.checkStructuralChange();
         int componentIndex = ecsEntityManager.getComponentIndex(componentClass);
-        BitSet newBitset = (BitSet) oldArchetype.bitSet();
-        newBitset.clear(componentIndex);
-        EntityArchetype newArcheType = ecsEntityManager.getArchetype(newBitset);
-        if (null == newArcheType) {
-            Set<Class<? extends EcsComponent>> newTypes = new HashSet<>(oldArchetype.getComponentTypes());
-            newTypes.remove(componentClass);
-            newArcheType = ecsEntityManager.createArchetype(newBitset, newTypes);
-        }
-        updateArchetype(newArcheType, oldArchetype);
-        return components.remove(componentClass);
-    }
-
-    private void addComponentInstance(EcsComponent component) {
-        if (this.components.containsKey(component.getClass())) {
-            return;
+        EntityArchetype oldArchetype = getArchetype();
+        if (!oldArchetype.hasComponent(componentIndex)) {
+            return null;
         }
-        this.components.put(component.getClass(), component);
+        EcsComponent component = oldArchetype.getComponent(row, componentIndex);
+        EntityArchetype newArcheType = ecsEntityManager.getArchetypeAfterRemove(oldArchetype, componentIndex, componentClass);
+        updateArchetype(newArcheType);
+        return component;
     }
 
     public int getType() {
         return type;
     }
 
-    private void updateArchetype(EntityArchetype newArchetype, EntityArchetype oldArchetype) {
-        newArchetype.addEntity(this);
-        oldArchetype.removeEntity(this);
+    private void updateArchetype(EntityArchetype newArchetype) {
+        row = newArchetype.moveEntity(this, archetype, row);
         archetype = newArchetype;
     }
 
@@ -1,5 +1,7 @@
 package top.kgame.lib.ecs;
 
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.annotation.ParallelChunk;
 import top.kgame.lib.ecs.annotation.Standalone;
 import top.kgame.lib.ecs.annotation.TickRate;
 import top.kgame.lib.ecs.command.EcsCommand;
@@ -9,13 +11,23 @@ import top.kgame.lib.ecs.core.ComponentFilter;
 import top.kgame.lib.ecs.core.EcsCleanable;
 import top.kgame.lib.ecs.core.EcsSystemManager;
 import top.kgame.lib.ecs.core.EntityQuery;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
+import top.kgame.lib.ecs.core.QueryJournal;
+import top.kgame.lib.ecs.core.SystemAccess;
 import top.kgame.lib.ecs.exception.InvalidEcsSystemState;
+import top.kgame.lib.ecs.exception.InvalidPrimitiveComponentException;
 import top.kgame.lib.ecs.exception.UnsupportedCommandException;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 public abstract class EcsSystem implements EcsCleanable {
+    private static final EcsCommandScope[] COMMAND_SCOPES = EcsCommandScope.values();
+
     private EcsWorld ecsWorld;
     protected EcsSystemManager ecsSystemManager;
     private final EcsCommandBuffer commandBuffer = new EcsCommandBuffer();
@@ -25,22 +37,90 @@ public abstract class EcsSystem implements EcsCleanable {
     private boolean started = false;
     private boolean destroyed = false;
     private EntityQuery entityQuery;
+    // 匹配查询的结构变更日志，未开启时为null
+    private QueryJournal queryJournal;
     private int updateInterval = 0;
     private long nextUpdateTime = Long.MIN_VALUE;
+    // 上次运行时的组件写入版本，变更过滤只遍历此后写入过的实体块
+    private int lastRunVersion = 0;
+    // 并行更新相关，未标记ComponentAccess时为null，只能独占更新
+    private SystemAccess componentAccess;
+    // 标记了ComponentAccess时声明写入的组件索引，遍历后自动标记为已写入
+    private int[] writeIndexes;
+    private boolean parallelUpdating = false;
+    private int parallelStageVersion;
+    private final EcsCommandBuffer parallelGroupCommands = new EcsCommandBuffer();
+    private final EcsCommandBuffer parallelWorldCommands = new EcsCommandBuffer();
+    // 分块并行更新相关，chunkSize为0时不分块
+    private int chunkSize = 0;
+    private boolean chunkRunning = false;
+    private ChunkCommands[] chunkCommands = new ChunkCommands[0];
+    private final ThreadLocal<ChunkCommands> currentChunkCommands = new ThreadLocal<>();
 
     public void tryUpdate() {
+        if (tryRun()) {
+            commandBuffer.execute();
+        }
+    }
+
+    /**
+     * 并行更新，只执行update，延迟命令暂存到 {@link #executeParallelCommands()} 时执行
+     * @param stageVersion 批次的组件写入版本，同一批次的System都以该版本运行，运行期间不推进版本
+     */
+    public void tryParallelUpdate(int stageVersion) {
+        parallelUpdating = true;
+        parallelStageVersion = stageVersion;
+        ecsWorld.beginParallelUpdate();
+        try {
+            tryRun();
+        } finally {
+            ecsWorld.endParallelUpdate();
+            parallelUpdating = false;
+        }
+    }
+
+    /**
+     * 执行并行更新期间暂存的延迟命令，只能在World线程调用
+     */
+    public void executeParallelCommands() {
+        commandBuffer.execute();
+        if (!parallelGroupCommands.isEmpty()) {
+            parallelGroupCommands.moveTo(delayCommandBuffer(EcsCommandScope.SYSTEM_GROUP));
+        }
+        if (!parallelWorldCommands.isEmpty()) {
+            parallelWorldCommands.moveTo(delayCommandBuffer(EcsCommandScope.WORLD));
+        }
+    }
+
+    /**
+     * 是否正在与其他System并行更新，此时结构变更需通过延迟命令执行
+     */
+    protected boolean isParallelUpdating() {
+        return parallelUpdating;
+    }
+
+    /**
+     * 组件读写集合，未标记 {@link ComponentAccess} 时返回null
+     */
+    public SystemAccess getComponentAccess() {
+        return componentAccess;
+    }
+
+    private boolean tryRun() {
         if (!hasInit) {
             throw new InvalidEcsSystemState("can't update system before init");
         }
         if (ecsWorld.getCurrentTime() < nextUpdateTime) {
-            return;
+            return false;
         }
-        if (standalone || hasMatchEntity()) {
+        boolean run = standalone || hasMatchEntity();
+        if (run) {
             run();
         } else {
             tryStop();
         }
         nextUpdateTime = ecsWorld.getCurrentTime() + updateInterval;
+        return run;
     }
 
     private void run() {
@@ -48,15 +128,63 @@ public abstract class EcsSystem implements EcsCleanable {
             started = true;
             onStart();
         }
+        // 并行批次由调度器统一推进版本，批次内其他System推进版本会使本System的写入晚于lastRunVersion
+        int runVersion = parallelUpdating ? parallelStageVersion : ecsWorld.advanceChangeVersion();
         update();
-        commandBuffer.execute();
+        lastRunVersion = runVersion;
+        if (!parallelUpdating) {
+            // 再推进一次，System之外的写入不会与本次运行的写入混在同一版本
+            ecsWorld.advanceChangeVersion();
+        }
+    }
+
+    /**
+     * 上次运行时的组件写入版本，从未运行过时为0
+     */
+    public int getLastRunVersion() {
+        return lastRunVersion;
+    }
+
+    /**
+     * @return World单例在本System上次运行之后被设置、移除或标记修改过
+     * @see EcsWorld#isSingletonChanged(Class, int)
+     */
+    protected boolean isSingletonChanged(Class<? extends EcsComponent> componentClass) {
+        return ecsWorld.isSingletonChanged(componentClass, lastRunVersion);
+    }
+
+    /**
+     * 下次允许更新的时间，由 {@link TickRate} 决定
+     */
+    public long getNextUpdateTime() {
+        return nextUpdateTime;
+    }
+
+    /**
+     * World回滚时恢复为记录该帧时的更新状态，之后调用 {@link #onRollback(long)}
+     * @param nextUpdateTime 记录时的下次更新时间
+     * @param lastRunVersion 记录时的上次运行版本，回滚恢复的组件写入版本与其一致，变更过滤的结果与记录时相同
+     * @param time 回滚到的World时间
+     */
+    public void restoreRollbackState(long nextUpdateTime, int lastRunVersion, long time) {
+        this.nextUpdateTime = nextUpdateTime;
+        this.lastRunVersion = lastRunVersion;
+        onRollback(time);
+    }
+
+    /**
+     * World回滚后调用，System自身保存的跨帧状态需在此恢复或重置
+     * @param time 回滚到的World时间
+     */
+    protected void onRollback(long time) {
     }
 
     private boolean hasMatchEntity() {
         if (entityQuery == null) {
             return false;
         }
-        return !entityQuery.isEmpty();
+        // 查询已经为空时仍要运行一次，取出实体离开查询的记录
+        return !entityQuery.isEmpty() || (queryJournal != null && !queryJournal.isEmpty());
     }
 
     private void tryStop() {
@@ -79,7 +207,13 @@ public abstract class EcsSystem implements EcsCleanable {
             onDestroy();
             destroyed = true;
         }
+        if (queryJournal != null) {
+            entityQuery.removeJournal(queryJournal);
+            queryJournal = null;
+        }
         commandBuffer.clear();
+        parallelGroupCommands.clear();
+        parallelWorldCommands.clear();
     }
 
     public void init(EcsSystemManager systemManager) {
@@ -93,12 +227,40 @@ public abstract class EcsSystem implements EcsCleanable {
         if (null != timeIntervalAnno) {
             this.updateInterval = timeIntervalAnno.value();
         }
+        ParallelChunk parallelChunkAnno = this.getClass().getAnnotation(ParallelChunk.class);
+        if (null != parallelChunkAnno) {
+            this.chunkSize = parallelChunkAnno.value();
+        }
         destroyed = false;
         started = false;
         onInit();
+        initComponentAccess();
         hasInit = true;
     }
 
+    private void initComponentAccess() {
+        ComponentAccess accessAnno = this.getClass().getAnnotation(ComponentAccess.class);
+        if (accessAnno == null || this instanceof EcsSystemGroup) {
+            componentAccess = null;
+            writeIndexes = null;
+            return;
+        }
+        writeIndexes = componentIndexes(accessAnno.write());
+        componentAccess = SystemAccess.of(entityQuery == null ? null : entityQuery.getComponentFilter(),
+                componentIndexes(accessAnno.read()), writeIndexes);
+    }
+
+    private int[] componentIndexes(Class<? extends EcsComponent>[] types) {
+        int[] result = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            result[i] = ecsWorld.getComponentIndex(types[i]);
+            if (result[i] < 0) {
+                throw new IllegalArgumentException("Component " + types[i].getName() + " is not registered in EcsWorld");
+            }
+        }
+        return result;
+    }
+
     protected void registerEntityFilter(ComponentFilter componentTypes) {
         if (entityQuery == null) {
             entityQuery = ecsWorld.findOrCreateEntityQuery(componentTypes);
@@ -109,6 +271,20 @@ public abstract class EcsSystem implements EcsCleanable {
         }
     }
 
+    /**
+     * 开启匹配查询的结构变更日志，需在 {@link #registerEntityFilter(ComponentFilter)} 之后调用，重复调用返回同一个日志
+     * @see QueryJournal
+     */
+    protected QueryJournal enableQueryJournal() {
+        if (entityQuery == null) {
+            throw new InvalidEcsSystemState("can't enable query journal before registerEntityFilter");
+        }
+        if (queryJournal == null) {
+            queryJournal = entityQuery.createJournal();
+        }
+        return queryJournal;
+    }
+
     protected Collection<EcsEntity> getAllMatchEntity() {
         if (entityQuery == null) {
             return Collections.emptyList();
@@ -116,27 +292,166 @@ public abstract class EcsSystem implements EcsCleanable {
         return entityQuery.getEntityList();
     }
 
+    /**
+     * 遍历所有匹配的实体，不创建中间列表
+     * <p>并行更新时EntityQuery的缓冲区可能被其他System共用，改为使用临时缓冲区。</p>
+     * @see EntityQuery#forEach(Consumer)
+     */
+    protected void forEachMatchEntity(Consumer<EcsEntity> consumer) {
+        if (entityQuery == null) {
+            return;
+        }
+        if (!parallelUpdating) {
+            entityQuery.forEach(consumer, lastRunVersion);
+            return;
+        }
+        EntityQueryBuffer buffer = new EntityQueryBuffer();
+        int size = entityQuery.fill(buffer, lastRunVersion);
+        EcsEntity[] entities = buffer.getEntities();
+        for (int i = 0; i < size; i++) {
+            consumer.accept(entities[i]);
+        }
+    }
+
+    /**
+     * 创建查询缓冲区，组件类型按参数顺序对应列号
+     * @throws InvalidPrimitiveComponentException 组件类型标记了 {@link top.kgame.lib.ecs.annotation.PrimitiveComponent}，
+     * 这类组件没有组件对象可以放入列中，需改为额外依赖该组件并通过 {@link EcsWorld#createPrimitiveView} 读写
+     */
+    @SafeVarargs
+    protected final EntityQueryBuffer createQueryBuffer(Class<? extends EcsComponent>... componentClasses) {
+        int[] componentIndexes = new int[componentClasses.length];
+        for (int i = 0; i < componentClasses.length; i++) {
+            if (ecsWorld.isPrimitiveComponent(componentClasses[i])) {
+                throw new InvalidPrimitiveComponentException(componentClasses[i].getName()
+                        + " is a primitive component and can't be a query column, use EcsWorld#createPrimitiveView instead. system: "
+                        + getClass().getName());
+            }
+            componentIndexes[i] = ecsWorld.getComponentIndex(componentClasses[i]);
+        }
+        return new EntityQueryBuffer(componentIndexes);
+    }
+
+    /**
+     * 将匹配的实体以及缓冲区指定的组件列快照到缓冲区，存在变更过滤条件时只包含上次运行后写入过的实体块
+     * @return 实体数量
+     * @see EntityQuery#fill(EntityQueryBuffer, int)
+     */
+    protected int fillMatchEntity(EntityQueryBuffer buffer) {
+        if (entityQuery == null) {
+            buffer.clear();
+            return 0;
+        }
+        return entityQuery.fill(buffer, lastRunVersion);
+    }
+
+    /**
+     * 将缓冲区 [from, to) 范围内实体的写入组件标记为已写入，变更过滤、快照增量和回滚历史据此感知直接修改字段的写入
+     * <p>只标记 {@link ComponentAccess} 声明写入的组件。未标记ComponentAccess的System不自动标记，
+     * 修改组件字段后需调用 {@link EcsEntity#markChanged(Class)}，只读遍历不会使组件被视为已变更。</p>
+     * @see EntityQueryBuffer#markChanged(int, int, int[])
+     */
+    protected void markWritten(EntityQueryBuffer buffer, int from, int to) {
+        if (writeIndexes != null) {
+            buffer.markChanged(from, to, writeIndexes);
+        }
+    }
+
+    /**
+     * 将 [0, size) 按 {@link ParallelChunk} 指定的大小分块，在线程池中并行执行
+     * <p>未标记ParallelChunk、未设置线程池或只有一个分块时，直接在当前线程执行。</p>
+     * <p>分块执行期间的addDelayCommand暂存在各分块中，全部完成后按分块顺序提交，提交顺序与线程调度无关。</p>
+     */
+    protected void forEachChunk(int size, RangeTask task) {
+        ForkJoinPool executor = ecsSystemManager.getParallelExecutor();
+        if (chunkSize <= 0 || executor == null || size <= chunkSize) {
+            task.run(0, size);
+            return;
+        }
+        int chunkCount = (size + chunkSize - 1) / chunkSize;
+        if (chunkCount > chunkCommands.length) {
+            int oldLength = chunkCommands.length;
+            chunkCommands = Arrays.copyOf(chunkCommands, chunkCount);
+            for (int i = oldLength; i < chunkCount; i++) {
+                chunkCommands[i] = new ChunkCommands();
+            }
+        }
+        chunkRunning = true;
+        ecsWorld.beginParallelUpdate();
+        try {
+            executor.invoke(new ChunkAction(task, size, 0, chunkCount));
+        } catch (RuntimeException e) {
+            for (int i = 0; i < chunkCount; i++) {
+                chunkCommands[i].clear();
+            }
+            throw e;
+        } finally {
+            ecsWorld.endParallelUpdate();
+            chunkRunning = false;
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            EcsCommandBuffer[] buffers = chunkCommands[i].buffers;
+            for (EcsCommandScope scope : COMMAND_SCOPES) {
+                if (!buffers[scope.ordinal()].isEmpty()) {
+                    buffers[scope.ordinal()].moveTo(delayCommandBuffer(scope));
+                }
+            }
+        }
+    }
+
     public EcsWorld getWorld() {
         return ecsWorld;
     }
 
     public void addDelayCommand(EcsCommand command, EcsCommandScope level) {
-        switch (level) {
-            case SYSTEM -> this.commandBuffer.addCommand(command);
+        delayCommandBuffer(level).addCommand(command);
+    }
+
+    /**
+     * 延迟添加组件，不创建命令对象
+     */
+    public void addDelayAddComponent(EcsEntity entity, EcsComponent component, EcsCommandScope level) {
+        delayCommandBuffer(level).addComponent(entity, component);
+    }
+
+    /**
+     * 延迟移除组件，不创建命令对象
+     */
+    public void addDelayRemoveComponent(EcsEntity entity, Class<? extends EcsComponent> componentCls, EcsCommandScope level) {
+        delayCommandBuffer(level).removeComponent(entity, componentCls);
+    }
+
+    /**
+     * 延迟请求销毁实体，不创建命令对象
+     */
+    public void addDelayDestroyEntity(EcsEntity entity, EcsCommandScope level) {
+        delayCommandBuffer(level).destroyEntity(entity);
+    }
+
+    /**
+     * 按作用域找到延迟命令写入的缓冲区，分块执行和并行更新期间先暂存在当前System中
+     */
+    private EcsCommandBuffer delayCommandBuffer(EcsCommandScope level) {
+        if (chunkRunning) {
+            ChunkCommands commands = currentChunkCommands.get();
+            if (commands != null) {
+                return commands.buffers[level.ordinal()];
+            }
+        }
+        return switch (level) {
+            case SYSTEM -> this.commandBuffer;
             case SYSTEM_GROUP -> {
                 if (this instanceof EcsSystemGroup) {
-                    this.commandBuffer.addCommand(command);
-                } else {
-                    EcsSystemGroup currentSystemGroup = ecsWorld.getCurrentSystemGroup();
-                    if (currentSystemGroup != null) {
-                        currentSystemGroup.addDelayCommand(command, level);
-                    } else {
-                        throw new UnsupportedCommandException("EcsCommandScope.SYSTEM_GROUP only support the system which in EcsSystemGroups");
-                    }
+                    yield this.commandBuffer;
                 }
+                EcsSystemGroup currentSystemGroup = ecsWorld.getCurrentSystemGroup();
+                if (currentSystemGroup == null) {
+                    throw new UnsupportedCommandException("EcsCommandScope.SYSTEM_GROUP only support the system which in EcsSystemGroups");
+                }
+                yield parallelUpdating ? parallelGroupCommands : ((EcsSystem) currentSystemGroup).commandBuffer;
             }
-            case WORLD -> ecsWorld.addDelayCommand(command);
-        }
+            case WORLD -> parallelUpdating ? parallelWorldCommands : ecsWorld.getCommandBuffer();
+        };
     }
 
     @Override
@@ -144,6 +459,64 @@ public abstract class EcsSystem implements EcsCleanable {
         return this.getClass().getSimpleName();
     }
 
+    /**
+     * 分块执行的任务，处理 [from, to) 范围
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private static final class ChunkCommands {
+        // 按 EcsCommandScope 序号存放
+        private final EcsCommandBuffer[] buffers = new EcsCommandBuffer[COMMAND_SCOPES.length];
+
+        private ChunkCommands() {
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new EcsCommandBuffer();
+            }
+        }
+
+        private void clear() {
+            for (EcsCommandBuffer buffer : buffers) {
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * 处理 [fromChunk, toChunk) 范围的分块，超过一个分块时对半拆分
+     */
+    @SuppressWarnings("serial")
+    private final class ChunkAction extends RecursiveAction {
+        private final RangeTask task;
+        private final int size;
+        private final int fromChunk;
+        private final int toChunk;
+
+        private ChunkAction(RangeTask task, int size, int fromChunk, int toChunk) {
+            this.task = task;
+            this.size = size;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkAction(task, size, fromChunk, middle), new ChunkAction(task, size, middle, toChunk));
+                return;
+            }
+            currentChunkCommands.set(chunkCommands[fromChunk]);
+            try {
+                task.run(fromChunk * chunkSize, Math.min(size, (fromChunk + 1) * chunkSize));
+            } finally {
+                currentChunkCommands.remove();
+            }
+        }
+    }
+
     protected abstract void onInit();
 
     /**
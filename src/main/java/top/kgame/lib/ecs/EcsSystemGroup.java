@@ -6,6 +6,7 @@ import top.kgame.lib.ecs.annotation.Standalone;
 import top.kgame.lib.ecs.core.SystemScheduler;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Standalone
@@ -34,10 +35,17 @@ public abstract class EcsSystemGroup extends EcsSystem {
         logger.info("{} remove system:{}", this.getClass().getSimpleName(), system.getClass());
     }
 
+    /**
+     * 组内按更新顺序排列的System
+     */
+    public Collection<EcsSystem> getSystems() {
+        return systemScheduler.getSortedSystem();
+    }
+
     @Override
     public void update() {
         getWorld().setCurrentSystemGroup(this);
-        systemScheduler.updateSystems();
+        systemScheduler.updateSystems(ecsSystemManager.getParallelExecutor());
         destroyRemovedSystem();
         getWorld().setCurrentSystemGroup(null);
     }
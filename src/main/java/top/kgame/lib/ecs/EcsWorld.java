@@ -4,18 +4,31 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import top.kgame.lib.ecs.command.EcsCommand;
 import top.kgame.lib.ecs.command.EcsCommandBuffer;
+import top.kgame.lib.ecs.command.EcsCommandQueue;
 import top.kgame.lib.ecs.core.*;
 import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+import top.kgame.lib.ecs.snapshot.SnapshotSchema;
+import top.kgame.lib.ecs.snapshot.WorldCheckpoint;
+import top.kgame.lib.ecs.snapshot.WorldHistory;
 import top.kgame.lib.ecs.tools.EcsClassScanner;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
 
 /**
- * 非线程安全，只能在单线程使用
+ * 非线程安全，只能在单线程使用。
+ * <p>设置 {@link #setParallelExecutor(ForkJoinPool)} 后，标记了 {@link top.kgame.lib.ecs.annotation.ComponentAccess}
+ * 且读写不冲突的EcsSystem会在update期间并行更新，其余操作仍需在World线程执行。</p>
+ * <p>其他线程只能通过 {@link #submitCommand(EcsCommand)} 向World提交命令。</p>
  */
 public class EcsWorld{
     private static final Logger logger = LogManager.getLogger(EcsWorld.class);
     private static final int INIT_LOGIC_TIME = -1;
+    private static final int INBOUND_COMMAND_CAPACITY = 4096;
 
     private State state = State.INIT;
     private long currentTime = INIT_LOGIC_TIME;
@@ -23,26 +36,163 @@ public class EcsWorld{
     private final EcsEntityManager entityManager = new EcsEntityManager(this);
     private EcsEntity[] waitDestroyEntity = new EcsEntity[16];
     private int waitDestroyEntitySize = 0;
+    private EcsComponent[] destroyingComponents = new EcsComponent[0];
+    private final EntityQueryBuffer destroyQueryBuffer = new EntityQueryBuffer();
     private EcsSystemGroup currentSystemGroup;
 
     private final EcsSystemManager systemManager = new EcsSystemManager(this);
 
-    private final EcsCommandBuffer commandBuffer = new EcsCommandBuffer();;
+    private final EcsCommandBuffer commandBuffer = new EcsCommandBuffer();
+    // 其他线程提交的命令，在update开始时执行
+    private final EcsCommandQueue inboundCommands = new EcsCommandQueue(INBOUND_COMMAND_CAPACITY);
 
     private Object context;
+    // 开启回滚后每次update结束时记录状态
+    private WorldHistory history;
 
     EntityQuery findOrCreateEntityQuery(ComponentFilter componentTypes) {
         return this.entityManager.findOrCreateEntityQuery(componentTypes);
     }
 
+    /**
+     * 并行更新期间禁止结构变更
+     * @see EcsEntityManager#checkStructuralChange()
+     */
+    void beginParallelUpdate() {
+        entityManager.beginParallelUpdate();
+    }
+
+    void endParallelUpdate() {
+        entityManager.endParallelUpdate();
+    }
+
+    /**
+     * 添加在本次update所有System更新之后执行的命令
+     * <p>World的命令缓冲区不是线程安全的，并行更新的System需改用 {@link EcsSystem#addDelayCommand} 并指定WORLD作用域，
+     * 命令暂存在System自己的缓冲区中，批次结束后按System顺序提交。</p>
+     * @throws top.kgame.lib.ecs.exception.ParallelStructuralChangeException 在并行更新期间调用
+     */
     public void addDelayCommand(EcsCommand command) {
+        entityManager.checkStructuralChange();
         commandBuffer.addCommand(command);
     }
 
+    EcsCommandBuffer getCommandBuffer() {
+        return commandBuffer;
+    }
+
+    /**
+     * 从任意线程提交命令，线程安全且无锁。
+     * <p>命令在下一次update开始、所有System更新之前，在World线程按提交顺序执行。</p>
+     * @return 队列已满时返回false，由调用者决定重试或丢弃
+     */
+    public boolean submitCommand(EcsCommand command) {
+        return inboundCommands.offer(command);
+    }
+
     public int getComponentIndex(Class<? extends EcsComponent> type) {
         return entityManager.getComponentIndex(type);
     }
 
+    /**
+     * 是否为 {@link top.kgame.lib.ecs.annotation.PrimitiveComponent} 组件，这类组件没有组件对象，只能通过 {@link #createPrimitiveView} 读写
+     */
+    public boolean isPrimitiveComponent(Class<? extends EcsComponent> type) {
+        return entityManager.isPrimitiveComponent(getComponentIndex(type));
+    }
+
+    /**
+     * 当前的组件写入版本，每个System运行前后各推进一次，并行批次整体前后各推进一次
+     */
+    public int getChangeVersion() {
+        return entityManager.getChangeVersion();
+    }
+
+    /**
+     * 推进组件写入版本，此后的写入与之前的写入可以区分。System运行前后会自动推进，
+     * 在System之外按版本读取变更时（如编码快照）调用。
+     * @return 推进后的版本
+     */
+    public int advanceChangeVersion() {
+        return entityManager.advanceChangeVersion();
+    }
+
+    /**
+     * 已注册的组件类型数量，组件索引范围为 [0, getComponentCount())
+     */
+    public int getComponentCount() {
+        return entityManager.getComponentCount();
+    }
+
+    /**
+     * @return 索引未注册时返回null
+     */
+    public Class<? extends EcsComponent> getComponentClass(int componentIndex) {
+        return entityManager.getComponentClass(componentIndex);
+    }
+
+    /**
+     * 设置World单例组件，同类型已存在时替换。
+     * <p>单例组件保存World级的状态（时钟、天气、对局配置等），不属于任何实体，不参与查询匹配。
+     * 只能在World线程修改，并行系统中只读。设置和移除时记录当前写入版本，见 {@link #isSingletonChanged(Class, int)}。</p>
+     * @return 被替换的旧值，没有时返回null
+     * @throws IllegalArgumentException 组件类型未注册
+     * @throws top.kgame.lib.ecs.exception.ParallelStructuralChangeException 在并行更新期间调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends EcsComponent> T setSingleton(T component) {
+        return (T) entityManager.setSingleton(component);
+    }
+
+    /**
+     * @return 不存在时返回null
+     */
+    public <T extends EcsComponent> T getSingleton(Class<T> componentClass) {
+        return componentClass.cast(entityManager.getSingleton(getComponentIndex(componentClass)));
+    }
+
+    /**
+     * 按组件索引获取单例组件，索引可通过 {@link #getComponentIndex(Class)} 获取后缓存，按数组下标直接访问
+     * @return 不存在时返回null
+     */
+    public EcsComponent getSingleton(int componentIndex) {
+        return entityManager.getSingleton(componentIndex);
+    }
+
+    public boolean hasSingleton(Class<? extends EcsComponent> componentClass) {
+        return entityManager.getSingleton(getComponentIndex(componentClass)) != null;
+    }
+
+    /**
+     * @return 被移除的值，不存在时返回null
+     * @throws top.kgame.lib.ecs.exception.ParallelStructuralChangeException 在并行更新期间调用
+     */
+    public <T extends EcsComponent> T removeSingleton(Class<T> componentClass) {
+        return componentClass.cast(entityManager.removeSingleton(getComponentIndex(componentClass)));
+    }
+
+    /**
+     * 直接修改单例的字段后调用，使 {@link #isSingletonChanged(Class, int)} 能观察到这次修改
+     */
+    public void markSingletonChanged(Class<? extends EcsComponent> componentClass) {
+        entityManager.markSingletonChanged(getComponentIndex(componentClass));
+    }
+
+    /**
+     * @param sinceVersion 比较的写入版本，System中通常为 {@link EcsSystem#getLastRunVersion()}
+     * @return 单例在该版本之后被设置、移除或标记修改过
+     */
+    public boolean isSingletonChanged(Class<? extends EcsComponent> componentClass, int sinceVersion) {
+        return entityManager.getSingletonChangeVersion(getComponentIndex(componentClass)) - sinceVersion > 0;
+    }
+
+    /**
+     * 单例最近一次设置、移除或标记修改时的写入版本，从未写入过时为0
+     */
+    public int getSingletonChangeVersion(int componentIndex) {
+        return entityManager.getSingletonChangeVersion(componentIndex);
+    }
+
     public EcsSystemGroup getCurrentSystemGroup() {
         return this.currentSystemGroup;
     }
@@ -109,6 +259,14 @@ public class EcsWorld{
         state = State.WAIT_RUNNING;
     }
 
+    /**
+     * 设置EcsSystem并行更新使用的线程池
+     * @param executor 线程池，为null时所有EcsSystem依次更新
+     */
+    public void setParallelExecutor(ForkJoinPool executor) {
+        systemManager.setParallelExecutor(executor);
+    }
+
     /**
      * 设置自定义上下文
      * @param context 上下文对象
@@ -146,6 +304,8 @@ public class EcsWorld{
         systemManager.clean();
         entityManager.clean();
         commandBuffer.clear();
+        inboundCommands.clear();
+        history = null;
         state = State.DESTROYED;
     }
 
@@ -162,6 +322,27 @@ public class EcsWorld{
         return entityFactory.create(this.entityManager);
     }
 
+    /**
+     * 批量创建同一工厂类型的实体，原型查找、存储扩容和实体ID分配各只做一次
+     * @param initializer 可为null，按创建顺序传入实体及其序号
+     */
+    public EcsEntity[] createEntities(int factoryTypeId, int count, ObjIntConsumer<EcsEntity> initializer) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Entity count must not be negative: " + count);
+        }
+        EntityFactory entityFactory = entityManager.getEntityFactory(factoryTypeId);
+        if (entityFactory == null) {
+            throw new IllegalArgumentException("No entity factory found for type id " + factoryTypeId);
+        }
+        EcsEntity[] entities = entityFactory.create(this.entityManager, count);
+        if (initializer != null) {
+            for (int i = 0; i < entities.length; i++) {
+                initializer.accept(entities[i], i);
+            }
+        }
+        return entities;
+    }
+
     // 通过工厂类创建实体
     public EcsEntity createEntity(Class<? extends EntityFactory> klass) {
         EntityFactory entityFactory = entityManager.getEntityFactory(klass);
@@ -176,19 +357,133 @@ public class EcsWorld{
     }
 
     public void requestDestroyEntity(EcsEntity entity) {
+        entityManager.checkStructuralChange();
         if (entity.getDestroyTime() > 0) {
             return;
         }
         entity.setDestroyTime(currentTime);
         entity.addComponent(DestroyingComponent.generate());
-        if (waitDestroyEntitySize >= waitDestroyEntity.length) {
-            EcsEntity[] newArray = new EcsEntity[waitDestroyEntity.length * 2];
-            System.arraycopy(waitDestroyEntity, 0, newArray, 0, waitDestroyEntity.length);
-            waitDestroyEntity = newArray;
-        }
+        ensureWaitDestroyCapacity(waitDestroyEntitySize + 1);
         waitDestroyEntity[waitDestroyEntitySize++] = entity;
     }
 
+    /**
+     * 批量请求销毁实体，不存在的实体ID忽略
+     * @see #requestDestroyEntities(EcsEntity[], int)
+     * @return 新请求销毁的实体数量
+     */
+    public int destroyEntities(int[] entityIndexes) {
+        EcsEntity[] entities = new EcsEntity[entityIndexes.length];
+        int count = 0;
+        for (int entityIndex : entityIndexes) {
+            EcsEntity entity = getEntity(entityIndex);
+            if (entity != null) {
+                entities[count++] = entity;
+            }
+        }
+        return requestDestroyEntities(entities, count);
+    }
+
+    /**
+     * 请求销毁查询当前匹配的所有实体
+     * @see #requestDestroyEntities(EcsEntity[], int)
+     * @return 新请求销毁的实体数量
+     */
+    public int destroyAll(EntityQuery entityQuery) {
+        int count = entityQuery.fill(destroyQueryBuffer);
+        int requested = requestDestroyEntities(destroyQueryBuffer.getEntities(), count);
+        destroyQueryBuffer.clear();
+        return requested;
+    }
+
+    /**
+     * 请求销毁满足过滤条件的所有实体，查询按条件缓存复用
+     * @see #destroyAll(EntityQuery)
+     * @return 新请求销毁的实体数量
+     */
+    public int destroyAll(Collection<ComponentFilterParam<?>> filterParams) {
+        return destroyAll(findOrCreateEntityQuery(ComponentFilter.generate(this, filterParams)));
+    }
+
+    /**
+     * 批量请求销毁实体，效果与逐个调用 {@link #requestDestroyEntity(EcsEntity)} 相同。
+     * <p>DestroyingComponent 按源原型分组批量添加，源原型的实体全部销毁时整段迁移；
+     * 实体在本次update结束时按原型分组批量释放。</p>
+     * @return 新请求销毁的实体数量
+     */
+    public int requestDestroyEntities(EcsEntity[] entities, int count) {
+        entityManager.checkStructuralChange();
+        ensureWaitDestroyCapacity(waitDestroyEntitySize + count);
+        int start = waitDestroyEntitySize;
+        for (int i = 0; i < count; i++) {
+            EcsEntity entity = entities[i];
+            if (entity.getDestroyTime() > 0) {
+                continue;
+            }
+            entity.setDestroyTime(currentTime);
+            waitDestroyEntity[waitDestroyEntitySize++] = entity;
+        }
+        int requested = waitDestroyEntitySize - start;
+        if (destroyingComponents.length < waitDestroyEntitySize) {
+            destroyingComponents = new EcsComponent[waitDestroyEntity.length];
+            Arrays.fill(destroyingComponents, DestroyingComponent.generate());
+        }
+        entityManager.addComponents(waitDestroyEntity, destroyingComponents, start, waitDestroyEntitySize);
+        return requested;
+    }
+
+    private void ensureWaitDestroyCapacity(int capacity) {
+        if (capacity > waitDestroyEntity.length) {
+            waitDestroyEntity = Arrays.copyOf(waitDestroyEntity, Math.max(capacity, waitDestroyEntity.length * 2));
+        }
+    }
+
+    /**
+     * 批量为实体添加同一类型的组件，按源原型分组迁移
+     * @see EcsEntityManager#addComponents(EcsEntity[], EcsComponent[], int, int)
+     * @return 成功添加的数量
+     */
+    public int addComponents(EcsEntity[] entities, EcsComponent[] components, int from, int to) {
+        return entityManager.addComponents(entities, components, from, to);
+    }
+
+    /**
+     * 批量移除实体的同一类型组件，按源原型分组迁移
+     * @see EcsEntityManager#removeComponents(EcsEntity[], Class, int, int)
+     * @return 成功移除的数量
+     */
+    public int removeComponents(EcsEntity[] entities, Class<? extends EcsComponent> componentClass, int from, int to) {
+        return entityManager.removeComponents(entities, componentClass, from, to);
+    }
+
+    /**
+     * 从对象池获取组件实例，池为空时新建。组件需实现 {@link EcsPoolable}，实体销毁时自动回收
+     */
+    public <T extends EcsComponent> T obtainComponent(Class<T> componentClass) {
+        return entityManager.obtainComponent(componentClass);
+    }
+
+    /**
+     * 创建基本类型组件的访问器
+     * @see top.kgame.lib.ecs.annotation.PrimitiveComponent
+     */
+    public PrimitiveComponentView createPrimitiveView(Class<? extends EcsComponent> componentClass) {
+        return entityManager.createPrimitiveView(componentClass);
+    }
+
+    /**
+     * 对象池中可复用的组件数量
+     */
+    public int getPooledComponentCount(Class<? extends EcsComponent> componentClass) {
+        return entityManager.getPooledComponentCount(componentClass);
+    }
+
+    /**
+     * 按实体ID获取实体
+     * <p>实体ID包含槽位号和代数，实体销毁后槽位会被复用，但旧ID不会查到复用槽位的新实体。</p>
+     * @param entityIndex 实体ID
+     * @return 实体不存在或已销毁时返回null
+     */
     public EcsEntity getEntity(int entityIndex) {
         return entityManager.getEntity(entityIndex);
     }
@@ -197,10 +492,68 @@ public class EcsWorld{
         return entityManager.getAllEntity();
     }
 
+    /**
+     * 所有已创建原型的只读视图，按原型遍历实体和组件列时使用
+     */
+    public Collection<EntityArchetype> getArchetypes() {
+        return entityManager.getArchetypes();
+    }
+
+    /**
+     * 将所有实体和单例组件写入存档文件
+     * @see WorldCheckpoint
+     */
+    public void saveCheckpoint(SnapshotSchema schema, Path path) throws IOException {
+        WorldCheckpoint.save(entityManager, schema, path);
+    }
+
+    /**
+     * 从存档文件恢复实体和单例组件，World中不能已经存在实体
+     * @return 恢复的实体数量
+     * @see WorldCheckpoint
+     */
+    public int loadCheckpoint(SnapshotSchema schema, Path path) throws IOException {
+        return WorldCheckpoint.load(entityManager, schema, path);
+    }
+
+    /**
+     * 开启回滚，立即记录当前状态，之后每次update结束时记录一帧，最多保留 capacity 帧
+     * @param schema 记录的组件，通常使用 {@link SnapshotSchema#forCheckpoint(EcsWorld)}
+     * @see WorldHistory
+     */
+    public void enableRollback(SnapshotSchema schema, int capacity) {
+        history = new WorldHistory(entityManager, systemManager, schema, capacity);
+        history.capture(currentTime);
+    }
+
+    /**
+     * 回滚到指定时间update结束时的状态，World时间恢复为该时间，之后可以用修正后的输入重新update。
+     * <p>该时间之后的记录和尚未处理的销毁请求被丢弃，原有的 EcsEntity 对象失效，需按实体ID重新获取。</p>
+     * <p>System的更新间隔、变更过滤和响应式System的状态一并恢复，System自身的其他跨帧状态在 {@link EcsSystem#onRollback(long)} 中处理。</p>
+     * @return 没有该时间的记录时返回false
+     * @throws IllegalStateException 未开启回滚或在update期间调用
+     */
+    public boolean rollback(long time) {
+        if (history == null) {
+            throw new IllegalStateException("rollback is not enabled");
+        }
+        if (state != State.WAIT_RUNNING) {
+            throw new IllegalStateException("rollback is only allowed between updates, state: " + state);
+        }
+        if (!history.restore(time)) {
+            return false;
+        }
+        Arrays.fill(waitDestroyEntity, 0, waitDestroyEntitySize, null);
+        waitDestroyEntitySize = 0;
+        currentTime = time;
+        return true;
+    }
+
     /**
      * 执行ECS世界更新循环
-     * <p>执行所有系统更新，处理实体销毁，执行EcsCommandScope.WORLD级的EcsCommand。</p>
+     * <p>执行其他线程提交的命令，执行所有系统更新，处理实体销毁，执行EcsCommandScope.WORLD级的EcsCommand。</p>
      * <p>时间戳必须严格递增。</p>
+     * <p>更新过程中抛出异常时本次更新中止，此时实体和组件可能只更新了一部分，应关闭该EcsWorld。</p>
      *
      * @param now 当前时间戳（毫秒），必须大于上次传入的时间
      * @throws IllegalArgumentException 当时间戳无效时抛出异常
@@ -217,19 +570,46 @@ public class EcsWorld{
         }
         state = State.RUNNING;
         this.currentTime = now;
-        systemManager.update();
-        commandBuffer.execute();
-        for (int i = 0; i < waitDestroyEntitySize; i++) {
-            entityManager.destroyEntity(waitDestroyEntity[i]);
+        try {
+            inboundCommands.execute();
+            systemManager.update();
+            commandBuffer.execute();
+            entityManager.destroyEntities(waitDestroyEntity, waitDestroyEntitySize);
+            Arrays.fill(waitDestroyEntity, 0, waitDestroyEntitySize, null);
+            waitDestroyEntitySize = 0;
+        } catch (RuntimeException e) {
+            // 更新中途失败时结束本次更新，之后可以正常关闭
+            boolean closeRequested = state == State.WAIT_DESTROY;
+            state = State.WAIT_RUNNING;
+            if (closeRequested) {
+                close();
+            }
+            throw e;
         }
-        waitDestroyEntitySize = 0;
         if (state == State.WAIT_DESTROY) {
             close();
         } else {
             state = State.WAIT_RUNNING;
+            if (history != null) {
+                history.capture(now);
+            }
         }
     }
 
+    /**
+     * 添加/移除组件时原型迁移边缓存的命中次数
+     */
+    public long getArchetypeTransitionHitCount() {
+        return entityManager.getTransitionHitCount();
+    }
+
+    /**
+     * 添加/移除组件时原型迁移边缓存的未命中次数，未命中时会查找或创建目标原型并缓存
+     */
+    public long getArchetypeTransitionMissCount() {
+        return entityManager.getTransitionMissCount();
+    }
+
     public long getCurrentTime() {
         return currentTime;
     }
@@ -0,0 +1,25 @@
+package top.kgame.lib.ecs.annotation;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明EcsSystem读写的组件类型，被标记的EcsSystem可以与其他读写不冲突的EcsSystem并行更新
+ *
+ * <p>EcsSystem查询条件中必须包含和任意包含的组件自动视为读取，只需额外声明写入的组件。
+ * 更新系统基类遍历后只将声明写入的组件标记为已写入，未标记该注解时不自动标记，修改组件字段后需调用 EcsEntity#markChanged。</p>
+ * <p>并行更新期间不能直接增删组件、创建或销毁实体，否则抛出 ParallelStructuralChangeException，结构变更需通过addDelayCommand延迟执行；
+ * 延迟命令在同一批EcsSystem全部更新完成后，按排序顺序在World线程执行。</p>
+ * <p>仅在 EcsWorld#setParallelExecutor 设置线程池后生效，否则仍按排序顺序依次更新。不可用于SystemGroup</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ComponentAccess {
+    Class<? extends EcsComponent>[] read() default {};
+
+    Class<? extends EcsComponent>[] write() default {};
+}
@@ -0,0 +1,21 @@
+package top.kgame.lib.ecs.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记EcsSystem将匹配的实体分块并行更新，value为每块的实体数量
+ *
+ * <p>对内置的多组件更新系统（EcsOneComponentUpdateSystem ~ EcsFiveComponentUpdateSystem）生效，
+ * 自定义EcsSystem可以通过forEachChunk使用。</p>
+ * <p>每个实体的update只能读写该实体自己的组件，直接进行结构变更会抛出 ParallelStructuralChangeException，需通过addDelayCommand延迟执行，
+ * 延迟命令按实体顺序提交，与依次更新的结果一致。</p>
+ * <p>仅在 EcsWorld#setParallelExecutor 设置线程池后生效，否则仍在World线程依次更新。</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ParallelChunk {
+    int value();
+}
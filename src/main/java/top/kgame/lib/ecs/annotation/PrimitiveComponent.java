@@ -0,0 +1,21 @@
+package top.kgame.lib.ecs.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记EcsComponent的字段按基本类型数组存储在原型中，不保存组件对象
+ *
+ * <p>组件类只能声明基本类型的实例字段，父类字段不存储。创建实体或添加组件时传入的组件对象只用于提供初始值。</p>
+ * <p>字段只能通过 EcsWorld#createPrimitiveView 创建的 PrimitiveComponentView 读写。</p>
+ * <p><b>EcsEntity#getComponent 和 removeComponent 返回字段值的副本，修改副本不会写回，
+ * 例如 {@code entity.getComponent(Pos.class).x = 1} 不生效。</b></p>
+ * <p>该组件不能作为查询列：EcsOneComponentUpdateSystem 等内置System的泛型参数使用该组件时初始化抛出
+ * InvalidPrimitiveComponentException，需改为通过 getExtraRequirementComponent 额外依赖该组件，在更新中用访问器读写。</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PrimitiveComponent {
+}
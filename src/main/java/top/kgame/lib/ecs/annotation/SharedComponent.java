@@ -0,0 +1,18 @@
+package top.kgame.lib.ecs.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记EcsComponent为共享组件，同一原型的所有实体共享一个值，值只在原型中保存一份
+ *
+ * <p>原型按共享组件的值划分：组件类型相同但共享值不同（equals为false）的实体位于不同的原型，
+ * 查询匹配时这些原型都会命中。组件类需要实现 equals 和 hashCode，值加入原型后不能再修改。</p>
+ * <p>修改实体的共享值需要先移除再添加。添加共享组件不使用原型迁移边缓存。</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SharedComponent {
+}
@@ -0,0 +1,17 @@
+package top.kgame.lib.ecs.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记EcsComponent为标签组件，只作为原型的组成部分参与查询匹配，不按实体存储
+ *
+ * <p>标签组件不应携带数据。同一类型在World中只保留第一次添加的实例，
+ * EcsEntity#getComponent 返回该实例。</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TagComponent {
+}
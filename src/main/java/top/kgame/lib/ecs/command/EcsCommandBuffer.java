@@ -1,22 +1,185 @@
 package top.kgame.lib.ecs.command;
 
-import java.util.LinkedList;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
 
+import java.util.Arrays;
 
+/**
+ * 命令缓冲区，按添加顺序执行，可重复使用。
+ * <p>命令以操作码、实体、参数三个并行数组存放，数组容量不足时翻倍扩容。
+ * 内置的增删组件、销毁实体命令直接编码，不创建命令对象；其他命令以 {@link EcsCommand} 存放。</p>
+ * <p>连续的同类型组件增删命令合并执行，按源原型分组批量迁移实体。</p>
+ */
 public class EcsCommandBuffer {
-    private final LinkedList<EcsCommand> ecsCommands = new LinkedList<>();
+    private static final int INIT_CAPACITY = 16;
+    private static final byte CUSTOM = 0;
+    private static final byte ADD_COMPONENT = 1;
+    private static final byte REMOVE_COMPONENT = 2;
+    private static final byte DESTROY_ENTITY = 3;
+    // 连续同类命令达到该数量时合并执行
+    private static final int BATCH_THRESHOLD = 4;
+
+    private byte[] opcodes = new byte[INIT_CAPACITY];
+    private EcsEntity[] entities = new EcsEntity[INIT_CAPACITY];
+    // CUSTOM: EcsCommand, ADD_COMPONENT: 组件实例, REMOVE_COMPONENT: 组件类型
+    private Object[] arguments = new Object[INIT_CAPACITY];
+    // 下一条待执行的命令
+    private int head = 0;
+    private int size = 0;
+    // 合并执行添加组件时使用
+    private EcsEntity[] batchEntities = new EcsEntity[0];
+    private EcsComponent[] batchComponents = new EcsComponent[0];
 
     public void addCommand(EcsCommand command) {
-        ecsCommands.add(command);
+        append(CUSTOM, null, command);
+    }
+
+    public void addComponent(EcsEntity entity, EcsComponent component) {
+        append(ADD_COMPONENT, entity, component);
+    }
+
+    public void removeComponent(EcsEntity entity, Class<? extends EcsComponent> componentCls) {
+        append(REMOVE_COMPONENT, entity, componentCls);
+    }
+
+    /**
+     * 请求销毁实体，与 {@link EcsCommandDestroyEntity} 相同
+     */
+    public void destroyEntity(EcsEntity entity) {
+        append(DESTROY_ENTITY, entity, null);
     }
 
+    /**
+     * 依次执行所有命令，执行期间新添加的命令也会在本次执行
+     */
+    @SuppressWarnings("unchecked")
     public void execute() {
-        while (!ecsCommands.isEmpty()) {
-            ecsCommands.poll().execute();
+        while (head < size) {
+            int index = head;
+            byte opcode = opcodes[index];
+            if (opcode == ADD_COMPONENT || opcode == REMOVE_COMPONENT) {
+                int end = batchEnd(index);
+                if (end - index >= BATCH_THRESHOLD) {
+                    head = end;
+                    executeBatch(opcode, index, end);
+                    continue;
+                }
+            }
+            head++;
+            EcsEntity entity = entities[index];
+            Object argument = arguments[index];
+            entities[index] = null;
+            arguments[index] = null;
+            switch (opcode) {
+                case ADD_COMPONENT -> entity.addComponent((EcsComponent) argument);
+                case REMOVE_COMPONENT -> entity.removeComponent((Class<? extends EcsComponent>) argument);
+                case DESTROY_ENTITY -> entity.getEcsWorld().requestDestroyEntity(entity);
+                default -> ((EcsCommand) argument).execute();
+            }
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * 从 index 开始，操作码和组件类型都相同的连续命令的结束位置
+     */
+    private int batchEnd(int index) {
+        byte opcode = opcodes[index];
+        Object key = opcode == ADD_COMPONENT ? arguments[index].getClass() : arguments[index];
+        int end = index + 1;
+        while (end < size && opcodes[end] == opcode
+                && key == (opcode == ADD_COMPONENT ? arguments[end].getClass() : arguments[end])) {
+            end++;
+        }
+        return end;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeBatch(byte opcode, int from, int to) {
+        int count = to - from;
+        if (batchEntities.length < count) {
+            batchEntities = new EcsEntity[count];
+            batchComponents = new EcsComponent[count];
+        }
+        for (int i = 0; i < count; i++) {
+            batchEntities[i] = entities[from + i];
+            if (opcode == ADD_COMPONENT) {
+                batchComponents[i] = (EcsComponent) arguments[from + i];
+            }
         }
+        Object argument = arguments[from];
+        Arrays.fill(entities, from, to, null);
+        Arrays.fill(arguments, from, to, null);
+        try {
+            if (opcode == ADD_COMPONENT) {
+                batchEntities[0].getEcsWorld().addComponents(batchEntities, batchComponents, 0, count);
+            } else {
+                batchEntities[0].getEcsWorld().removeComponents(batchEntities, (Class<? extends EcsComponent>) argument, 0, count);
+            }
+        } finally {
+            Arrays.fill(batchEntities, 0, count, null);
+            Arrays.fill(batchComponents, 0, count, null);
+        }
+    }
+
+    /**
+     * 将未执行的命令按顺序追加到目标缓冲区，并清空当前缓冲区
+     */
+    public void moveTo(EcsCommandBuffer target) {
+        for (int i = head; i < size; i++) {
+            target.append(opcodes[i], entities[i], arguments[i]);
+        }
+        clear();
+    }
+
+    public boolean isEmpty() {
+        return head == size;
+    }
+
+    /**
+     * 未执行的命令数量
+     */
+    public int size() {
+        return size - head;
     }
 
     public void clear() {
-        ecsCommands.clear();
+        Arrays.fill(entities, head, size, null);
+        Arrays.fill(arguments, head, size, null);
+        head = 0;
+        size = 0;
+    }
+
+    private void append(byte opcode, EcsEntity entity, Object argument) {
+        if (size == opcodes.length) {
+            grow();
+        }
+        opcodes[size] = opcode;
+        entities[size] = entity;
+        arguments[size] = argument;
+        size++;
+    }
+
+    /**
+     * 已执行的部分足够多时整体前移，否则翻倍扩容
+     */
+    private void grow() {
+        if (head >= opcodes.length / 2) {
+            int count = size - head;
+            System.arraycopy(opcodes, head, opcodes, 0, count);
+            System.arraycopy(entities, head, entities, 0, count);
+            System.arraycopy(arguments, head, arguments, 0, count);
+            Arrays.fill(entities, count, size, null);
+            Arrays.fill(arguments, count, size, null);
+            head = 0;
+            size = count;
+            return;
+        }
+        int newCapacity = opcodes.length * 2;
+        opcodes = Arrays.copyOf(opcodes, newCapacity);
+        entities = Arrays.copyOf(entities, newCapacity);
+        arguments = Arrays.copyOf(arguments, newCapacity);
     }
 }
@@ -0,0 +1,113 @@
+package top.kgame.lib.ecs.command;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界的多生产者单消费者命令队列，无锁。
+ * <p>任意线程都可以调用 {@link #offer(EcsCommand)}，{@link #poll()} 只能由World线程调用。</p>
+ * <p>每个槽位带有序号：生产者通过CAS占用写入位置，写入命令后发布序号；消费者看到序号后读取命令并释放槽位。</p>
+ */
+public class EcsCommandQueue {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<EcsCommand> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    // 只由消费者访问
+    private long consumerIndex = 0;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public EcsCommandQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(this.capacity);
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.setPlain(i, i);
+        }
+    }
+
+    /**
+     * 添加命令，线程安全
+     * @return 队列已满时返回false
+     */
+    public boolean offer(EcsCommand command) {
+        if (command == null) {
+            throw new NullPointerException("command");
+        }
+        while (true) {
+            long index = producerIndex.get();
+            int slot = (int) index & mask;
+            long difference = sequences.getAcquire(slot) - index;
+            if (difference == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    buffer.setPlain(slot, command);
+                    sequences.setRelease(slot, index + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * 取出一个命令，只能由消费者调用
+     * @return 队列为空时返回null
+     */
+    public EcsCommand poll() {
+        int slot = (int) consumerIndex & mask;
+        if (sequences.getAcquire(slot) != consumerIndex + 1) {
+            return null;
+        }
+        EcsCommand command = buffer.getPlain(slot);
+        buffer.setPlain(slot, null);
+        sequences.setRelease(slot, consumerIndex + capacity);
+        consumerIndex++;
+        return command;
+    }
+
+    /**
+     * 执行队列中的命令，单次最多执行容量数量，生产者持续写入时剩余命令留到下次执行
+     * @return 执行的命令数量
+     */
+    public int execute() {
+        int count = 0;
+        EcsCommand command;
+        while (count < capacity && (command = poll()) != null) {
+            command.execute();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 丢弃所有命令，只能由消费者调用
+     */
+    public void clear() {
+        while (poll() != null) {
+            // 丢弃
+        }
+    }
+
+    /**
+     * 估算的命令数量，并发写入时不精确
+     */
+    public int size() {
+        long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
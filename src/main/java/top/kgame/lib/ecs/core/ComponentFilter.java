@@ -18,12 +18,24 @@ public class ComponentFilter implements EcsCleanable {
     private final BitSet any = new BitSet(2);
     // 不能包含任何一个
     private final BitSet none = new BitSet(2);
+    // 需要检查变更版本的组件，同时也在 subset 中
+    private final BitSet changed = new BitSet(2);
+    private int[] changedIndexes = new int[0];
+    // 匹配用的位掩码，与上面的BitSet同步
+    private ComponentMask subsetMask = ComponentMask.EMPTY;
+    private ComponentMask anyMask = ComponentMask.EMPTY;
+    private ComponentMask noneMask = ComponentMask.EMPTY;
 
     @Override
     public void clean() {
         subset.clear();
         any.clear();
         none.clear();
+        changed.clear();
+        changedIndexes = new int[0];
+        subsetMask = ComponentMask.EMPTY;
+        anyMask = ComponentMask.EMPTY;
+        noneMask = ComponentMask.EMPTY;
     }
 
     @Override
@@ -33,12 +45,13 @@ public class ComponentFilter implements EcsCleanable {
         ComponentFilter that = (ComponentFilter) o;
         return Objects.equals(any, that.any) &&
                Objects.equals(none, that.none) &&
-               Objects.equals(subset, that.subset);
+               Objects.equals(subset, that.subset) &&
+               Objects.equals(changed, that.changed);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(subset, any, none);
+        return Objects.hash(subset, any, none, changed);
     }
 
     private void addNone(int componentIndex, Class<? extends EcsComponent> componentClass) {
@@ -51,6 +64,7 @@ public class ComponentFilter implements EcsCleanable {
                 "Component filter conflict: Cannot add " + componentClass.getName() + " to NONE list, it is already in ANY list (cannot require both any-of and must-not-have)");
         }
         none.set(componentIndex);
+        noneMask = ComponentMask.of(none);
     }
 
     private void addSubset(int componentIndex, Class<? extends EcsComponent> componentClass) {
@@ -59,6 +73,13 @@ public class ComponentFilter implements EcsCleanable {
                 "Component filter conflict: Cannot add " + componentClass.getName() + " to ALL list, it is already in NONE list (cannot require both must-have and must-not-have)");
         }
         subset.set(componentIndex);
+        subsetMask = ComponentMask.of(subset);
+    }
+
+    private void addChanged(int componentIndex, Class<? extends EcsComponent> componentClass) {
+        addSubset(componentIndex, componentClass);
+        changed.set(componentIndex);
+        changedIndexes = changed.stream().toArray();
     }
 
     private void addAny(int componentIndex, Class<? extends EcsComponent> componentClass) {
@@ -67,22 +88,51 @@ public class ComponentFilter implements EcsCleanable {
                 "Component filter conflict: Cannot add " + componentClass.getName() + " to ANY list, it is already in NONE list (cannot require both any-of and must-not-have)");
         }
         any.set(componentIndex);
+        anyMask = ComponentMask.of(any);
+    }
+
+    /**
+     * 是否包含变更过滤条件
+     */
+    public boolean hasChangedFilter() {
+        return changedIndexes.length > 0;
+    }
+
+    /**
+     * 需要检查变更版本的组件索引，按升序排列，不要修改返回的数组
+     */
+    public int[] getChangedIndexes() {
+        return changedIndexes;
+    }
+
+    /**
+     * 最小的必需组件索引，没有必需组件时返回 -1
+     */
+    public int firstRequiredIndex() {
+        return subset.nextSetBit(0);
+    }
+
+    /**
+     * 必须包含和任意包含的组件索引，即匹配实体时会读取的组件
+     */
+    BitSet accessBits() {
+        BitSet result = (BitSet) subset.clone();
+        result.or(any);
+        return result;
     }
 
     /**
      * 检查 Archetype 是否符合查询条件
      */
     public boolean isMatchingArchetype(EntityArchetype entityArchetype) {
-        if (entityArchetype.contains(none)) {
+        ComponentMask mask = entityArchetype.getMask();
+        if (mask.intersects(noneMask)) {
             return false;
         }
-        if (!entityArchetype.isSubset(subset)) {
+        if (!mask.containsAll(subsetMask)) {
             return false;
         }
-        if (any.isEmpty()) {
-            return true;
-        }
-        return entityArchetype.contains(any);
+        return anyMask.isEmpty() || mask.intersects(anyMask);
     }
 
     public static ComponentFilter generate(EcsWorld ecsWorld, Collection<ComponentFilterParam<?>> filterParams) {
@@ -93,6 +143,8 @@ public class ComponentFilter implements EcsCleanable {
                 result.addNone(index, param.getType());
             } else if (param.getFilterModeType() == ComponentFilterMode.Subset) {
                 result.addSubset(index, param.getType());
+            } else if (param.getFilterModeType() == ComponentFilterMode.CHANGED) {
+                result.addChanged(index, param.getType());
             } else {
                 result.addAny(index, param.getType());
             }
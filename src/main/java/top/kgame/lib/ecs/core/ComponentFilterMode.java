@@ -4,4 +4,5 @@ public enum ComponentFilterMode {
     Subset,
     NONE,
     ANY,
+    CHANGED,
 }
\ No newline at end of file
@@ -40,6 +40,16 @@ public class ComponentFilterParam<T extends EcsComponent> {
         return componentMatchType;
     }
 
+    /**
+     * 必须包含，并且只遍历上次运行后该组件被写入过的实体块
+     * @see EntityArchetype#markChanged(int, int)
+     */
+    public static <T extends EcsComponent> ComponentFilterParam<T> changed(Class<T> type) {
+        ComponentFilterParam<T> componentMatchType = new ComponentFilterParam<>(ComponentFilterMode.CHANGED);
+        componentMatchType.type = type;
+        return componentMatchType;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,100 @@
+package top.kgame.lib.ecs.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 不可变的组件位掩码，用于原型和查询条件的匹配。
+ * <p>组件索引 0~63 直接存放在 {@code low} 中，少于64种组件时匹配只需一次位运算；
+ * 更高的索引按 64 位一组存放在 {@code high} 中，匹配过程不产生任何对象。</p>
+ */
+public final class ComponentMask {
+    public static final ComponentMask EMPTY = new ComponentMask(0L, new long[0]);
+
+    private final long low;
+    private final long[] high;
+
+    private ComponentMask(long low, long[] high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    public static ComponentMask of(BitSet bitSet) {
+        long[] words = bitSet.toLongArray();
+        if (words.length == 0) {
+            return EMPTY;
+        }
+        return new ComponentMask(words[0], Arrays.copyOfRange(words, 1, words.length));
+    }
+
+    public boolean get(int componentIndex) {
+        if (componentIndex < 0) {
+            return false;
+        }
+        if (componentIndex < Long.SIZE) {
+            return (low & (1L << componentIndex)) != 0;
+        }
+        int word = (componentIndex >>> 6) - 1;
+        return word < high.length && (high[word] & (1L << componentIndex)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return low == 0 && high.length == 0;
+    }
+
+    /**
+     * (this &amp; other) == other
+     */
+    public boolean containsAll(ComponentMask other) {
+        if ((low & other.low) != other.low) {
+            return false;
+        }
+        long[] otherHigh = other.high;
+        for (int i = 0; i < otherHigh.length; i++) {
+            long word = i < high.length ? high[i] : 0L;
+            if ((word & otherHigh[i]) != otherHigh[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * (this &amp; other) != 0
+     */
+    public boolean intersects(ComponentMask other) {
+        if ((low & other.low) != 0) {
+            return true;
+        }
+        int length = Math.min(high.length, other.high.length);
+        for (int i = 0; i < length; i++) {
+            if ((high[i] & other.high[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ComponentMask that = (ComponentMask) o;
+        return low == that.low && Arrays.equals(high, that.high);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(low) + Arrays.hashCode(high);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("ComponentMask{");
+        result.append(Long.toBinaryString(low));
+        for (long word : high) {
+            result.append(",").append(Long.toBinaryString(word));
+        }
+        return result.append("}").toString();
+    }
+}
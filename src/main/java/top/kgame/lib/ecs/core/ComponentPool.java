@@ -0,0 +1,47 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+import java.util.Arrays;
+
+/**
+ * 单一组件类型的对象池，优先复用最近回收的实例，超过上限的实例直接丢弃
+ */
+class ComponentPool {
+    static final int MAX_SIZE = 4096;
+    private static final int INIT_CAPACITY = 16;
+
+    private EcsComponent[] components = new EcsComponent[INIT_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @return 池为空时返回null
+     */
+    EcsComponent poll() {
+        if (size == 0) {
+            return null;
+        }
+        EcsComponent component = components[--size];
+        components[size] = null;
+        return component;
+    }
+
+    void release(EcsComponent component) {
+        if (size == MAX_SIZE) {
+            return;
+        }
+        if (size == components.length) {
+            components = Arrays.copyOf(components, Math.min(components.length * 2, MAX_SIZE));
+        }
+        components[size++] = component;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(components, 0, size, null);
+        size = 0;
+    }
+}
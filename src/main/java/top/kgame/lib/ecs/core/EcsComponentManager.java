@@ -1,15 +1,20 @@
 package top.kgame.lib.ecs.core;
 
 import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.PrimitiveComponent;
+import top.kgame.lib.ecs.annotation.SharedComponent;
+import top.kgame.lib.ecs.annotation.TagComponent;
 import top.kgame.lib.ecs.exception.NoDefaultConstructorException;
 import top.kgame.lib.ecs.tools.EcsClassScanner;
 import top.kgame.lib.ecs.tools.EcsUtils;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class EcsComponentManager {
     private static final int INVALID_INDEX = -1;
@@ -17,6 +22,17 @@ public class EcsComponentManager {
     private final Map<Class<? extends EcsComponent>, Integer> classMap = new HashMap<>();
     private final Map<Integer, Class<? extends EcsComponent>> indextMap = new HashMap<>();
     private int componentIndex = 0;
+    // 组件索引 -> 对象池，只有实现 EcsPoolable 的组件类型才有
+    private ComponentPool[] pools = new ComponentPool[0];
+    // 组件索引 -> 字段布局，只有标记 @PrimitiveComponent 的组件类型才有
+    private PrimitiveLayout[] primitiveLayouts = new PrimitiveLayout[0];
+    // 标记 @TagComponent 和 @SharedComponent 的组件索引
+    private final BitSet tagIndexes = new BitSet();
+    private final BitSet sharedIndexes = new BitSet();
+    // 组件索引 -> 标签组件实例，第一次添加时记录
+    private EcsComponent[] tagInstances = new EcsComponent[0];
+    // 组件写入版本，System运行前后各推进一次，并行阶段可能被多个线程推进
+    private final AtomicInteger changeVersion = new AtomicInteger(1);
 
     public void register(EcsClassScanner ecsClassScanner) {
         for (Class<? extends EcsComponent> componentClass : ecsClassScanner.getComponentClasses()) {
@@ -26,6 +42,53 @@ public class EcsComponentManager {
                return index;
             });
         }
+        pools = Arrays.copyOf(pools, componentIndex);
+        primitiveLayouts = Arrays.copyOf(primitiveLayouts, componentIndex);
+        tagInstances = Arrays.copyOf(tagInstances, componentIndex);
+        for (Map.Entry<Integer, Class<? extends EcsComponent>> entry : indextMap.entrySet()) {
+            int index = entry.getKey();
+            Class<? extends EcsComponent> componentClass = entry.getValue();
+            if (EcsPoolable.class.isAssignableFrom(componentClass) && pools[index] == null) {
+                pools[index] = new ComponentPool();
+            }
+            if (componentClass.isAnnotationPresent(PrimitiveComponent.class) && primitiveLayouts[index] == null) {
+                primitiveLayouts[index] = PrimitiveLayout.of(componentClass);
+            }
+            if (componentClass.isAnnotationPresent(TagComponent.class)) {
+                tagIndexes.set(index);
+            } else if (componentClass.isAnnotationPresent(SharedComponent.class)) {
+                sharedIndexes.set(index);
+            }
+        }
+    }
+
+    /**
+     * 当前的组件写入版本，写入组件时记录到原型中
+     */
+    public int getChangeVersion() {
+        return changeVersion.get();
+    }
+
+    /**
+     * 推进组件写入版本
+     * @return 推进后的版本
+     */
+    public int advanceChangeVersion() {
+        return changeVersion.incrementAndGet();
+    }
+
+    /**
+     * 已注册的组件类型数量，组件索引范围为 [0, getComponentCount())
+     */
+    public int getComponentCount() {
+        return componentIndex;
+    }
+
+    /**
+     * @return 索引未注册时返回null
+     */
+    public Class<? extends EcsComponent> getComponentClass(int index) {
+        return indextMap.get(index);
     }
 
     public int getComponentIndex(Class<? extends EcsComponent> componentClass) {
@@ -45,6 +108,104 @@ public class EcsComponentManager {
         return bitSet;
     }
 
+    public boolean isTag(int index) {
+        return index >= 0 && tagIndexes.get(index);
+    }
+
+    public boolean isShared(int index) {
+        return index >= 0 && sharedIndexes.get(index);
+    }
+
+    public boolean isPrimitive(int index) {
+        return getPrimitiveLayout(index) != null;
+    }
+
+    /**
+     * 标签组件和共享组件不按实体存储，值保存在原型中
+     */
+    public boolean isArchetypeLevel(int index) {
+        return isTag(index) || isShared(index);
+    }
+
+    /**
+     * 记录标签组件实例，同一类型只保留第一次记录的实例
+     */
+    void recordTag(int index, EcsComponent component) {
+        if (isTag(index) && tagInstances[index] == null) {
+            tagInstances[index] = component;
+        }
+    }
+
+    EcsComponent getTagInstance(int index) {
+        return isTag(index) ? tagInstances[index] : null;
+    }
+
+    /**
+     * 从对象池获取组件实例，池为空时新建
+     * @throws IllegalArgumentException 组件类型没有实现 EcsPoolable
+     */
+    public <T extends EcsComponent> T obtainComponent(Class<T> componentClass) {
+        ComponentPool pool = getPool(getComponentIndex(componentClass));
+        if (pool == null) {
+            throw new IllegalArgumentException("Component " + componentClass.getName() + " is not poolable");
+        }
+        EcsComponent component = pool.poll();
+        return component == null ? createComponent(componentClass) : componentClass.cast(component);
+    }
+
+    /**
+     * 回收组件实例，组件类型不可回收时忽略
+     */
+    void releaseComponent(int componentIndex, EcsComponent component) {
+        ComponentPool pool = getPool(componentIndex);
+        if (pool != null) {
+            pool.release(component);
+        }
+    }
+
+    /**
+     * 对象池中可复用的组件数量，组件类型不可回收时返回0
+     */
+    public int getPooledCount(Class<? extends EcsComponent> componentClass) {
+        ComponentPool pool = getPool(getComponentIndex(componentClass));
+        return pool == null ? 0 : pool.size();
+    }
+
+    public void clearPools() {
+        for (ComponentPool pool : pools) {
+            if (pool != null) {
+                pool.clear();
+            }
+        }
+    }
+
+    /**
+     * 创建基本类型组件的访问器
+     * @throws IllegalArgumentException 组件类型没有标记 @PrimitiveComponent
+     */
+    public PrimitiveComponentView createPrimitiveView(Class<? extends EcsComponent> componentClass) {
+        int index = getComponentIndex(componentClass);
+        PrimitiveLayout layout = getPrimitiveLayout(index);
+        if (layout == null) {
+            throw new IllegalArgumentException("Component " + componentClass.getName() + " is not a primitive component");
+        }
+        return new PrimitiveComponentView(layout, index);
+    }
+
+    PrimitiveLayout getPrimitiveLayout(int index) {
+        if (index < 0 || index >= primitiveLayouts.length) {
+            return null;
+        }
+        return primitiveLayouts[index];
+    }
+
+    private ComponentPool getPool(int index) {
+        if (index < 0 || index >= pools.length) {
+            return null;
+        }
+        return pools[index];
+    }
+
     public  <T extends EcsComponent>  T createComponent(Class<T> c) {
         try {
             return c.getDeclaredConstructor().newInstance();
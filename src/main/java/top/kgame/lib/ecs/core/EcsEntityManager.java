@@ -7,22 +7,50 @@ import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.EcsWorld;
 import top.kgame.lib.ecs.exception.InvalidEcsEntityFactoryException;
 import top.kgame.lib.ecs.exception.NoDefaultConstructorException;
+import top.kgame.lib.ecs.exception.ParallelStructuralChangeException;
 import top.kgame.lib.ecs.tools.EcsClassScanner;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class EcsEntityManager implements EcsCleanable {
     private static final Logger logger = LogManager.getLogger(EcsEntityManager.class);
+    /**
+     * 实体槽位数量上限，包含不分配实体的0号槽位
+     */
+    public static final int MAX_ENTITY_SLOT_COUNT = EntityRegistry.INDEX_MASK + 1;
+    /**
+     * 实体槽位代数上限，代数达到上限的槽位释放后停用
+     */
+    public static final int MAX_ENTITY_GENERATION = EntityRegistry.GENERATION_MASK;
 
     private final EcsWorld ecsWorld;
-    private final Map<BitSet, EntityArchetype> entityArchetypes = new HashMap<>();
-    private final List<EntityQuery> entityQueries = new ArrayList<>();
-    private final Map<Integer, EcsEntity> entityIndex = new HashMap<>();
+    private final Map<ArchetypeKey, EntityArchetype> entityArchetypes = new HashMap<>();
+    private final Map<ComponentFilter, EntityQuery> entityQueries = new HashMap<>();
+    // 按查询的某个必需组件索引分桶，新原型只需检测自身包含组件对应的桶
+    private final List<List<EntityQuery>> requiredComponentQueries = new ArrayList<>();
+    // 没有必需组件的查询，新原型都需要检测
+    private final List<EntityQuery> unconditionalQueries = new ArrayList<>();
+    private final EntityRegistry entityRegistry = new EntityRegistry();
     private final EntityFactoryIndex entityFactoryIndex = new EntityFactoryIndex();
     private final EcsComponentManager componentManager = new EcsComponentManager();
 
-    private int entitiesNextIndex = 1;
+    // 组件索引 -> World单例组件
+    private EcsComponent[] singletons = new EcsComponent[0];
+    // 组件索引 -> 单例最近一次设置、移除或标记修改时的写入版本
+    private int[] singletonVersions = new int[0];
+
+    private long transitionHitCount = 0;
+    private long transitionMissCount = 0;
+    // 批量迁移使用的临时数组：待处理的实体和组件、当前分组的实体和组件
+    private EcsEntity[] pendingEntities = new EcsEntity[0];
+    private EcsComponent[] pendingComponents = new EcsComponent[0];
+    private EcsEntity[] groupEntities = new EcsEntity[0];
+    private EcsComponent[] groupComponents = new EcsComponent[0];
+    // 正在进行的并行更新数量，大于0时其他线程可能同时在读写原型和实体注册表
+    private final AtomicInteger parallelUpdates = new AtomicInteger();
 
     public EcsEntityManager(final EcsWorld ecsWorld) {
         this.ecsWorld = ecsWorld;
@@ -32,10 +60,16 @@ public class EcsEntityManager implements EcsCleanable {
     public void clean() {
         entityArchetypes.values().forEach(EntityArchetype::clean);
         entityArchetypes.clear();
-        entityQueries.forEach(EntityQuery::clean);
+        entityQueries.values().forEach(EntityQuery::clean);
         entityQueries.clear();
-        entityIndex.clear();
+        requiredComponentQueries.clear();
+        unconditionalQueries.clear();
+        entityRegistry.clear();
         entityFactoryIndex.clear();
+        componentManager.clearPools();
+        Arrays.fill(singletons, null);
+        Arrays.fill(singletonVersions, 0);
+        logger.debug("archetype transition cache hit:{} miss:{}", transitionHitCount, transitionMissCount);
     }
 
     public void register(EcsClassScanner ecsClassScanner) {
@@ -52,19 +86,156 @@ public class EcsEntityManager implements EcsCleanable {
     }
 
     public EcsEntity getEntity(int index) {
-        return entityIndex.get(index);
+        return entityRegistry.get(index);
     }
 
     public Collection<EcsEntity> getAllEntity() {
-        return entityIndex.values();
+        return entityRegistry.values();
+    }
+
+    /**
+     * 所有已创建原型的只读视图
+     */
+    public Collection<EntityArchetype> getArchetypes() {
+        return Collections.unmodifiableCollection(entityArchetypes.values());
+    }
+
+    public int getComponentCount() {
+        return componentManager.getComponentCount();
+    }
+
+    public Class<? extends EcsComponent> getComponentClass(int index) {
+        return componentManager.getComponentClass(index);
     }
 
     public int getComponentIndex(Class<? extends EcsComponent> type) {
         return componentManager.getComponentIndex(type);
     }
 
+    public boolean isPrimitiveComponent(int index) {
+        return componentManager.isPrimitive(index);
+    }
+
+    public int getChangeVersion() {
+        return componentManager.getChangeVersion();
+    }
+
+    public int advanceChangeVersion() {
+        return componentManager.advanceChangeVersion();
+    }
+
+    /**
+     * 从对象池获取组件实例，池为空时新建
+     * @see EcsPoolable
+     */
+    public <T extends EcsComponent> T obtainComponent(Class<T> componentClass) {
+        return componentManager.obtainComponent(componentClass);
+    }
+
+    /**
+     * @see EcsComponentManager#createPrimitiveView(Class)
+     */
+    public PrimitiveComponentView createPrimitiveView(Class<? extends EcsComponent> componentClass) {
+        return componentManager.createPrimitiveView(componentClass);
+    }
+
+    public int getPooledComponentCount(Class<? extends EcsComponent> componentClass) {
+        return componentManager.getPooledCount(componentClass);
+    }
+
+    /**
+     * 设置World单例组件，同类型已存在时替换
+     * @return 被替换的旧值，没有时返回null
+     */
+    public EcsComponent setSingleton(EcsComponent component) {
+        checkStructuralChange();
+        Class<? extends EcsComponent> componentClass = component.getClass();
+        int componentIndex = getComponentIndex(componentClass);
+        if (componentIndex < 0) {
+            throw new IllegalArgumentException("Component " + componentClass.getName() + " is not registered in EcsWorld");
+        }
+        if (componentIndex >= singletons.length) {
+            int length = Math.max(componentIndex + 1, singletons.length * 2);
+            singletons = Arrays.copyOf(singletons, length);
+            singletonVersions = Arrays.copyOf(singletonVersions, length);
+        }
+        EcsComponent old = singletons[componentIndex];
+        singletons[componentIndex] = component;
+        singletonVersions[componentIndex] = componentManager.getChangeVersion();
+        return old;
+    }
+
+    /**
+     * @return 不存在时返回null
+     */
+    public EcsComponent getSingleton(int componentIndex) {
+        if (componentIndex < 0 || componentIndex >= singletons.length) {
+            return null;
+        }
+        return singletons[componentIndex];
+    }
+
+    /**
+     * @return 被移除的值，不存在时返回null
+     */
+    public EcsComponent removeSingleton(int componentIndex) {
+        checkStructuralChange();
+        EcsComponent old = getSingleton(componentIndex);
+        if (old != null) {
+            singletons[componentIndex] = null;
+            singletonVersions[componentIndex] = componentManager.getChangeVersion();
+        }
+        return old;
+    }
+
+    /**
+     * 单例的字段被直接修改后调用，记录当前写入版本
+     */
+    public void markSingletonChanged(int componentIndex) {
+        if (getSingleton(componentIndex) != null) {
+            singletonVersions[componentIndex] = componentManager.getChangeVersion();
+        }
+    }
+
+    /**
+     * 单例最近一次设置、移除或标记修改时的写入版本，从未写入过时为0
+     */
+    public int getSingletonChangeVersion(int componentIndex) {
+        if (componentIndex < 0 || componentIndex >= singletonVersions.length) {
+            return 0;
+        }
+        return singletonVersions[componentIndex];
+    }
+
+    /**
+     * 所有单例写入版本的拷贝，按组件索引
+     */
+    public int[] getSingletonChangeVersions() {
+        return singletonVersions.clone();
+    }
+
+    /**
+     * 回滚时恢复记录的单例写入版本
+     * @see #getSingletonChangeVersions()
+     */
+    public void restoreSingletonChangeVersions(int[] versions) {
+        if (versions.length > singletons.length) {
+            singletons = Arrays.copyOf(singletons, versions.length);
+        }
+        singletonVersions = Arrays.copyOf(versions, singletons.length);
+    }
+
+    /**
+     * 获取不含共享组件值的原型
+     */
     public EntityArchetype getArchetype(BitSet newBitset) {
-        return  entityArchetypes.get(newBitset);
+        return  entityArchetypes.get(new ArchetypeKey(newBitset, List.of()));
+    }
+
+    /**
+     * 原型的查找键：组件位集和共享组件的值
+     */
+    private record ArchetypeKey(BitSet bitSet, List<EcsComponent> sharedValues) {
     }
 
     private static class EntityFactoryIndex {
@@ -106,64 +277,489 @@ public class EcsEntityManager implements EcsCleanable {
         return entityFactoryIndex.get(clazz);
     }
 
+    /**
+     * 并行更新开始，结束时调用 {@link #endParallelUpdate()}，可以嵌套
+     */
+    public void beginParallelUpdate() {
+        parallelUpdates.incrementAndGet();
+    }
+
+    public void endParallelUpdate() {
+        parallelUpdates.decrementAndGet();
+    }
+
+    /**
+     * 增删组件、创建和销毁实体前调用，并行更新期间结构变更需通过延迟命令执行
+     * @throws ParallelStructuralChangeException 正在并行更新
+     */
+    public void checkStructuralChange() {
+        if (parallelUpdates.get() > 0) {
+            throw new ParallelStructuralChangeException(
+                    "structural change is not allowed during parallel update, use addDelayCommand instead");
+        }
+    }
+
     public EcsEntity createEntityInstance(int typeId, Collection<? extends EcsComponent> components) {
-        EcsEntity entity = new EcsEntity(this, entitiesNextIndex++, typeId, components);
-        entity.init();
-        entityIndex.put(entity.getIndex(), entity);
+        checkStructuralChange();
+        EcsEntity entity = new EcsEntity(this, entityRegistry.allocate(), typeId);
+        entity.init(components);
+        entityRegistry.put(entity);
         return entity;
     }
 
+    /**
+     * 批量创建同一类型的实体，实体ID一次性分配。
+     * <p>以第一个实体的原型为准预留存储空间，后续组件类型一致的实体直接放入该原型，不一致时按单个实体处理。</p>
+     */
+    public EcsEntity[] createEntityInstances(int typeId, int count, Supplier<? extends Collection<? extends EcsComponent>> componentSupplier) {
+        checkStructuralChange();
+        EcsEntity[] result = new EcsEntity[count];
+        if (count <= 0) {
+            return result;
+        }
+        int[] ids = new int[count];
+        entityRegistry.allocate(ids);
+        EntityArchetype archetype = null;
+        for (int i = 0; i < count; i++) {
+            Collection<? extends EcsComponent> components = componentSupplier.get();
+            EcsEntity entity = new EcsEntity(this, ids[i], typeId);
+            if (archetype != null && archetype.matchComponents(components)) {
+                entity.init(archetype, components);
+            } else {
+                entity.init(components);
+                if (archetype == null) {
+                    archetype = entity.getArchetype();
+                    archetype.reserve(count - 1);
+                }
+            }
+            entityRegistry.put(entity);
+            result[i] = entity;
+        }
+        return result;
+    }
+
+    public int getEntitySlotCount() {
+        return entityRegistry.slotCount();
+    }
+
+    public int getEntityGeneration(int slot) {
+        return entityRegistry.generation(slot);
+    }
+
+    /**
+     * 将槽位 [from, from + length) 的代数拷贝到 dest 开头
+     */
+    public void copyEntityGenerations(int from, int[] dest, int length) {
+        entityRegistry.copyGenerations(from, dest, length);
+    }
+
+    /**
+     * 空闲的实体槽位，按复用顺序排列
+     */
+    public int[] getFreeEntitySlots() {
+        return entityRegistry.freeSlots();
+    }
+
+    /**
+     * 从存档恢复实体槽位状态，恢复后分配的实体ID与存档时一致。只能在没有实体时调用。
+     * <p>随后用 {@link #restoreEntities(EntityArchetype, int[], int[], int)} 恢复实体，最后调用 {@link #finishRestoreEntities()}。</p>
+     * @throws IllegalStateException 已经存在实体
+     * @throws IllegalArgumentException 槽位数量超过 {@link #MAX_ENTITY_SLOT_COUNT}、代数超出 [0, {@link #MAX_ENTITY_GENERATION}] 或空闲槽位超出槽位范围
+     */
+    public void restoreEntitySlots(int slotCount, int[] generations, int[] freeSlots) {
+        entityRegistry.restoreSlots(slotCount, generations, freeSlots);
+    }
+
+    /**
+     * 以存档中的ID批量恢复实体到指定原型，组件列为空，由调用者通过 {@link EntityArchetype#setComponent(int, int, EcsComponent)} 填充
+     * @return 恢复的实体，第i个实体的行号为 result[0].getRow() + i
+     * @throws IllegalArgumentException ID与恢复的槽位状态不一致，此时这一批实体都未恢复
+     */
+    public EcsEntity[] restoreEntities(EntityArchetype archetype, int[] ids, int[] types, int count) {
+        EcsEntity[] result = new EcsEntity[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new EcsEntity(this, ids[i], types[i]);
+            try {
+                entityRegistry.restore(result[i]);
+            } catch (IllegalArgumentException e) {
+                for (int j = 0; j < i; j++) {
+                    entityRegistry.remove(result[j]);
+                }
+                throw e;
+            }
+        }
+        archetype.addEntities(result, count);
+        return result;
+    }
+
+    public void finishRestoreEntities() {
+        entityRegistry.finishRestore();
+    }
+
     public EntityArchetype getOrCreateArchetype(Collection<Class<? extends EcsComponent>> components) {
-        BitSet bitSet = componentManager.generateBitSet(components);
-        EntityArchetype existArchetype = entityArchetypes.get(bitSet);
+        return getOrCreateArchetype(components, List.of());
+    }
+
+    /**
+     * 按组件类型和组件实例中共享组件的值查找原型，不存在时创建
+     */
+    public EntityArchetype getOrCreateArchetype(Collection<Class<? extends EcsComponent>> componentTypes,
+                                                Collection<? extends EcsComponent> components) {
+        List<EcsComponent> sharedValues = List.of();
+        for (EcsComponent component : components) {
+            int componentIndex = componentManager.getComponentIndex(component.getClass());
+            componentManager.recordTag(componentIndex, component);
+            if (componentManager.isShared(componentIndex)) {
+                sharedValues = insertSharedValue(sharedValues, componentIndex, component);
+            }
+        }
+        BitSet bitSet = componentManager.generateBitSet(componentTypes);
+        EntityArchetype existArchetype = entityArchetypes.get(new ArchetypeKey(bitSet, sharedValues));
         if (existArchetype != null) {
             return existArchetype;
         }
-        return createArchetype(bitSet, components);
+        return createArchetype(bitSet, componentTypes, sharedValues);
+    }
+
+    /**
+     * 获取在源原型基础上添加指定组件实例后的原型。
+     * <p>共享组件的目标原型由值决定，不使用迁移边缓存；其他组件同 {@link #getArchetypeAfterAdd(EntityArchetype, int, Class)}。</p>
+     */
+    public EntityArchetype getArchetypeAfterAdd(EntityArchetype source, int componentIndex, EcsComponent component) {
+        Class<? extends EcsComponent> componentClass = component.getClass();
+        componentManager.recordTag(componentIndex, component);
+        if (!componentManager.isShared(componentIndex)) {
+            return getArchetypeAfterAdd(source, componentIndex, componentClass);
+        }
+        transitionMissCount++;
+        BitSet newBitset = source.bitSet();
+        newBitset.set(componentIndex);
+        List<EcsComponent> sharedValues = insertSharedValue(source.getSharedValues(), componentIndex, component);
+        EntityArchetype target = entityArchetypes.get(new ArchetypeKey(newBitset, sharedValues));
+        if (null == target) {
+            Set<Class<? extends EcsComponent>> newTypes = new HashSet<>(source.getComponentTypes());
+            newTypes.add(componentClass);
+            target = createArchetype(newBitset, newTypes, sharedValues);
+        }
+        target.setRemoveTransition(componentIndex, source);
+        return target;
+    }
+
+    private List<EcsComponent> removeSharedValue(List<EcsComponent> sharedValues, int componentIndex) {
+        List<EcsComponent> result = new ArrayList<>(sharedValues.size());
+        for (EcsComponent value : sharedValues) {
+            if (componentManager.getComponentIndex(value.getClass()) != componentIndex) {
+                result.add(value);
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * 在按组件索引升序排列的共享值中插入一个值，同类型已存在时保持不变
+     */
+    private List<EcsComponent> insertSharedValue(List<EcsComponent> sharedValues, int componentIndex, EcsComponent component) {
+        List<EcsComponent> result = new ArrayList<>(sharedValues.size() + 1);
+        boolean inserted = false;
+        for (EcsComponent value : sharedValues) {
+            int valueIndex = componentManager.getComponentIndex(value.getClass());
+            if (valueIndex == componentIndex) {
+                return sharedValues;
+            }
+            if (!inserted && valueIndex > componentIndex) {
+                result.add(component);
+                inserted = true;
+            }
+            result.add(value);
+        }
+        if (!inserted) {
+            result.add(component);
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * 获取在源原型基础上添加指定组件后的原型，优先使用源原型上缓存的迁移边
+     */
+    public EntityArchetype getArchetypeAfterAdd(EntityArchetype source, int componentIndex, Class<? extends EcsComponent> componentClass) {
+        EntityArchetype target = source.getAddTransition(componentIndex);
+        if (target != null) {
+            transitionHitCount++;
+            return target;
+        }
+        transitionMissCount++;
+        BitSet newBitset = source.bitSet();
+        newBitset.set(componentIndex);
+        target = entityArchetypes.get(new ArchetypeKey(newBitset, source.getSharedValues()));
+        if (null == target) {
+            Set<Class<? extends EcsComponent>> newTypes = new HashSet<>(source.getComponentTypes());
+            newTypes.add(componentClass);
+            target = createArchetype(newBitset, newTypes, source.getSharedValues());
+        }
+        source.setAddTransition(componentIndex, target);
+        target.setRemoveTransition(componentIndex, source);
+        return target;
+    }
+
+    /**
+     * 获取在源原型基础上移除指定组件后的原型，优先使用源原型上缓存的迁移边
+     */
+    public EntityArchetype getArchetypeAfterRemove(EntityArchetype source, int componentIndex, Class<? extends EcsComponent> componentClass) {
+        EntityArchetype target = source.getRemoveTransition(componentIndex);
+        if (target != null) {
+            transitionHitCount++;
+            return target;
+        }
+        transitionMissCount++;
+        BitSet newBitset = source.bitSet();
+        newBitset.clear(componentIndex);
+        boolean shared = componentManager.isShared(componentIndex);
+        List<EcsComponent> sharedValues = source.getSharedValues();
+        if (shared) {
+            sharedValues = removeSharedValue(sharedValues, componentIndex);
+        }
+        target = entityArchetypes.get(new ArchetypeKey(newBitset, sharedValues));
+        if (null == target) {
+            Set<Class<? extends EcsComponent>> newTypes = new HashSet<>(source.getComponentTypes());
+            newTypes.remove(componentClass);
+            target = createArchetype(newBitset, newTypes, sharedValues);
+        }
+        source.setRemoveTransition(componentIndex, target);
+        // 添加共享组件的目标原型由值决定，不缓存反向的添加迁移边
+        if (!shared) {
+            target.setAddTransition(componentIndex, source);
+        }
+        return target;
+    }
+
+    /**
+     * 批量为实体添加同一类型的组件，按源原型分组迁移，每组只查找一次目标原型
+     * <p>结果与逐个调用 {@link EcsEntity#addComponent(EcsComponent)} 相同，目标原型中的行按源原型分组排列。</p>
+     * @return 成功添加的数量
+     */
+    public int addComponents(EcsEntity[] entities, EcsComponent[] components, int from, int to) {
+        checkStructuralChange();
+        if (from >= to) {
+            return 0;
+        }
+        Class<? extends EcsComponent> componentClass = components[from].getClass();
+        int componentIndex = getComponentIndex(componentClass);
+        if (componentIndex < 0) {
+            throw new IllegalArgumentException("Component " + componentClass.getName() + " is not registered in EcsWorld");
+        }
+        if (componentManager.isShared(componentIndex)) {
+            // 共享组件的目标原型取决于各自的值，逐个添加
+            int added = 0;
+            for (int i = from; i < to; i++) {
+                if (entities[i].addComponent(components[i])) {
+                    added++;
+                }
+            }
+            return added;
+        }
+        componentManager.recordTag(componentIndex, components[from]);
+        ensureBatchCapacity(to - from);
+        int pending = 0;
+        for (int i = from; i < to; i++) {
+            EcsEntity entity = entities[i];
+            EntityArchetype archetype = entity.getArchetype();
+            if (archetype.hasComponent(componentIndex)) {
+                logger.warn("add component failed! reason: component already exists of entity:{} componentType:{}",
+                        entity.getIndex(), componentClass.getSimpleName());
+                continue;
+            }
+            if (archetype == EntityArchetype.EMPTY_INSTANCE) {
+                logger.warn("add component failed! reason: entity has been destroyed. entity:{} componentType:{}",
+                        entity.getIndex(), componentClass.getSimpleName());
+                continue;
+            }
+            pendingEntities[pending] = entity;
+            pendingComponents[pending] = components[i];
+            pending++;
+        }
+        int added = 0;
+        while (pending > 0) {
+            EntityArchetype source = pendingEntities[0].getArchetype();
+            int groupSize = takeGroup(source, pending, true);
+            pending -= groupSize;
+            EntityArchetype target = getArchetypeAfterAdd(source, componentIndex, componentClass);
+            added += target.moveEntities(source, groupEntities, groupComponents, componentIndex, groupSize);
+        }
+        clearBatch(to - from);
+        return added;
+    }
+
+    /**
+     * 批量移除实体的同一类型组件，按源原型分组迁移，每组只查找一次目标原型
+     * <p>结果与逐个调用 {@link EcsEntity#removeComponent(Class)} 相同，目标原型中的行按源原型分组排列。</p>
+     * @return 成功移除的数量
+     */
+    public int removeComponents(EcsEntity[] entities, Class<? extends EcsComponent> componentClass, int from, int to) {
+        checkStructuralChange();
+        if (from >= to) {
+            return 0;
+        }
+        int componentIndex = getComponentIndex(componentClass);
+        ensureBatchCapacity(to - from);
+        int pending = 0;
+        for (int i = from; i < to; i++) {
+            EcsEntity entity = entities[i];
+            if (entity.getArchetype().hasComponent(componentIndex)) {
+                pendingEntities[pending++] = entity;
+            }
+        }
+        int removed = 0;
+        while (pending > 0) {
+            EntityArchetype source = pendingEntities[0].getArchetype();
+            int groupSize = takeGroup(source, pending, false);
+            pending -= groupSize;
+            EntityArchetype target = getArchetypeAfterRemove(source, componentIndex, componentClass);
+            removed += target.moveEntities(source, groupEntities, null, componentIndex, groupSize);
+        }
+        clearBatch(to - from);
+        return removed;
+    }
+
+    /**
+     * 将待处理实体中位于 source 的部分取出到分组数组，其余实体保持顺序前移
+     * @return 分组的实体数量
+     */
+    private int takeGroup(EntityArchetype source, int pending, boolean withComponent) {
+        int groupSize = 0;
+        int rest = 0;
+        for (int i = 0; i < pending; i++) {
+            EcsEntity entity = pendingEntities[i];
+            if (entity.getArchetype() == source) {
+                groupEntities[groupSize] = entity;
+                if (withComponent) {
+                    groupComponents[groupSize] = pendingComponents[i];
+                }
+                groupSize++;
+            } else {
+                pendingEntities[rest] = entity;
+                if (withComponent) {
+                    pendingComponents[rest] = pendingComponents[i];
+                }
+                rest++;
+            }
+        }
+        return groupSize;
+    }
+
+    private void ensureBatchCapacity(int capacity) {
+        if (pendingEntities.length >= capacity) {
+            return;
+        }
+        pendingEntities = new EcsEntity[capacity];
+        pendingComponents = new EcsComponent[capacity];
+        groupEntities = new EcsEntity[capacity];
+        groupComponents = new EcsComponent[capacity];
+    }
+
+    private void clearBatch(int count) {
+        Arrays.fill(pendingEntities, 0, count, null);
+        Arrays.fill(pendingComponents, 0, count, null);
+        Arrays.fill(groupEntities, 0, count, null);
+        Arrays.fill(groupComponents, 0, count, null);
+    }
+
+    /**
+     * 原型迁移边缓存命中次数
+     */
+    public long getTransitionHitCount() {
+        return transitionHitCount;
+    }
+
+    /**
+     * 原型迁移边缓存未命中次数
+     */
+    public long getTransitionMissCount() {
+        return transitionMissCount;
     }
 
     public EntityArchetype createArchetype(BitSet bitSet, Collection<Class<? extends EcsComponent>> components) {
-        EntityArchetype entityArchetype = EntityArchetype.newInstance(bitSet, components);
-        entityArchetypes.put(entityArchetype.bitSet(), entityArchetype);
-        entityQueries.forEach(entityQuery -> entityQuery.tryAddArchetype(entityArchetype));
+        return createArchetype(bitSet, components, List.of());
+    }
+
+    public EntityArchetype createArchetype(BitSet bitSet, Collection<Class<? extends EcsComponent>> components, List<EcsComponent> sharedValues) {
+        EntityArchetype entityArchetype = EntityArchetype.newInstance(bitSet, components, sharedValues, componentManager);
+        entityArchetypes.put(new ArchetypeKey(entityArchetype.bitSet(), sharedValues), entityArchetype);
+        for (int i = bitSet.nextSetBit(0); i >= 0 && i < requiredComponentQueries.size(); i = bitSet.nextSetBit(i + 1)) {
+            for (EntityQuery entityQuery : requiredComponentQueries.get(i)) {
+                entityQuery.tryAddArchetype(entityArchetype);
+            }
+        }
+        for (EntityQuery entityQuery : unconditionalQueries) {
+            entityQuery.tryAddArchetype(entityArchetype);
+        }
         return entityArchetype;
     }
 
-    private boolean notExistEntity(EcsEntity entity) {
-        if (entitiesNextIndex < entity.getIndex()) {
-            return true;
+    /**
+     * 所有查询的结构变更日志
+     */
+    public List<QueryJournal> getQueryJournals() {
+        List<QueryJournal> result = new ArrayList<>();
+        for (EntityQuery entityQuery : entityQueries.values()) {
+            result.addAll(Arrays.asList(entityQuery.getJournals()));
         }
-        return !entityIndex.containsKey(entity.getIndex());
+        return result;
     }
 
     public EntityQuery findOrCreateEntityQuery(ComponentFilter componentFilter) {
-        EntityQuery entityQuery = null;
-        for (EntityQuery item : entityQueries) {
-            if (item.matchFilter(componentFilter)) {
-                entityQuery = item;
-            }
+        EntityQuery entityQuery = entityQueries.get(componentFilter);
+        if (entityQuery != null) {
+            return entityQuery;
         }
-        if (entityQuery == null) {
-            EntityQuery newEntityQuery = new EntityQuery(componentFilter);
-            newEntityQuery.tryAddArchetype(entityArchetypes.values());
-            entityQueries.add(newEntityQuery);
-            return newEntityQuery;
+        EntityQuery newEntityQuery = new EntityQuery(componentFilter);
+        newEntityQuery.tryAddArchetype(entityArchetypes.values());
+        entityQueries.put(componentFilter, newEntityQuery);
+        int requiredIndex = componentFilter.firstRequiredIndex();
+        if (requiredIndex < 0) {
+            unconditionalQueries.add(newEntityQuery);
         } else {
-            return entityQuery;
+            while (requiredComponentQueries.size() <= requiredIndex) {
+                requiredComponentQueries.add(new ArrayList<>());
+            }
+            requiredComponentQueries.get(requiredIndex).add(newEntityQuery);
         }
+        return newEntityQuery;
     }
 
     public EcsWorld getEcsWorld() {
         return ecsWorld;
     }
 
+    /**
+     * 批量销毁实体，按所在原型分组移除，整个原型的实体都被销毁时直接清空原型存储
+     */
+    public void destroyEntities(EcsEntity[] entities, int count) {
+        checkStructuralChange();
+        ensureBatchCapacity(count);
+        int pending = 0;
+        for (int i = 0; i < count; i++) {
+            EcsEntity entity = entities[i];
+            if (!entityRegistry.remove(entity)) {
+                logger.warn("destroy entity failed! reason: entity not exist. index:{}", entity.getIndex());
+                continue;
+            }
+            pendingEntities[pending++] = entity;
+        }
+        while (pending > 0) {
+            EntityArchetype source = pendingEntities[0].getArchetype();
+            int groupSize = takeGroup(source, pending, false);
+            pending -= groupSize;
+            source.removeEntities(groupEntities, groupSize);
+        }
+        clearBatch(count);
+    }
+
     public void destroyEntity(EcsEntity entity) {
-        if (notExistEntity(entity)) {
+        checkStructuralChange();
+        if (!entityRegistry.remove(entity)) {
             logger.warn("destroy entity failed! reason: entity not exist. index:{}", entity.getIndex());
             return;
         }
-        if (entityIndex.remove(entity.getIndex()) != null) {
-            entity.clean();
-        }
+        entity.clean();
     }
 }
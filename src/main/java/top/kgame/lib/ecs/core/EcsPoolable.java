@@ -0,0 +1,10 @@
+package top.kgame.lib.ecs.core;
+
+/**
+ * 可回收的组件。
+ * <p>实体销毁时先调用 {@link #clean()} 重置状态，再放回该组件类型的对象池，
+ * 通过 {@code EcsWorld#obtainComponent} 或 {@code BaseEntityFactory#obtainComponent} 复用。</p>
+ * <p>组件需要提供无参构造方法，实体销毁后不能再持有该组件实例。</p>
+ */
+public interface EcsPoolable extends EcsCleanable {
+}
@@ -10,6 +10,8 @@ import top.kgame.lib.ecs.tools.EcsClassScanner;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 public class EcsSystemManager implements EcsCleanable {
     private static final Logger logger = LogManager.getLogger(EcsSystemManager.class);
@@ -18,6 +20,7 @@ public class EcsSystemManager implements EcsCleanable {
     private final SystemScheduler topLevelSystemScheduler = new SystemScheduler();
     private final Set<Class<? extends EcsSystem>> topSystemClasses = new HashSet<>();
     private final Map<Class<? extends EcsSystemGroup>, Set<Class<? extends EcsSystem>>> groupChildMap = new HashMap<>();
+    private ForkJoinPool parallelExecutor;
 
     public EcsSystemManager(final EcsWorld world) {
         this.world = world;
@@ -59,10 +62,35 @@ public class EcsSystemManager implements EcsCleanable {
     @Override
     public void clean() {
         topLevelSystemScheduler.clean();
+        parallelExecutor = null;
     }
 
     public void update() {
-        topLevelSystemScheduler.updateSystems();
+        topLevelSystemScheduler.updateSystems(parallelExecutor);
+    }
+
+    /**
+     * 按更新顺序遍历所有System，包括System组内的System
+     */
+    public void forEachSystem(Consumer<EcsSystem> action) {
+        forEachSystem(topLevelSystemScheduler.getSortedSystem(), action);
+    }
+
+    private static void forEachSystem(Collection<EcsSystem> systems, Consumer<EcsSystem> action) {
+        for (EcsSystem system : systems) {
+            action.accept(system);
+            if (system instanceof EcsSystemGroup group) {
+                forEachSystem(group.getSystems(), action);
+            }
+        }
+    }
+
+    public ForkJoinPool getParallelExecutor() {
+        return parallelExecutor;
+    }
+
+    public void setParallelExecutor(ForkJoinPool parallelExecutor) {
+        this.parallelExecutor = parallelExecutor;
     }
 
     public Set<EcsSystem> getSystemInGroup(EcsSystemGroup ecsSystemGroup) {
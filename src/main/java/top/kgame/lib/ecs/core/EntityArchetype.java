@@ -7,19 +7,103 @@ import top.kgame.lib.ecs.tools.EcsUtils;
 
 import java.util.*;
 
+/**
+ * 实体原型，持有相同组件组合的所有实体。
+ * <p>组件按列存储：每种组件类型一列稠密数组，以行号索引；实体只记录自己所在的原型和行号。</p>
+ */
 public class EntityArchetype implements EcsCleanable {
-    public static final EntityArchetype EMPTY_INSTANCE = new EMPTY(EcsUtils.EMPTY_BITSET, Collections.emptySet());
+    public static final EntityArchetype EMPTY_INSTANCE = new EMPTY();
+    private static final int INIT_CAPACITY = 16;
+    private static final int NO_COLUMN = -1;
+    // 变更版本按 2^CHANGE_BLOCK_SHIFT 行分块记录
+    public static final int CHANGE_BLOCK_SHIFT = 7;
+
     private final Set<Class<? extends EcsComponent>> componentMatchTypes;
-    private final List<EcsEntity> entityList = new ArrayList<>();
     private final BitSet bitSet;
+    private final ComponentMask mask;
+    // 组件索引 -> 列号，不包含的组件为 NO_COLUMN
+    private final int[] componentColumns;
+    // 列号 -> 组件索引
+    private final int[] columnComponentIndexes;
+    // 列号 -> 组件类型，按组件索引升序排列
+    private final Class<? extends EcsComponent>[] columnTypes;
+    // columns[列号][行号]
+    private final EcsComponent[][] columns;
+    // 列号 -> 基本类型组件的字段存储，普通组件为null，对应的 columns 列始终为null
+    private final PrimitiveColumn[] primitiveColumns;
+    // 列号 -> 标签组件和共享组件的值，普通组件为null，对应的 columns 列始终为null
+    private final EcsComponent[] archetypeComponents;
+    // 共享组件的值，按组件索引升序，与组件位集一起区分原型
+    private final List<EcsComponent> sharedValues;
+    // changeVersions[列号][行号 >> CHANGE_BLOCK_SHIFT]，该块中任意一行的组件最近一次写入时的版本
+    private final int[][] changeVersions;
+    // rowVersions[行号 >> CHANGE_BLOCK_SHIFT]，该块中任意一行的实体最近一次进入或被替换时的版本
+    private int[] rowVersions;
+    private EcsEntity[] entities = new EcsEntity[INIT_CAPACITY];
+    private int entityCount = 0;
+    // 结构变更缓存：组件索引 -> 添加/移除该组件后的目标原型
+    private EntityArchetype[] addTransitions = new EntityArchetype[0];
+    private EntityArchetype[] removeTransitions = new EntityArchetype[0];
+    // 匹配当前原型的查询，实体数量变化时通知
+    private EntityQuery[] matchQueries = new EntityQuery[0];
+    private final EcsComponentManager componentManager;
 
-    private EntityArchetype(BitSet bitSet, Collection<Class<? extends EcsComponent>> componentMatchTypes) {
+    @SuppressWarnings("unchecked")
+    private EntityArchetype(BitSet bitSet, Collection<Class<? extends EcsComponent>> componentMatchTypes,
+                            List<EcsComponent> sharedValues, EcsComponentManager componentManager) {
+        this.sharedValues = sharedValues;
         this.componentMatchTypes = new HashSet<>(componentMatchTypes);
+        this.componentManager = componentManager;
         this.bitSet = bitSet;
+        this.mask = ComponentMask.of(bitSet);
+        int columnCount = this.componentMatchTypes.size();
+        this.componentColumns = new int[bitSet.length()];
+        Arrays.fill(componentColumns, NO_COLUMN);
+        this.columnComponentIndexes = new int[columnCount];
+        int column = 0;
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+            columnComponentIndexes[column] = i;
+            componentColumns[i] = column++;
+        }
+        this.columnTypes = (Class<? extends EcsComponent>[]) new Class<?>[columnCount];
+        for (Class<? extends EcsComponent> componentType : this.componentMatchTypes) {
+            columnTypes[componentColumns[componentManager.getComponentIndex(componentType)]] = componentType;
+        }
+        this.columns = new EcsComponent[columnCount][];
+        this.primitiveColumns = new PrimitiveColumn[columnCount];
+        this.archetypeComponents = new EcsComponent[columnCount];
+        this.changeVersions = new int[columnCount][blockCount(INIT_CAPACITY)];
+        this.rowVersions = new int[blockCount(INIT_CAPACITY)];
+        int sharedCount = 0;
+        for (int i = 0; i < columnCount; i++) {
+            int componentIndex = columnComponentIndexes[i];
+            if (componentManager.isTag(componentIndex)) {
+                archetypeComponents[i] = componentManager.getTagInstance(componentIndex);
+                continue;
+            }
+            if (componentManager.isShared(componentIndex)) {
+                archetypeComponents[i] = sharedValues.get(sharedCount++);
+                continue;
+            }
+            PrimitiveLayout layout = componentManager.getPrimitiveLayout(columnComponentIndexes[i]);
+            if (layout != null) {
+                primitiveColumns[i] = new PrimitiveColumn(layout, INIT_CAPACITY);
+            } else {
+                columns[i] = new EcsComponent[INIT_CAPACITY];
+            }
+        }
     }
 
-    public static EntityArchetype newInstance(BitSet bitSet, Collection<Class<? extends EcsComponent>> components) {
-        return new EntityArchetype(bitSet, components);
+    public static EntityArchetype newInstance(BitSet bitSet, Collection<Class<? extends EcsComponent>> components, EcsComponentManager componentManager) {
+        return new EntityArchetype(bitSet, components, List.of(), componentManager);
+    }
+
+    /**
+     * @param sharedValues 共享组件的值，按组件索引升序，数量与原型包含的共享组件类型一致
+     */
+    public static EntityArchetype newInstance(BitSet bitSet, Collection<Class<? extends EcsComponent>> components,
+                                              List<EcsComponent> sharedValues, EcsComponentManager componentManager) {
+        return new EntityArchetype(bitSet, components, sharedValues, componentManager);
     }
 
     public boolean isSubset(BitSet subset) {
@@ -35,13 +119,22 @@ public class EntityArchetype implements EcsCleanable {
         return bitSet.intersects(bs);
     }
 
+    public ComponentMask getMask() {
+        return mask;
+    }
+
     private static class EMPTY extends EntityArchetype {
-        private EMPTY(BitSet bitSet, Set<Class<? extends EcsComponent>> componentMatchTypes) {
-            super(bitSet, componentMatchTypes);
+        private EMPTY() {
+            super(EcsUtils.EMPTY_BITSET, Collections.emptySet(), List.of(), null);
         }
 
         @Override
-        public void addEntity(EcsEntity entity) {
+        public int addEntity(EcsEntity entity, Collection<? extends EcsComponent> components) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int moveEntity(EcsEntity entity, EntityArchetype source, int sourceRow) {
             throw new UnsupportedOperationException();
         }
 
@@ -49,6 +142,21 @@ public class EntityArchetype implements EcsCleanable {
         public void removeEntity(EcsEntity entity) {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public int moveEntities(EntityArchetype source, EcsEntity[] movingEntities, EcsComponent[] components, int componentIndex, int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int removeEntities(EcsEntity[] removingEntities, int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int addEntities(EcsEntity[] newEntities, int count) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     @Override
@@ -56,42 +164,663 @@ public class EntityArchetype implements EcsCleanable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         EntityArchetype that = (EntityArchetype) o;
-        return componentMatchTypes.equals(that.componentMatchTypes);
+        return componentMatchTypes.equals(that.componentMatchTypes) && sharedValues.equals(that.sharedValues);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(componentMatchTypes);
+        return Objects.hash(componentMatchTypes, sharedValues);
     }
 
     @Override
     public void clean() {
         componentMatchTypes.clear();
-        entityList.clear();
+        Arrays.fill(entities, 0, entityCount, null);
+        for (EcsComponent[] column : columns) {
+            if (column != null) {
+                Arrays.fill(column, 0, entityCount, null);
+            }
+        }
+        entityCount = 0;
+        addTransitions = new EntityArchetype[0];
+        removeTransitions = new EntityArchetype[0];
+        matchQueries = new EntityQuery[0];
+    }
+
+    /**
+     * 订阅实体数量变化，订阅时立即计入当前实体数量
+     */
+    void addMatchQuery(EntityQuery entityQuery) {
+        matchQueries = Arrays.copyOf(matchQueries, matchQueries.length + 1);
+        matchQueries[matchQueries.length - 1] = entityQuery;
+        entityQuery.onEntityCountChanged(entityCount);
+    }
+
+    /**
+     * 获取添加指定组件后的目标原型，未缓存时返回null
+     */
+    public EntityArchetype getAddTransition(int componentIndex) {
+        return componentIndex < addTransitions.length ? addTransitions[componentIndex] : null;
+    }
+
+    public void setAddTransition(int componentIndex, EntityArchetype target) {
+        if (componentIndex >= addTransitions.length) {
+            addTransitions = Arrays.copyOf(addTransitions, componentIndex + 1);
+        }
+        addTransitions[componentIndex] = target;
+    }
+
+    /**
+     * 获取移除指定组件后的目标原型，未缓存时返回null
+     */
+    public EntityArchetype getRemoveTransition(int componentIndex) {
+        return componentIndex < removeTransitions.length ? removeTransitions[componentIndex] : null;
+    }
+
+    public void setRemoveTransition(int componentIndex, EntityArchetype target) {
+        if (componentIndex >= removeTransitions.length) {
+            removeTransitions = Arrays.copyOf(removeTransitions, componentIndex + 1);
+        }
+        removeTransitions[componentIndex] = target;
     }
 
     public Set<Class<? extends EcsComponent>> getComponentTypes() {
         return componentMatchTypes;
     }
 
-    public List<EcsEntity> getEntityList() {
-        return entityList;
+    public int entityCount() {
+        return entityCount;
     }
 
-    public int entityCount() {
-        return entityList.size();
+    public EcsEntity getEntity(int row) {
+        return entities[row];
+    }
+
+    /**
+     * 将所有实体按行号顺序拷贝到目标数组
+     */
+    public void copyEntitiesTo(EcsEntity[] dest, int destPos) {
+        System.arraycopy(entities, 0, dest, destPos, entityCount);
+    }
+
+    /**
+     * 将 [from, from + count) 行的实体拷贝到目标数组
+     */
+    public void copyEntitiesTo(int from, int count, EcsEntity[] dest, int destPos) {
+        System.arraycopy(entities, from, dest, destPos, count);
     }
 
     public boolean hasComponent(Class<? extends EcsComponent> componentClass) {
         return componentMatchTypes.contains(componentClass);
     }
 
-    public void addEntity(EcsEntity entity) {
-        entityList.add(entity);
+    public boolean hasComponent(int componentIndex) {
+        return mask.get(componentIndex);
+    }
+
+    /**
+     * 判断组件集合的类型和共享组件的值是否恰好与当前原型一致，集合中有重复类型时返回false
+     */
+    public boolean matchComponents(Collection<? extends EcsComponent> components) {
+        if (components.size() != columns.length) {
+            return false;
+        }
+        for (EcsComponent component : components) {
+            if (!componentMatchTypes.contains(component.getClass())) {
+                return false;
+            }
+            if (!sharedValues.isEmpty() && componentManager.isShared(componentManager.getComponentIndex(component.getClass()))
+                    && !sharedValues.contains(component)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    /**
+     * 获取指定组件索引对应的列，不包含该组件或为标签组件、共享组件、基本类型组件时返回null。
+     * <p>有效数据范围为 [0, entityCount())，原型扩容后旧的列数组失效，不要跨结构变更持有。</p>
+     */
+    public EcsComponent[] getComponentColumn(int componentIndex) {
+        int column = columnOf(componentIndex);
+        return column == NO_COLUMN ? null : columns[column];
+    }
+
+    /**
+     * 获取指定组件类型对应的列，不包含该组件或为标签组件、共享组件、基本类型组件时返回null。
+     */
+    public EcsComponent[] getComponentColumn(Class<? extends EcsComponent> componentClass) {
+        int column = columnOf(componentClass);
+        return column == NO_COLUMN ? null : columns[column];
+    }
+
+    /**
+     * 基本类型组件返回字段值的副本
+     */
+    public EcsComponent getComponent(int row, int componentIndex) {
+        int column = columnOf(componentIndex);
+        return column == NO_COLUMN ? null : getComponentAt(column, row);
+    }
+
+    /**
+     * 按列号获取组件，列号范围为 [0, columnCount())。
+     * <p>基本类型组件返回字段值的副本，标签组件和共享组件返回原型保存的值。</p>
+     */
+    public EcsComponent getComponentAt(int column, int row) {
+        PrimitiveColumn primitiveColumn = primitiveColumns[column];
+        if (primitiveColumn != null) {
+            EcsComponent component = componentManager.createComponent(columnTypes[column]);
+            primitiveColumn.read(row, component);
+            return component;
+        }
+        if (columns[column] == null) {
+            return archetypeComponents[column];
+        }
+        return columns[column][row];
+    }
+
+    public void setComponent(int row, int componentIndex, EcsComponent component) {
+        int column = columnOf(componentIndex);
+        putComponent(column, row, component);
+        markColumn(column, row);
+    }
+
+    /**
+     * 标记指定行的组件已被修改，不包含该组件时忽略。
+     * <p>单组件到五组件更新系统等基类遍历后只自动标记ComponentAccess声明写入的组件，其他直接修改组件对象字段的写入方调用该方法。</p>
+     */
+    public void markChanged(int componentIndex, int row) {
+        int column = columnOf(componentIndex);
+        if (column != NO_COLUMN) {
+            markColumn(column, row);
+        }
+    }
+
+    /**
+     * 指定行所在块的组件最近一次写入时的版本，不包含该组件时返回0
+     */
+    public int getChangeVersion(int componentIndex, int row) {
+        int column = columnOf(componentIndex);
+        return column == NO_COLUMN ? 0 : changeVersions[column][row >> CHANGE_BLOCK_SHIFT];
+    }
+
+    /**
+     * 将指定行所在块的组件写入版本恢复为记录时的值，用于回滚后变更过滤与记录时一致，不包含该组件时忽略
+     */
+    public void restoreChangeVersion(int componentIndex, int row, int version) {
+        int column = columnOf(componentIndex);
+        if (column != NO_COLUMN) {
+            changeVersions[column][row >> CHANGE_BLOCK_SHIFT] = version;
+        }
+    }
+
+    /**
+     * 指定行所在块最近一次有实体进入当前原型或行内容被替换时的版本，用于识别组件增删等结构变更
+     */
+    public int getRowVersion(int row) {
+        return rowVersions[row >> CHANGE_BLOCK_SHIFT];
+    }
+
+    /**
+     * 指定块中的任意组件在 sinceVersion 之后是否被写入过，不包含的组件忽略
+     * @param block 行号右移 {@link #CHANGE_BLOCK_SHIFT} 位得到的块号
+     */
+    public boolean isChangedSince(int block, int[] componentIndexes, int sinceVersion) {
+        for (int componentIndex : componentIndexes) {
+            int column = columnOf(componentIndex);
+            if (column != NO_COLUMN && changeVersions[column][block] - sinceVersion > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 指定块在 sinceVersion 之后是否有实体进出或任意组件被写入
+     */
+    public boolean isChangedSince(int block, int sinceVersion) {
+        if (rowVersions[block] - sinceVersion > 0) {
+            return true;
+        }
+        for (int[] versions : changeVersions) {
+            if (versions[block] - sinceVersion > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取标签组件或共享组件在当前原型中的值，不包含该组件或为普通组件时返回null
+     */
+    public EcsComponent getArchetypeComponent(int componentIndex) {
+        int column = columnOf(componentIndex);
+        return column == NO_COLUMN ? null : archetypeComponents[column];
+    }
+
+    /**
+     * 共享组件的值，按组件索引升序
+     */
+    public List<EcsComponent> getSharedValues() {
+        return sharedValues;
+    }
+
+    /**
+     * 获取基本类型组件的字段存储，不包含该组件或不是基本类型组件时返回null
+     */
+    PrimitiveColumn getPrimitiveColumn(int componentIndex) {
+        int column = columnOf(componentIndex);
+        return column == NO_COLUMN ? null : primitiveColumns[column];
+    }
+
+    /**
+     * 添加新实体，同类型组件重复时保留第一个
+     * @return 实体所在行号
+     */
+    public int addEntity(EcsEntity entity, Collection<? extends EcsComponent> components) {
+        int row = appendRow(entity);
+        markRow(row);
+        recordEntered(entity, null);
+        // 基本类型组件不保存对象，只在组件数量多于列数即可能重复时记录已写入的列
+        boolean[] written = components.size() > columns.length ? new boolean[columns.length] : null;
+        for (EcsComponent component : components) {
+            int column = columnOf(component.getClass());
+            if (archetypeComponents[column] != null) {
+                continue;
+            }
+            if (primitiveColumns[column] == null) {
+                if (columns[column][row] == null) {
+                    columns[column][row] = component;
+                }
+            } else if (written == null || !written[column]) {
+                primitiveColumns[column].write(row, component);
+                if (written != null) {
+                    written[column] = true;
+                }
+            }
+        }
+        return row;
     }
 
+    /**
+     * 将实体从源原型迁移到当前原型，拷贝双方共有的组件，并从源原型中移除。
+     * <p>当前原型独有的组件列置空，由调用者填充。</p>
+     * @return 实体在当前原型中的行号
+     */
+    public int moveEntity(EcsEntity entity, EntityArchetype source, int sourceRow) {
+        int row = appendRow(entity);
+        copyRow(source, sourceRow, row);
+        markRow(row);
+        source.removeRow(sourceRow);
+        recordEntered(entity, source);
+        source.recordLeft(entity, this);
+        return row;
+    }
+
+    /**
+     * 将多个实体从源原型批量迁移到当前原型，只扩容一次，匹配查询的实体数量只通知一次。
+     * <p>已经不在源原型中的实体跳过。components 不为null时，将 components[i] 放入 componentIndex 对应的列。</p>
+     * @return 实际迁移的实体数量
+     */
+    public int moveEntities(EntityArchetype source, EcsEntity[] movingEntities, EcsComponent[] components, int componentIndex, int count) {
+        ensureCapacity(entityCount + count);
+        int componentColumn = components == null ? NO_COLUMN : columnOf(componentIndex);
+        if (source.containsAll(movingEntities, count)) {
+            return moveAllEntities(source, components, componentColumn, movingEntities);
+        }
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            EcsEntity entity = movingEntities[i];
+            if (entity.getArchetype() != source) {
+                continue;
+            }
+            int sourceRow = entity.getRow();
+            int row = entityCount++;
+            entities[row] = entity;
+            copyRow(source, sourceRow, row);
+            markRow(row);
+            if (componentColumn != NO_COLUMN) {
+                putComponent(componentColumn, row, components[i]);
+            }
+            source.swapRemoveRow(sourceRow);
+            entity.setArchetype(this, row);
+            recordEntered(entity, source);
+            source.recordLeft(entity, this);
+            moved++;
+        }
+        notifyEntityCountChanged(moved);
+        source.notifyEntityCountChanged(-moved);
+        return moved;
+    }
+
+    /**
+     * 批量添加新实体，组件列为空，由调用者通过 {@link #setComponent(int, int, EcsComponent)} 填充
+     * @return 第一个实体的行号
+     */
+    public int addEntities(EcsEntity[] newEntities, int count) {
+        ensureCapacity(entityCount + count);
+        int base = entityCount;
+        System.arraycopy(newEntities, 0, entities, base, count);
+        entityCount += count;
+        for (int row = base; row < base + count; row++) {
+            entities[row].setArchetype(this, row);
+            recordEntered(entities[row], null);
+        }
+        if (count > 0) {
+            for (int row = base; row < base + count; row += 1 << CHANGE_BLOCK_SHIFT) {
+                markRow(row);
+            }
+            markRow(base + count - 1);
+        }
+        notifyEntityCountChanged(count);
+        return base;
+    }
+
+    /**
+     * 预留至少 count 个新实体的存储空间
+     */
+    public void reserve(int count) {
+        ensureCapacity(entityCount + count);
+    }
+
+    /**
+     * 批量移除实体，调用 {@link EcsCleanable} 组件的清理方法，匹配查询的实体数量只通知一次。
+     * <p>已经不在当前原型中的实体跳过，移除全部实体时直接清空存储。</p>
+     * @return 实际移除的数量
+     */
+    public int removeEntities(EcsEntity[] removingEntities, int count) {
+        if (containsAll(removingEntities, count)) {
+            for (int row = 0; row < entityCount; row++) {
+                cleanRow(row);
+                entities[row].setArchetype(EMPTY_INSTANCE, -1);
+                recordLeft(entities[row], null);
+            }
+            clearRows();
+            notifyEntityCountChanged(-count);
+            return count;
+        }
+        int removed = 0;
+        for (int i = 0; i < count; i++) {
+            EcsEntity entity = removingEntities[i];
+            int row = entity.getRow();
+            if (entity.getArchetype() != this || entities[row] != entity) {
+                continue;
+            }
+            cleanRow(row);
+            swapRemoveRow(row);
+            entity.setArchetype(EMPTY_INSTANCE, -1);
+            recordLeft(entity, null);
+            removed++;
+        }
+        notifyEntityCountChanged(-removed);
+        return removed;
+    }
+
+    /**
+     * 移除实体，调用 {@link EcsCleanable} 组件的清理方法
+     */
     public void removeEntity(EcsEntity entity) {
-        entityList.remove(entity);
+        int row = entity.getRow();
+        if (row < 0 || row >= entityCount || entities[row] != entity) {
+            return;
+        }
+        cleanRow(row);
+        removeRow(row);
+        recordLeft(entity, null);
+    }
+
+    /**
+     * 源原型的全部实体一起迁移时，按列整段拷贝后清空源原型，行的相对顺序保持不变
+     */
+    private int moveAllEntities(EntityArchetype source, EcsComponent[] components, int componentColumn, EcsEntity[] movingEntities) {
+        int count = source.entityCount;
+        int base = entityCount;
+        for (int column = 0; column < columns.length; column++) {
+            int sourceColumn = source.columnOf(columnComponentIndexes[column]);
+            if (sourceColumn == NO_COLUMN) {
+                continue;
+            }
+            if (primitiveColumns[column] != null) {
+                primitiveColumns[column].copyRows(source.primitiveColumns[sourceColumn], 0, base, count);
+            } else if (columns[column] != null) {
+                System.arraycopy(source.columns[sourceColumn], 0, columns[column], base, count);
+            }
+        }
+        if (componentColumn != NO_COLUMN) {
+            for (int i = 0; i < count; i++) {
+                putComponent(componentColumn, base + movingEntities[i].getRow(), components[i]);
+            }
+        }
+        System.arraycopy(source.entities, 0, entities, base, count);
+        for (int row = base; row < base + count; row++) {
+            entities[row].setArchetype(this, row);
+            recordEntered(entities[row], source);
+            source.recordLeft(entities[row], this);
+        }
+        entityCount += count;
+        for (int row = base; row < base + count; row += 1 << CHANGE_BLOCK_SHIFT) {
+            markRow(row);
+        }
+        markRow(base + count - 1);
+        source.clearRows();
+        notifyEntityCountChanged(count);
+        source.notifyEntityCountChanged(-count);
+        return count;
+    }
+
+    /**
+     * 判断给定的实体是否恰好是当前原型的全部实体。
+     * <p>检查时临时置空已匹配的行，以便识别重复实体，返回前恢复。</p>
+     */
+    private boolean containsAll(EcsEntity[] checkEntities, int count) {
+        if (count != entityCount || count == 0) {
+            return false;
+        }
+        int matched = 0;
+        while (matched < count) {
+            EcsEntity entity = checkEntities[matched];
+            int row = entity.getRow();
+            if (entity.getArchetype() != this || entities[row] != entity) {
+                break;
+            }
+            entities[row] = null;
+            matched++;
+        }
+        for (int i = 0; i < matched; i++) {
+            entities[checkEntities[i].getRow()] = checkEntities[i];
+        }
+        return matched == count;
+    }
+
+    /**
+     * 调用该行 EcsCleanable 组件的清理方法，EcsPoolable 组件清理后放回对象池
+     */
+    private void cleanRow(int row) {
+        for (int column = 0; column < columns.length; column++) {
+            if (columns[column] == null) {
+                continue;
+            }
+            EcsComponent component = columns[column][row];
+            if (component instanceof EcsCleanable ecsCleanableComponent) {
+                ecsCleanableComponent.clean();
+                if (component instanceof EcsPoolable) {
+                    componentManager.releaseComponent(columnComponentIndexes[column], component);
+                }
+            }
+        }
+    }
+
+    /**
+     * 拷贝源原型中双方共有的组件到指定行
+     */
+    private void copyRow(EntityArchetype source, int sourceRow, int row) {
+        for (int column = 0; column < columns.length; column++) {
+            int sourceColumn = source.columnOf(columnComponentIndexes[column]);
+            if (sourceColumn == NO_COLUMN) {
+                continue;
+            }
+            if (primitiveColumns[column] != null) {
+                primitiveColumns[column].copyRow(source.primitiveColumns[sourceColumn], sourceRow, row);
+            } else if (columns[column] != null) {
+                columns[column][row] = source.columns[sourceColumn][sourceRow];
+            }
+        }
+    }
+
+    /**
+     * 标签组件和共享组件的值由原型保存，忽略传入的实例
+     */
+    private void putComponent(int column, int row, EcsComponent component) {
+        if (primitiveColumns[column] != null) {
+            primitiveColumns[column].write(row, component);
+        } else if (columns[column] != null) {
+            columns[column][row] = component;
+        }
+    }
+
+    /**
+     * 通知开启了日志的匹配查询：实体进入当前原型，source 为null或不匹配该查询时记为进入查询
+     */
+    private void recordEntered(EcsEntity entity, EntityArchetype source) {
+        for (EntityQuery entityQuery : matchQueries) {
+            if (entityQuery.hasJournal() && (source == null || !entityQuery.getComponentFilter().isMatchingArchetype(source))) {
+                entityQuery.recordEntered(entity);
+            }
+        }
+    }
+
+    /**
+     * 通知开启了日志的匹配查询：实体离开当前原型，target 为null或不匹配该查询时记为离开查询
+     */
+    private void recordLeft(EcsEntity entity, EntityArchetype target) {
+        for (EntityQuery entityQuery : matchQueries) {
+            if (entityQuery.hasJournal() && (target == null || !entityQuery.getComponentFilter().isMatchingArchetype(target))) {
+                entityQuery.recordLeft(entity);
+            }
+        }
+    }
+
+    /**
+     * 将该行所有组件标记为已写入，实体进入原型或行内容被替换时调用
+     */
+    private void markRow(int row) {
+        int version = componentManager.getChangeVersion();
+        int block = row >> CHANGE_BLOCK_SHIFT;
+        rowVersions[block] = version;
+        for (int[] versions : changeVersions) {
+            versions[block] = version;
+        }
+    }
+
+    private void markColumn(int column, int row) {
+        changeVersions[column][row >> CHANGE_BLOCK_SHIFT] = componentManager.getChangeVersion();
+    }
+
+    private static int blockCount(int capacity) {
+        return (capacity + (1 << CHANGE_BLOCK_SHIFT) - 1) >> CHANGE_BLOCK_SHIFT;
+    }
+
+    private void clearRows() {
+        Arrays.fill(entities, 0, entityCount, null);
+        for (EcsComponent[] column : columns) {
+            if (column != null) {
+                Arrays.fill(column, 0, entityCount, null);
+            }
+        }
+        entityCount = 0;
+    }
+
+    private int appendRow(EcsEntity entity) {
+        ensureCapacity(entityCount + 1);
+        entities[entityCount] = entity;
+        notifyEntityCountChanged(1);
+        return entityCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= entities.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, entities.length * 2);
+        entities = Arrays.copyOf(entities, newCapacity);
+        int newBlockCount = blockCount(newCapacity);
+        if (rowVersions.length < newBlockCount) {
+            rowVersions = Arrays.copyOf(rowVersions, newBlockCount);
+        }
+        for (int column = 0; column < columns.length; column++) {
+            if (changeVersions[column].length < newBlockCount) {
+                changeVersions[column] = Arrays.copyOf(changeVersions[column], newBlockCount);
+            }
+            if (columns[column] != null) {
+                columns[column] = Arrays.copyOf(columns[column], newCapacity);
+            }
+            if (primitiveColumns[column] != null) {
+                primitiveColumns[column].grow(newCapacity);
+            }
+        }
+    }
+
+    private void notifyEntityCountChanged(int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (EntityQuery entityQuery : matchQueries) {
+            entityQuery.onEntityCountChanged(delta);
+        }
+    }
+
+    private void removeRow(int row) {
+        notifyEntityCountChanged(-1);
+        swapRemoveRow(row);
+    }
+
+    /**
+     * 将最后一行交换到被移除的行，并修正被移动实体的行号
+     */
+    private void swapRemoveRow(int row) {
+        int lastRow = --entityCount;
+        if (row != lastRow) {
+            EcsEntity movedEntity = entities[lastRow];
+            entities[row] = movedEntity;
+            for (EcsComponent[] column : columns) {
+                if (column != null) {
+                    column[row] = column[lastRow];
+                }
+            }
+            for (PrimitiveColumn primitiveColumn : primitiveColumns) {
+                if (primitiveColumn != null) {
+                    primitiveColumn.copyRow(primitiveColumn, lastRow, row);
+                }
+            }
+            movedEntity.setRow(row);
+            markRow(row);
+        }
+        entities[lastRow] = null;
+        for (EcsComponent[] column : columns) {
+            if (column != null) {
+                column[lastRow] = null;
+            }
+        }
+    }
+
+    private int columnOf(int componentIndex) {
+        if (componentIndex < 0 || componentIndex >= componentColumns.length) {
+            return NO_COLUMN;
+        }
+        return componentColumns[componentIndex];
+    }
+
+    private int columnOf(Class<? extends EcsComponent> componentClass) {
+        for (int column = 0; column < columnTypes.length; column++) {
+            if (columnTypes[column] == componentClass) {
+                return column;
+            }
+        }
+        return NO_COLUMN;
     }
 
     public BitSet bitSet() {
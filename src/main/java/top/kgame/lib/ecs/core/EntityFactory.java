@@ -4,5 +4,17 @@ import top.kgame.lib.ecs.EcsEntity;
 
 public interface EntityFactory {
     EcsEntity create(EcsEntityManager ecsEntityManager);
+
+    /**
+     * 批量创建实体，默认逐个调用 {@link #create(EcsEntityManager)}
+     */
+    default EcsEntity[] create(EcsEntityManager ecsEntityManager, int count) {
+        EcsEntity[] result = new EcsEntity[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = create(ecsEntityManager);
+        }
+        return result;
+    }
+
     int typeId();
 }
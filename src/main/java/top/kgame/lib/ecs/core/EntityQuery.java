@@ -4,32 +4,92 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.exception.InvalidPrimitiveComponentException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class EntityQuery implements EcsCleanable {
     private static final Logger logger = LogManager.getLogger(EntityQuery.class);
+    // 不按变更版本过滤
+    public static final int UNFILTERED_VERSION = Integer.MIN_VALUE;
     private final ComponentFilter queryParam;
     private final List<EntityArchetype> matchArchetypes = new ArrayList<>();
+    // forEach 使用的缓冲区，按嵌套深度复用
+    private EntityQueryBuffer[] iterationBuffers = new EntityQueryBuffer[0];
+    private int iterationDepth = 0;
+    // 由匹配的原型在实体数量变化时维护
+    private int entityCount = 0;
+    // 结构变更日志的订阅者，没有订阅时原型不做任何记录
+    private QueryJournal[] journals = new QueryJournal[0];
 
     public EntityQuery(ComponentFilter componentFilter) {
         queryParam = componentFilter;
     }
 
     public boolean isEmpty() {
-       return matchArchetypes.stream().noneMatch(
-               entityArchetype -> entityArchetype.entityCount() > 0);
+        return entityCount == 0;
     }
 
     public int entityCount() {
-        int result = 0;
-        for (EntityArchetype entityArchetype : matchArchetypes) {
-            result += entityArchetype.entityCount();
+        return entityCount;
+    }
+
+    void onEntityCountChanged(int delta) {
+        entityCount += delta;
+    }
+
+    /**
+     * 创建一个独立的结构变更日志，此后进入和离开查询的实体都会被记录
+     */
+    public QueryJournal createJournal() {
+        QueryJournal journal = new QueryJournal(this);
+        journals = Arrays.copyOf(journals, journals.length + 1);
+        journals[journals.length - 1] = journal;
+        return journal;
+    }
+
+    /**
+     * 取消日志订阅
+     */
+    public void removeJournal(QueryJournal journal) {
+        for (int i = 0; i < journals.length; i++) {
+            if (journals[i] == journal) {
+                QueryJournal[] newJournals = new QueryJournal[journals.length - 1];
+                System.arraycopy(journals, 0, newJournals, 0, i);
+                System.arraycopy(journals, i + 1, newJournals, i, journals.length - i - 1);
+                journals = newJournals;
+                journal.clean();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 查询的所有结构变更日志
+     */
+    public QueryJournal[] getJournals() {
+        return journals.clone();
+    }
+
+    boolean hasJournal() {
+        return journals.length > 0;
+    }
+
+    void recordEntered(EcsEntity entity) {
+        for (QueryJournal journal : journals) {
+            journal.recordEntered(entity);
+        }
+    }
+
+    void recordLeft(EcsEntity entity) {
+        for (QueryJournal journal : journals) {
+            journal.recordLeft(entity);
         }
-        return result;
     }
 
     public List<EcsEntity> getEntityList() {
@@ -39,29 +99,143 @@ public class EntityQuery implements EcsCleanable {
                 if (result == null) {
                     result = new ArrayList<>();
                 }
-                result.addAll(entityArchetype.getEntityList());
+                for (int row = 0; row < entityArchetype.entityCount(); row++) {
+                    result.add(entityArchetype.getEntity(row));
+                }
             }
         }
         return result == null ? Collections.emptyList() : result;
     }
 
+    /**
+     * 遍历所有匹配的实体，不创建中间列表。
+     * <p>遍历的是调用时匹配实体的快照，回调中增删组件或销毁实体不会影响本次遍历。支持嵌套调用。</p>
+     */
+    public void forEach(Consumer<EcsEntity> consumer) {
+        forEach(consumer, UNFILTERED_VERSION);
+    }
+
+    /**
+     * 遍历匹配的实体，存在变更过滤条件时只遍历 sinceVersion 之后被写入过的实体块
+     * @see #fill(EntityQueryBuffer, int)
+     */
+    public void forEach(Consumer<EcsEntity> consumer, int sinceVersion) {
+        if (iterationDepth == iterationBuffers.length) {
+            iterationBuffers = Arrays.copyOf(iterationBuffers, iterationDepth + 1);
+            iterationBuffers[iterationDepth] = new EntityQueryBuffer();
+        }
+        EntityQueryBuffer buffer = iterationBuffers[iterationDepth++];
+        try {
+            int size = fill(buffer, sinceVersion);
+            EcsEntity[] entities = buffer.getEntities();
+            for (int i = 0; i < size; i++) {
+                consumer.accept(entities[i]);
+            }
+        } finally {
+            buffer.clear();
+            iterationDepth--;
+        }
+    }
+
+    /**
+     * 将当前匹配的实体以及缓冲区指定的组件列拷贝到缓冲区，按原型顺序连续存放
+     * @return 实体数量
+     * @throws InvalidPrimitiveComponentException 缓冲区的组件列是基本类型组件
+     */
+    public int fill(EntityQueryBuffer buffer) {
+        return fill(buffer, UNFILTERED_VERSION);
+    }
+
+    /**
+     * 同 {@link #fill(EntityQueryBuffer)}，存在变更过滤条件时只拷贝 sinceVersion 之后变更组件被写入过的实体块。
+     * <p>变更按 2^{@link EntityArchetype#CHANGE_BLOCK_SHIFT} 行分块记录，同一块中未修改的实体也会一并返回。</p>
+     * @return 实体数量
+     */
+    public int fill(EntityQueryBuffer buffer, int sinceVersion) {
+        buffer.reset(entityCount());
+        int[] changedIndexes = queryParam.getChangedIndexes();
+        boolean filterChanged = changedIndexes.length > 0 && sinceVersion != UNFILTERED_VERSION;
+        int offset = 0;
+        for (int i = 0; i < matchArchetypes.size(); i++) {
+            EntityArchetype entityArchetype = matchArchetypes.get(i);
+            int count = entityArchetype.entityCount();
+            if (count == 0) {
+                continue;
+            }
+            if (!filterChanged) {
+                copyRows(buffer, entityArchetype, 0, count, offset);
+                offset += count;
+                continue;
+            }
+            int blockSize = 1 << EntityArchetype.CHANGE_BLOCK_SHIFT;
+            for (int from = 0; from < count; from += blockSize) {
+                if (entityArchetype.isChangedSince(from >> EntityArchetype.CHANGE_BLOCK_SHIFT, changedIndexes, sinceVersion)) {
+                    int rows = Math.min(blockSize, count - from);
+                    copyRows(buffer, entityArchetype, from, rows, offset);
+                    offset += rows;
+                }
+            }
+        }
+        buffer.setSize(offset);
+        return offset;
+    }
+
+    private static void copyRows(EntityQueryBuffer buffer, EntityArchetype entityArchetype, int from, int count, int offset) {
+        entityArchetype.copyEntitiesTo(from, count, buffer.getEntities(), offset);
+        for (int column = 0; column < buffer.columnCount(); column++) {
+            EcsComponent[] source = entityArchetype.getComponentColumn(buffer.componentIndex(column));
+            if (source == null) {
+                if (entityArchetype.getPrimitiveColumn(buffer.componentIndex(column)) != null) {
+                    throw new InvalidPrimitiveComponentException("primitive component index "
+                            + buffer.componentIndex(column) + " can't be a query column, use PrimitiveComponentView instead");
+                }
+                // 标签组件和共享组件由原型保存同一个值，其他情况为null
+                EcsComponent value = entityArchetype.getArchetypeComponent(buffer.componentIndex(column));
+                Arrays.fill(buffer.getColumn(column), offset, offset + count, value);
+            } else {
+                System.arraycopy(source, from, buffer.getColumn(column), offset, count);
+            }
+        }
+    }
+
+    /**
+     * 匹配实体的指定组件，每次调用新建列表。
+     * <p>每帧调用时使用 {@link #getComponentDataList(Class, List)} 复用列表，或使用 {@link #fill(EntityQueryBuffer)}。</p>
+     */
     public <T extends EcsComponent> List<T> getComponentDataList(Class<T> tClass) {
-        List<T> result = new ArrayList<>();
+        List<T> result = new ArrayList<>(entityCount());
+        getComponentDataList(tClass, result);
+        return result;
+    }
+
+    /**
+     * 清空 result 后按原型顺序填入匹配实体的指定组件，直接从原型组件列拷贝，result 可以跨帧复用
+     * @return 填入的组件数量
+     */
+    public <T extends EcsComponent> int getComponentDataList(Class<T> tClass, List<? super T> result) {
+        result.clear();
+        if (result instanceof ArrayList<? super T> list) {
+            list.ensureCapacity(entityCount());
+        }
         for (EntityArchetype matchEntityArchetype : matchArchetypes) {
             if (!matchEntityArchetype.hasComponent(tClass)) {
                 logger.error("{} not exist in EntityQuery matchingTypes {}!", tClass.getSimpleName(), this);
                 continue;
             }
-            for(EcsEntity entity : matchEntityArchetype.getEntityList()) {
-                EcsComponent component = entity.getComponent(tClass);
-                if (null == component) {
-                    logger.error("{} not exist in EcsEntity {}!", tClass.getSimpleName(), entity);
-                    continue;
+            EcsComponent[] column = matchEntityArchetype.getComponentColumn(tClass);
+            for (int row = 0; row < matchEntityArchetype.entityCount(); row++) {
+                if (column != null) {
+                    result.add(tClass.cast(column[row]));
+                } else {
+                    result.add(matchEntityArchetype.getEntity(row).getComponent(tClass));
                 }
-                result.add(tClass.cast(component));
             }
         }
-        return result;
+        return result.size();
+    }
+
+    public ComponentFilter getComponentFilter() {
+        return queryParam;
     }
 
     public boolean matchFilter(ComponentFilter query) {
@@ -71,11 +245,17 @@ public class EntityQuery implements EcsCleanable {
     @Override
     public void clean() {
         matchArchetypes.clear();
+        entityCount = 0;
+        for (QueryJournal journal : journals) {
+            journal.clean();
+        }
+        journals = new QueryJournal[0];
         queryParam.clean();
     }
 
     public void registerArchetype(EntityArchetype entityArchetype) {
         matchArchetypes.add(entityArchetype);
+        entityArchetype.addMatchQuery(this);
     }
 
     public void tryAddArchetype(EntityArchetype entityArchetype) {
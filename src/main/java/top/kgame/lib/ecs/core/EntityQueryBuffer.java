@@ -0,0 +1,115 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+
+import java.util.Arrays;
+
+/**
+ * EntityQuery 遍历缓冲区，可重复使用。
+ * <p>由 {@link EntityQuery#fill(EntityQueryBuffer)} 填充匹配实体以及指定组件列的快照，
+ * 快照期间在回调中增删组件或销毁实体，不会影响本次遍历的实体集合。</p>
+ * <p>有效数据范围为 [0, size())，数组在容量不足时重新分配。</p>
+ */
+public class EntityQueryBuffer {
+    private static final int INIT_CAPACITY = 16;
+
+    private final int[] componentIndexes;
+    private EcsEntity[] entities = new EcsEntity[INIT_CAPACITY];
+    private final EcsComponent[][] columns;
+    private int size = 0;
+
+    /**
+     * @param componentIndexes 需要一并快照的组件索引，按参数顺序对应列号，不能是基本类型组件
+     */
+    public EntityQueryBuffer(int... componentIndexes) {
+        this.componentIndexes = componentIndexes.clone();
+        this.columns = new EcsComponent[componentIndexes.length][INIT_CAPACITY];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public EcsEntity[] getEntities() {
+        return entities;
+    }
+
+    /**
+     * 获取第 column 个组件列，实体不包含该组件时对应位置为null
+     */
+    public EcsComponent[] getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * 快照时指定的组件索引，按列号排列
+     */
+    public int[] getComponentIndexes() {
+        return componentIndexes;
+    }
+
+    /**
+     * 将 [from, to) 范围内实体当前所在块的指定组件标记为已写入，实体不包含的组件忽略
+     * <p>相邻实体位于同一原型的同一块时只标记一次，回调中已销毁的实体跳过。</p>
+     * @see EntityArchetype#markChanged(int, int)
+     */
+    public void markChanged(int from, int to, int[] changedIndexes) {
+        if (changedIndexes.length == 0) {
+            return;
+        }
+        EntityArchetype lastArchetype = null;
+        int lastBlock = -1;
+        for (int i = from; i < to; i++) {
+            EcsEntity entity = entities[i];
+            int row = entity.getRow();
+            if (row < 0) {
+                continue;
+            }
+            EntityArchetype archetype = entity.getArchetype();
+            int block = row >> EntityArchetype.CHANGE_BLOCK_SHIFT;
+            if (archetype == lastArchetype && block == lastBlock) {
+                continue;
+            }
+            lastArchetype = archetype;
+            lastBlock = block;
+            for (int componentIndex : changedIndexes) {
+                archetype.markChanged(componentIndex, row);
+            }
+        }
+    }
+
+    int columnCount() {
+        return columns.length;
+    }
+
+    int componentIndex(int column) {
+        return componentIndexes[column];
+    }
+
+    void reset(int capacity) {
+        if (capacity > entities.length) {
+            int newCapacity = Math.max(capacity, entities.length * 2);
+            entities = new EcsEntity[newCapacity];
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = new EcsComponent[newCapacity];
+            }
+        }
+        size = 0;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * 释放快照中的实体和组件引用
+     */
+    public void clear() {
+        Arrays.fill(entities, 0, size, null);
+        for (EcsComponent[] column : columns) {
+            Arrays.fill(column, 0, size, null);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,282 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsEntity;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 实体注册表，以槽位数组保存实体。
+ * <p>实体ID由槽位号和代数组成：低 {@link #INDEX_BITS} 位为槽位号，其余位为代数。
+ * 槽位释放后代数加一，再次分配得到不同的ID，旧ID不会查到新实体。
+ * 代数达到 {@link #GENERATION_MASK} 的槽位释放后不再复用，每个槽位最多分配 GENERATION_MASK + 1 次，
+ * 槽位总数达到上限后无法再创建实体。</p>
+ * <p>槽位号22位、代数9位：同时存活的实体最多约419万个，每个槽位可复用512次后停用，
+ * 一个World生命周期内最多创建约21亿（2^31）个实体。</p>
+ * <p>空闲槽位按释放顺序复用，尽量拉长同一槽位两次复用之间的间隔。槽位0保留不用，ID始终大于0。</p>
+ */
+class EntityRegistry {
+    static final int INDEX_BITS = 22;
+    static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    static final int GENERATION_MASK = (1 << (Integer.SIZE - 1 - INDEX_BITS)) - 1;
+    private static final int INIT_CAPACITY = 64;
+
+    private EcsEntity[] slots = new EcsEntity[INIT_CAPACITY];
+    private int[] generations = new int[INIT_CAPACITY];
+    private int slotCount = 1;
+    private int size = 0;
+
+    // 空闲槽位环形队列
+    private int[] freeSlots = new int[INIT_CAPACITY];
+    private int freeHead = 0;
+    private int freeSize = 0;
+
+    private final AbstractCollection<EcsEntity> values = new AbstractCollection<>() {
+        @Override
+        public Iterator<EcsEntity> iterator() {
+            return new Iterator<>() {
+                private int next = nextOccupied(1);
+
+                @Override
+                public boolean hasNext() {
+                    return next < slotCount;
+                }
+
+                @Override
+                public EcsEntity next() {
+                    if (next >= slotCount) {
+                        throw new NoSuchElementException();
+                    }
+                    EcsEntity entity = slots[next];
+                    next = nextOccupied(next + 1);
+                    return entity;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    };
+
+    /**
+     * 分配一个新的实体ID，需随后调用 {@link #put(EcsEntity)} 登记实体
+     */
+    int allocate() {
+        int slot;
+        if (freeSize > 0) {
+            slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            freeSize--;
+        } else {
+            if (slotCount > INDEX_MASK) {
+                throw new IllegalStateException("Entity count exceeds limit " + INDEX_MASK);
+            }
+            slot = slotCount++;
+            if (slot == slots.length) {
+                int newCapacity = slots.length * 2;
+                slots = Arrays.copyOf(slots, newCapacity);
+                generations = Arrays.copyOf(generations, newCapacity);
+            }
+        }
+        return (generations[slot] << INDEX_BITS) | slot;
+    }
+
+    /**
+     * 批量分配实体ID，优先复用空闲槽位，不足部分一次性扩容
+     */
+    void allocate(int[] ids) {
+        int newSlots = ids.length - Math.min(freeSize, ids.length);
+        if (newSlots > 0) {
+            int required = slotCount + newSlots;
+            if (required - 1 > INDEX_MASK) {
+                throw new IllegalStateException("Entity count exceeds limit " + INDEX_MASK);
+            }
+            if (required > slots.length) {
+                int newCapacity = Math.max(required, slots.length * 2);
+                slots = Arrays.copyOf(slots, newCapacity);
+                generations = Arrays.copyOf(generations, newCapacity);
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = allocate();
+        }
+    }
+
+    void put(EcsEntity entity) {
+        slots[entity.getIndex() & INDEX_MASK] = entity;
+        size++;
+    }
+
+    /**
+     * 登记从存档恢复的实体，ID须位于已恢复的槽位范围内、代数与槽位一致且槽位未被占用
+     * @throws IllegalArgumentException ID与槽位状态不一致
+     */
+    void restore(EcsEntity entity) {
+        int id = entity.getIndex();
+        int slot = id & INDEX_MASK;
+        if (id < 0 || slot == 0 || slot >= slotCount || slots[slot] != null || generations[slot] != id >>> INDEX_BITS) {
+            throw new IllegalArgumentException("invalid restored entity id " + id);
+        }
+        put(entity);
+    }
+
+    EcsEntity get(int id) {
+        int slot = id & INDEX_MASK;
+        if (slot >= slotCount) {
+            return null;
+        }
+        EcsEntity entity = slots[slot];
+        if (entity == null || entity.getIndex() != id) {
+            return null;
+        }
+        return entity;
+    }
+
+    boolean contains(EcsEntity entity) {
+        return get(entity.getIndex()) == entity;
+    }
+
+    /**
+     * 移除实体并释放槽位
+     * @return 实体不在注册表中时返回false
+     */
+    boolean remove(EcsEntity entity) {
+        if (!contains(entity)) {
+            return false;
+        }
+        int slot = entity.getIndex() & INDEX_MASK;
+        slots[slot] = null;
+        releaseSlot(slot);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 所有存活实体的只读视图
+     */
+    AbstractCollection<EcsEntity> values() {
+        return values;
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    int generation(int slot) {
+        return generations[slot];
+    }
+
+    void copyGenerations(int from, int[] dest, int length) {
+        System.arraycopy(generations, from, dest, 0, length);
+    }
+
+    /**
+     * 空闲槽位，按复用顺序排列
+     */
+    int[] freeSlots() {
+        int[] result = new int[freeSize];
+        for (int i = 0; i < freeSize; i++) {
+            result[i] = freeSlots[(freeHead + i) % freeSlots.length];
+        }
+        return result;
+    }
+
+    /**
+     * 从存档恢复槽位状态，只能在注册表为空时调用。
+     * <p>随后用 {@link #put(EcsEntity)} 登记实体，最后调用 {@link #finishRestore()}。</p>
+     * @param generations 槽位 [0, slotCount) 的代数
+     * @param restoredFreeSlots 空闲槽位，按复用顺序排列
+     * @throws IllegalArgumentException 槽位数量或代数超出上限，或空闲槽位超出槽位范围
+     */
+    void restoreSlots(int slotCount, int[] generations, int[] restoredFreeSlots) {
+        if (size != 0) {
+            throw new IllegalStateException("EntityRegistry is not empty");
+        }
+        if (slotCount - 1 > INDEX_MASK) {
+            throw new IllegalArgumentException("Entity count exceeds limit " + INDEX_MASK);
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (generations[slot] < 0 || generations[slot] > GENERATION_MASK) {
+                throw new IllegalArgumentException("invalid restored generation " + generations[slot] + " of slot " + slot);
+            }
+        }
+        for (int slot : restoredFreeSlots) {
+            if (slot <= 0 || slot >= slotCount) {
+                throw new IllegalArgumentException("invalid restored free slot " + slot);
+            }
+        }
+        clear();
+        int capacity = Math.max(INIT_CAPACITY, slotCount);
+        slots = new EcsEntity[capacity];
+        this.generations = Arrays.copyOf(generations, capacity);
+        this.slotCount = Math.max(1, slotCount);
+        freeSlots = new int[Math.max(INIT_CAPACITY, restoredFreeSlots.length)];
+        System.arraycopy(restoredFreeSlots, 0, freeSlots, 0, restoredFreeSlots.length);
+        freeSize = restoredFreeSlots.length;
+    }
+
+    /**
+     * 既未登记实体也不在空闲队列中的槽位（存档时正在销毁的实体）视为已释放，代数加一后排在空闲队列末尾，
+     * 代数已达上限的槽位（已停用或最后一次使用）保持停用
+     */
+    void finishRestore() {
+        boolean[] free = new boolean[slotCount];
+        for (int i = 0; i < freeSize; i++) {
+            free[freeSlots[(freeHead + i) % freeSlots.length]] = true;
+        }
+        for (int slot = 1; slot < slotCount; slot++) {
+            if (slots[slot] == null && !free[slot] && generations[slot] != GENERATION_MASK) {
+                releaseSlot(slot);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(slots, null);
+        Arrays.fill(generations, 0);
+        slotCount = 1;
+        size = 0;
+        freeHead = 0;
+        freeSize = 0;
+    }
+
+    /**
+     * 代数加一后放入空闲队列，代数已达上限时停用槽位，避免代数回绕后旧ID查到新实体
+     */
+    private void releaseSlot(int slot) {
+        if (generations[slot] == GENERATION_MASK) {
+            return;
+        }
+        generations[slot]++;
+        pushFreeSlot(slot);
+    }
+
+    private void pushFreeSlot(int slot) {
+        if (freeSize == freeSlots.length) {
+            int[] newFreeSlots = new int[freeSlots.length * 2];
+            for (int i = 0; i < freeSize; i++) {
+                newFreeSlots[i] = freeSlots[(freeHead + i) % freeSlots.length];
+            }
+            freeSlots = newFreeSlots;
+            freeHead = 0;
+        }
+        freeSlots[(freeHead + freeSize) % freeSlots.length] = slot;
+        freeSize++;
+    }
+
+    private int nextOccupied(int from) {
+        int slot = from;
+        while (slot < slotCount && slots[slot] == null) {
+            slot++;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,110 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+import java.util.Arrays;
+
+/**
+ * 原型中一个基本类型组件的存储，每个字段一个数组，下标为行号
+ */
+final class PrimitiveColumn {
+    final PrimitiveLayout layout;
+    int[][] ints;
+    long[][] longs;
+    float[][] floats;
+    double[][] doubles;
+
+    PrimitiveColumn(PrimitiveLayout layout, int capacity) {
+        this.layout = layout;
+        this.ints = new int[layout.slotCount(PrimitiveLayout.INT)][capacity];
+        this.longs = new long[layout.slotCount(PrimitiveLayout.LONG)][capacity];
+        this.floats = new float[layout.slotCount(PrimitiveLayout.FLOAT)][capacity];
+        this.doubles = new double[layout.slotCount(PrimitiveLayout.DOUBLE)][capacity];
+    }
+
+    void grow(int capacity) {
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = Arrays.copyOf(ints[i], capacity);
+        }
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = Arrays.copyOf(longs[i], capacity);
+        }
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = Arrays.copyOf(floats[i], capacity);
+        }
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = Arrays.copyOf(doubles[i], capacity);
+        }
+    }
+
+    /**
+     * 从源存储拷贝 length 行，两者必须是同一组件类型
+     */
+    void copyRows(PrimitiveColumn source, int sourceRow, int row, int length) {
+        for (int i = 0; i < ints.length; i++) {
+            System.arraycopy(source.ints[i], sourceRow, ints[i], row, length);
+        }
+        for (int i = 0; i < longs.length; i++) {
+            System.arraycopy(source.longs[i], sourceRow, longs[i], row, length);
+        }
+        for (int i = 0; i < floats.length; i++) {
+            System.arraycopy(source.floats[i], sourceRow, floats[i], row, length);
+        }
+        for (int i = 0; i < doubles.length; i++) {
+            System.arraycopy(source.doubles[i], sourceRow, doubles[i], row, length);
+        }
+    }
+
+    void copyRow(PrimitiveColumn source, int sourceRow, int row) {
+        for (int i = 0; i < ints.length; i++) {
+            ints[i][row] = source.ints[i][sourceRow];
+        }
+        for (int i = 0; i < longs.length; i++) {
+            longs[i][row] = source.longs[i][sourceRow];
+        }
+        for (int i = 0; i < floats.length; i++) {
+            floats[i][row] = source.floats[i][sourceRow];
+        }
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i][row] = source.doubles[i][sourceRow];
+        }
+    }
+
+    /**
+     * 将组件对象的字段值写入指定行
+     */
+    void write(int row, EcsComponent component) {
+        try {
+            for (int field = 0; field < layout.fieldCount(); field++) {
+                int slot = layout.slot(field);
+                switch (layout.kind(field)) {
+                    case PrimitiveLayout.LONG -> longs[slot][row] = layout.field(field).getLong(component);
+                    case PrimitiveLayout.FLOAT -> floats[slot][row] = layout.field(field).getFloat(component);
+                    case PrimitiveLayout.DOUBLE -> doubles[slot][row] = layout.field(field).getDouble(component);
+                    default -> ints[slot][row] = layout.readInt(component, field);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("read primitive component " + layout.getComponentClass().getName() + " failed", e);
+        }
+    }
+
+    /**
+     * 将指定行的字段值写回组件对象
+     */
+    void read(int row, EcsComponent component) {
+        try {
+            for (int field = 0; field < layout.fieldCount(); field++) {
+                int slot = layout.slot(field);
+                switch (layout.kind(field)) {
+                    case PrimitiveLayout.LONG -> layout.field(field).setLong(component, longs[slot][row]);
+                    case PrimitiveLayout.FLOAT -> layout.field(field).setFloat(component, floats[slot][row]);
+                    case PrimitiveLayout.DOUBLE -> layout.field(field).setDouble(component, doubles[slot][row]);
+                    default -> layout.writeInt(component, field, ints[slot][row]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("write primitive component " + layout.getComponentClass().getName() + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsEntity;
+
+/**
+ * 基本类型组件的享元访问器，绑定到实体后按字段号直接读写原型中的字段数组。
+ * <p>字段号通过 {@link #fieldIndex(String)} 获取后缓存使用；boolean/byte/short/char 字段按int读写，
+ * 写入时按字段类型截断（boolean非0为1），读出的值与 {@link EcsEntity#getComponent(Class)} 得到的副本一致。</p>
+ * <p>写入字段时自动标记组件变更。实体发生结构变更后需要重新绑定。访问器不是线程安全的，并行更新时每个线程各自创建。</p>
+ * @see top.kgame.lib.ecs.annotation.PrimitiveComponent
+ */
+public final class PrimitiveComponentView {
+    private final PrimitiveLayout layout;
+    private final int componentIndex;
+    private PrimitiveColumn column;
+    private EntityArchetype archetype;
+    private int row = -1;
+
+    PrimitiveComponentView(PrimitiveLayout layout, int componentIndex) {
+        this.layout = layout;
+        this.componentIndex = componentIndex;
+    }
+
+    /**
+     * @throws IllegalArgumentException 字段不存在
+     */
+    public int fieldIndex(String name) {
+        return layout.fieldIndex(name);
+    }
+
+    /**
+     * @return 实体不包含该组件时返回false，访问器处于未绑定状态
+     */
+    public boolean bind(EcsEntity entity) {
+        return bind(entity.getArchetype(), entity.getRow());
+    }
+
+    public boolean bind(EntityArchetype archetype, int row) {
+        PrimitiveColumn primitiveColumn = archetype.getPrimitiveColumn(componentIndex);
+        if (primitiveColumn == null || row < 0 || row >= archetype.entityCount()) {
+            this.column = null;
+            this.archetype = null;
+            this.row = -1;
+            return false;
+        }
+        this.column = primitiveColumn;
+        this.archetype = archetype;
+        this.row = row;
+        return true;
+    }
+
+    public int getInt(int field) {
+        return boundColumn().ints[slot(field, PrimitiveLayout.INT)][row];
+    }
+
+    public void setInt(int field, int value) {
+        boundColumn().ints[slot(field, PrimitiveLayout.INT)][row] = layout.narrowInt(field, value);
+        archetype.markChanged(componentIndex, row);
+    }
+
+    public long getLong(int field) {
+        return boundColumn().longs[slot(field, PrimitiveLayout.LONG)][row];
+    }
+
+    public void setLong(int field, long value) {
+        boundColumn().longs[slot(field, PrimitiveLayout.LONG)][row] = value;
+        archetype.markChanged(componentIndex, row);
+    }
+
+    public float getFloat(int field) {
+        return boundColumn().floats[slot(field, PrimitiveLayout.FLOAT)][row];
+    }
+
+    public void setFloat(int field, float value) {
+        boundColumn().floats[slot(field, PrimitiveLayout.FLOAT)][row] = value;
+        archetype.markChanged(componentIndex, row);
+    }
+
+    public double getDouble(int field) {
+        return boundColumn().doubles[slot(field, PrimitiveLayout.DOUBLE)][row];
+    }
+
+    public void setDouble(int field, double value) {
+        boundColumn().doubles[slot(field, PrimitiveLayout.DOUBLE)][row] = value;
+        archetype.markChanged(componentIndex, row);
+    }
+
+    private PrimitiveColumn boundColumn() {
+        if (column == null) {
+            throw new IllegalStateException("PrimitiveComponentView is not bound to an entity");
+        }
+        return column;
+    }
+
+    private int slot(int field, int kind) {
+        if (layout.kind(field) != kind) {
+            throw new IllegalArgumentException("field " + layout.field(field).getName() + " type mismatch");
+        }
+        return layout.slot(field);
+    }
+}
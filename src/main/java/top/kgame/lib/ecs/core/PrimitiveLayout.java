@@ -0,0 +1,156 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.exception.InvalidPrimitiveComponentException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基本类型组件的字段布局，按声明顺序为字段编号，并按存储类型分配槽位。
+ * <p>boolean/byte/short/char/int 存放在int数组中，long、float、double 存放在各自类型的数组中。</p>
+ */
+final class PrimitiveLayout {
+    static final int INT = 0;
+    static final int LONG = 1;
+    static final int FLOAT = 2;
+    static final int DOUBLE = 3;
+
+    private final Class<? extends EcsComponent> componentClass;
+    private final Field[] fields;
+    private final int[] kinds;
+    private final int[] slots;
+    private final int[] slotCounts = new int[4];
+
+    private PrimitiveLayout(Class<? extends EcsComponent> componentClass, Field[] fields) {
+        this.componentClass = componentClass;
+        this.fields = fields;
+        this.kinds = new int[fields.length];
+        this.slots = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            int kind = kindOf(fields[i].getType());
+            kinds[i] = kind;
+            slots[i] = slotCounts[kind]++;
+        }
+    }
+
+    static PrimitiveLayout of(Class<? extends EcsComponent> componentClass) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : componentClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            if (!field.getType().isPrimitive()) {
+                throw new InvalidPrimitiveComponentException(componentClass, field.getName());
+            }
+            field.setAccessible(true);
+            fields.add(field);
+        }
+        return new PrimitiveLayout(componentClass, fields.toArray(new Field[0]));
+    }
+
+    private static int kindOf(Class<?> type) {
+        if (type == long.class) {
+            return LONG;
+        }
+        if (type == float.class) {
+            return FLOAT;
+        }
+        if (type == double.class) {
+            return DOUBLE;
+        }
+        return INT;
+    }
+
+    Class<? extends EcsComponent> getComponentClass() {
+        return componentClass;
+    }
+
+    int fieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * @throws IllegalArgumentException 字段不存在
+     */
+    int fieldIndex(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("primitive component " + componentClass.getName() + " has no field " + name);
+    }
+
+    int kind(int field) {
+        return kinds[field];
+    }
+
+    int slot(int field) {
+        return slots[field];
+    }
+
+    int slotCount(int kind) {
+        return slotCounts[kind];
+    }
+
+    /**
+     * boolean/byte/short/char/int 字段的值统一转换为int
+     */
+    int readInt(EcsComponent component, int field) throws IllegalAccessException {
+        Field f = fields[field];
+        Class<?> type = f.getType();
+        if (type == int.class) {
+            return f.getInt(component);
+        }
+        if (type == boolean.class) {
+            return f.getBoolean(component) ? 1 : 0;
+        }
+        if (type == char.class) {
+            return f.getChar(component);
+        }
+        return f.getShort(component);
+    }
+
+    /**
+     * 将int值按字段声明的类型截断，结果与写入组件对象后再读出的值一致
+     */
+    int narrowInt(int field, int value) {
+        Class<?> type = fields[field].getType();
+        if (type == int.class) {
+            return value;
+        }
+        if (type == boolean.class) {
+            return value != 0 ? 1 : 0;
+        }
+        if (type == char.class) {
+            return (char) value;
+        }
+        if (type == short.class) {
+            return (short) value;
+        }
+        return (byte) value;
+    }
+
+    void writeInt(EcsComponent component, int field, int value) throws IllegalAccessException {
+        Field f = fields[field];
+        Class<?> type = f.getType();
+        if (type == int.class) {
+            f.setInt(component, value);
+        } else if (type == boolean.class) {
+            f.setBoolean(component, value != 0);
+        } else if (type == char.class) {
+            f.setChar(component, (char) value);
+        } else if (type == short.class) {
+            f.setShort(component, (short) value);
+        } else {
+            f.setByte(component, (byte) value);
+        }
+    }
+
+    Field field(int field) {
+        return fields[field];
+    }
+}
@@ -0,0 +1,163 @@
+package top.kgame.lib.ecs.core;
+
+import top.kgame.lib.ecs.EcsEntity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 查询的结构变更日志，记录进入和离开查询的实体。
+ * <p>由 {@link EntityQuery#createJournal()} 创建，实体因创建、增删组件、销毁而进入或离开查询时，
+ * 由原型在结构变更时追加记录，订阅者每帧取出一次。每个订阅者持有独立的日志，互不影响。</p>
+ * <p>同一实体在两次取出之间多次进出查询时，按首次记录和取出时的状态合并为最终结果：
+ * 进入后又离开的实体不报告，离开后又进入的实体先报告离开再报告进入。只能在World线程访问。</p>
+ */
+public class QueryJournal implements EcsCleanable {
+    private static final int INIT_CAPACITY = 16;
+
+    private final EntityQuery entityQuery;
+    // 按发生顺序记录，entered[i] 为false表示离开
+    private EcsEntity[] entities = new EcsEntity[INIT_CAPACITY];
+    private boolean[] entered = new boolean[INIT_CAPACITY];
+    private int size = 0;
+    private int enteredCount = 0;
+    // 取出期间接收新记录的备用数组，与上面的数组轮换使用
+    private EcsEntity[] spareEntities = new EcsEntity[INIT_CAPACITY];
+    private boolean[] spareEntered = new boolean[INIT_CAPACITY];
+
+    QueryJournal(EntityQuery entityQuery) {
+        this.entityQuery = entityQuery;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    void recordEntered(EcsEntity entity) {
+        record(entity, true);
+        enteredCount++;
+    }
+
+    void recordLeft(EcsEntity entity) {
+        record(entity, false);
+    }
+
+    private void record(EcsEntity entity, boolean isEntered) {
+        if (size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+            entered = Arrays.copyOf(entered, size * 2);
+        }
+        entities[size] = entity;
+        entered[size] = isEntered;
+        size++;
+    }
+
+    /**
+     * 按记录顺序取出进入和离开查询的实体，取出后清空日志。
+     * <p>被销毁的实体也会报告离开，此时实体已经没有组件。</p>
+     * @return 回调的次数
+     */
+    public int drain(Consumer<EcsEntity> onEntered, Consumer<EcsEntity> onLeft) {
+        EcsEntity[] drainedEntities = entities;
+        boolean[] drainedEntered = entered;
+        int drainedSize = size;
+        // 同时有进入和离开记录时，同一实体才可能出现多次
+        Set<EcsEntity> reported = enteredCount > 0 && enteredCount < size ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+        // 回调中的结构变更可能继续追加记录，换一组数组接收
+        entities = spareEntities;
+        entered = spareEntered;
+        size = 0;
+        enteredCount = 0;
+        int count = 0;
+        for (int i = 0; i < drainedSize; i++) {
+            EcsEntity entity = drainedEntities[i];
+            if (reported != null && !reported.add(entity)) {
+                continue;
+            }
+            boolean matching = isMatching(entity);
+            if (drainedEntered[i]) {
+                // 首次记录为进入，说明上次取出时不在查询中
+                if (matching) {
+                    onEntered.accept(entity);
+                    count++;
+                }
+            } else {
+                onLeft.accept(entity);
+                count++;
+                if (matching) {
+                    onEntered.accept(entity);
+                    count++;
+                }
+            }
+        }
+        Arrays.fill(drainedEntities, 0, drainedSize, null);
+        spareEntities = drainedEntities;
+        spareEntered = drainedEntered;
+        return count;
+    }
+
+    /**
+     * 复制尚未取出的记录，用于回滚时恢复日志
+     * @return 没有记录时返回null
+     */
+    public Pending capturePending() {
+        if (size == 0) {
+            return null;
+        }
+        int[] ids = new int[size];
+        int[] types = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = entities[i].getIndex();
+            types[i] = entities[i].getType();
+        }
+        return new Pending(ids, types, Arrays.copyOf(entered, size));
+    }
+
+    /**
+     * 清空日志后按记录顺序重新追加 {@link #capturePending()} 复制的记录。
+     * <p>实体仍存在时使用回滚后的实体对象，已销毁的实体使用不属于任何原型的新对象，只报告离开。</p>
+     */
+    public void restorePending(Pending pending, EcsEntityManager entityManager) {
+        clean();
+        if (pending == null) {
+            return;
+        }
+        Map<Integer, EcsEntity> destroyed = new HashMap<>();
+        for (int i = 0; i < pending.ids.length; i++) {
+            int id = pending.ids[i];
+            int type = pending.types[i];
+            EcsEntity entity = entityManager.getEntity(id);
+            if (entity == null) {
+                entity = destroyed.computeIfAbsent(id, key -> new EcsEntity(entityManager, key, type));
+            }
+            if (pending.entered[i]) {
+                recordEntered(entity);
+            } else {
+                recordLeft(entity);
+            }
+        }
+    }
+
+    private boolean isMatching(EcsEntity entity) {
+        EntityArchetype archetype = entity.getArchetype();
+        return archetype != EntityArchetype.EMPTY_INSTANCE && entityQuery.getComponentFilter().isMatchingArchetype(archetype);
+    }
+
+    @Override
+    public void clean() {
+        Arrays.fill(entities, 0, size, null);
+        size = 0;
+        enteredCount = 0;
+    }
+
+    /**
+     * 尚未取出的记录，按实体ID保存，不引用实体对象
+     */
+    public record Pending(int[] ids, int[] types, boolean[] entered) {
+    }
+}
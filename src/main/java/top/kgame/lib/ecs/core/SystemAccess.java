@@ -0,0 +1,50 @@
+package top.kgame.lib.ecs.core;
+
+import java.util.BitSet;
+
+/**
+ * EcsSystem的组件读写集合，用于判断两个EcsSystem能否并行更新
+ */
+public final class SystemAccess {
+    private final ComponentMask read;
+    private final ComponentMask write;
+
+    private SystemAccess(ComponentMask read, ComponentMask write) {
+        this.read = read;
+        this.write = write;
+    }
+
+    /**
+     * @param filter EcsSystem的查询条件，必须包含和任意包含的组件视为读取，可以为null
+     * @param readIndexes 额外读取的组件索引
+     * @param writeIndexes 写入的组件索引
+     */
+    public static SystemAccess of(ComponentFilter filter, int[] readIndexes, int[] writeIndexes) {
+        BitSet readBits = filter == null ? new BitSet() : filter.accessBits();
+        for (int index : readIndexes) {
+            readBits.set(index);
+        }
+        BitSet writeBits = new BitSet();
+        for (int index : writeIndexes) {
+            writeBits.set(index);
+        }
+        return new SystemAccess(ComponentMask.of(readBits), ComponentMask.of(writeBits));
+    }
+
+    public ComponentMask getRead() {
+        return read;
+    }
+
+    public ComponentMask getWrite() {
+        return write;
+    }
+
+    /**
+     * 任意一方写入的组件被另一方读取或写入时冲突
+     */
+    public boolean conflictsWith(SystemAccess other) {
+        return write.intersects(other.write)
+                || write.intersects(other.read)
+                || read.intersects(other.write);
+    }
+}
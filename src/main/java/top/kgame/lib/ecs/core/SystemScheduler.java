@@ -3,24 +3,86 @@ package top.kgame.lib.ecs.core;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import top.kgame.lib.ecs.EcsSystem;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.annotation.After;
+import top.kgame.lib.ecs.annotation.Before;
 import top.kgame.lib.ecs.tools.SystemOrderManager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class SystemScheduler implements EcsCleanable {
     private static final Logger logger = LogManager.getLogger(SystemScheduler.class);
 
     private boolean sorted = false;
     private LinkedHashSet<EcsSystem> systems = new LinkedHashSet<>();
+    // 按排序顺序划分的批次，同一批次内的System读写不冲突且没有直接的先后依赖
+    private List<EcsSystem[]> stages = new ArrayList<>();
 
     public void updateSystems() {
+        updateSystems(null);
+    }
+
+    /**
+     * 按排序顺序更新System
+     * @param executor 并行更新使用的线程池，为null时依次更新
+     */
+    public void updateSystems(ForkJoinPool executor) {
         if (!sorted) {
             sortSystem();
         }
-        for (EcsSystem system : systems) {
-            system.tryUpdate();
+        if (executor == null) {
+            for (EcsSystem system : systems) {
+                system.tryUpdate();
+            }
+            return;
+        }
+        for (EcsSystem[] stage : stages) {
+            if (stage.length == 1) {
+                stage[0].tryUpdate();
+            } else {
+                updateParallel(stage, executor);
+            }
+        }
+    }
+
+    private void updateParallel(EcsSystem[] stage, ForkJoinPool executor) {
+        EcsWorld world = stage[0].getWorld();
+        // 同一批次的写入使用同一个版本，批次结束后再推进，批次内System的写入不会晚于各自的lastRunVersion
+        int stageVersion = world.advanceChangeVersion();
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[stage.length - 1];
+        for (int i = 1; i < stage.length; i++) {
+            EcsSystem system = stage[i];
+            tasks[i - 1] = executor.submit(() -> system.tryParallelUpdate(stageVersion));
+        }
+        RuntimeException error = null;
+        try {
+            stage[0].tryParallelUpdate(stageVersion);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        world.advanceChangeVersion();
+        if (error != null) {
+            throw error;
+        }
+        for (EcsSystem system : stage) {
+            system.executeParallelCommands();
         }
     }
 
@@ -34,6 +96,64 @@ public class SystemScheduler implements EcsCleanable {
     private void sortSystem() {
         sorted = true;
         systems = SystemOrderManager.order(systems);
+        stages = buildStages(systems);
+    }
+
+    private static List<EcsSystem[]> buildStages(Collection<EcsSystem> sortedSystems) {
+        List<EcsSystem[]> result = new ArrayList<>();
+        List<EcsSystem> current = new ArrayList<>();
+        for (EcsSystem system : sortedSystems) {
+            if (!current.isEmpty() && !canJoinStage(current, system)) {
+                result.add(current.toArray(new EcsSystem[0]));
+                current.clear();
+            }
+            current.add(system);
+        }
+        if (!current.isEmpty()) {
+            result.add(current.toArray(new EcsSystem[0]));
+        }
+        return result;
+    }
+
+    private static boolean canJoinStage(List<EcsSystem> stage, EcsSystem system) {
+        SystemAccess access = system.getComponentAccess();
+        if (access == null) {
+            return false;
+        }
+        for (EcsSystem member : stage) {
+            SystemAccess memberAccess = member.getComponentAccess();
+            if (memberAccess == null || memberAccess.conflictsWith(access)) {
+                return false;
+            }
+            if (hasOrderDependency(member.getClass(), system.getClass())
+                    || hasOrderDependency(system.getClass(), member.getClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * from 是否通过 {@link Before} 或 {@link After} 直接声明了与 to 的先后关系
+     */
+    private static boolean hasOrderDependency(Class<?> from, Class<?> to) {
+        Before before = from.getAnnotation(Before.class);
+        if (before != null) {
+            for (Class<?> type : before.value()) {
+                if (type == to) {
+                    return true;
+                }
+            }
+        }
+        After after = from.getAnnotation(After.class);
+        if (after != null) {
+            for (Class<?> type : after.value()) {
+                if (type == to) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     @Override
@@ -42,6 +162,7 @@ public class SystemScheduler implements EcsCleanable {
             system.clean();
         }
         systems.clear();
+        stages.clear();
         sorted = true;
     }
 
@@ -71,6 +192,16 @@ public class SystemScheduler implements EcsCleanable {
                 '}';
     }
 
+    /**
+     * 并行更新的批次划分，批次之间按顺序执行
+     */
+    public List<EcsSystem[]> getStages() {
+        if (!sorted) {
+            sortSystem();
+        }
+        return Collections.unmodifiableList(stages);
+    }
+
     public Collection<EcsSystem> getSortedSystem() {
         if (!sorted) {
             sortSystem();
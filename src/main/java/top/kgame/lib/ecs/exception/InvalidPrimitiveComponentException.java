@@ -0,0 +1,16 @@
+package top.kgame.lib.ecs.exception;
+
+import java.io.Serial;
+
+public class InvalidPrimitiveComponentException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = -2286049405133381547L;
+
+    public InvalidPrimitiveComponentException(Class<?> type, String fieldName) {
+        super("primitive component " + type.getName() + " field " + fieldName + " is not a primitive type");
+    }
+
+    public InvalidPrimitiveComponentException(String message) {
+        super(message);
+    }
+}
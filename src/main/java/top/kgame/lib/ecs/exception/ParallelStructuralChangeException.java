@@ -0,0 +1,12 @@
+package top.kgame.lib.ecs.exception;
+
+import java.io.Serial;
+
+public class ParallelStructuralChangeException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = -3820179456628315907L;
+
+    public ParallelStructuralChangeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package top.kgame.lib.ecs.exception;
+
+import java.io.Serial;
+
+public class SnapshotFormatException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 4172958061553417219L;
+
+    public SnapshotFormatException(String message) {
+        super(message);
+    }
+
+    public SnapshotFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,7 +1,9 @@
 package top.kgame.lib.ecs.extensions.component;
 
 import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.TagComponent;
 
+@TagComponent
 public class InitializedComponent implements EcsComponent {
     private InitializedComponent(){}
     private static final InitializedComponent INSTANCE = new InitializedComponent();
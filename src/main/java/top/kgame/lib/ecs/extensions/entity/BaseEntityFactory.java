@@ -8,10 +8,27 @@ import top.kgame.lib.ecs.core.EntityFactory;
 import java.util.Collection;
 
 public abstract class BaseEntityFactory implements EntityFactory {
+    private EcsEntityManager ecsEntityManager;
+
     @Override
     public EcsEntity create(EcsEntityManager ecsEntityManager) {
+        this.ecsEntityManager = ecsEntityManager;
         return ecsEntityManager.createEntityInstance(typeId(), generateComponent());
     }
 
+    @Override
+    public EcsEntity[] create(EcsEntityManager ecsEntityManager, int count) {
+        this.ecsEntityManager = ecsEntityManager;
+        return ecsEntityManager.createEntityInstances(typeId(), count, this::generateComponent);
+    }
+
     protected abstract Collection<EcsComponent> generateComponent();
+
+    /**
+     * 在 {@link #generateComponent()} 中使用，从对象池获取组件实例
+     * @see top.kgame.lib.ecs.core.EcsPoolable
+     */
+    protected <T extends EcsComponent> T obtainComponent(Class<T> componentClass) {
+        return ecsEntityManager.obtainComponent(componentClass);
+    }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
@@ -20,6 +21,7 @@ import java.util.List;
  */
 public abstract class EcsDestroySystem<T extends EcsComponent> extends EcsLogicSystem {
     private ComponentFilterParam<T> matchComponentMatchType;
+    private EntityQueryBuffer queryBuffer;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -30,15 +32,20 @@ public abstract class EcsDestroySystem<T extends EcsComponent> extends EcsLogicS
         List<ComponentFilterParam<?>> typeList = new ArrayList<>();
         typeList.add(matchComponentMatchType);
         typeList.add(ComponentFilterParam.require(DestroyingComponent.class));
+        queryBuffer = createQueryBuffer(matchComponentMatchType.getType());
         return typeList;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     protected void update() {
-        Collection<EcsEntity> entities = super.getAllMatchEntity();
-        for (EcsEntity entity : entities) {
-            onEntityDestroy(entity, entity.getComponent(matchComponentMatchType.getType()));
+        int size = super.fillMatchEntity(queryBuffer);
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        for (int i = 0; i < size; i++) {
+            onEntityDestroy(entities[i], (T) components1[i]);
         }
+        queryBuffer.clear();
     }
 
     protected abstract void onEntityDestroy(EcsEntity entity, T component);
@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
 import java.lang.reflect.Type;
@@ -18,6 +19,8 @@ import java.util.List;
  * @param <T> 要排除的组件类型
  */
 public abstract class EcsExcludeComponentUpdateSystem<T extends EcsComponent> extends EcsLogicSystem {
+    private final EntityQueryBuffer queryBuffer = new EntityQueryBuffer();
+
     @SuppressWarnings("unchecked")
     @Override
     protected Collection<ComponentFilterParam<?>> getMatchComponent() {
@@ -31,10 +34,13 @@ public abstract class EcsExcludeComponentUpdateSystem<T extends EcsComponent> ex
 
     @Override
     protected void update() {
-        Collection<EcsEntity> entities = super.getAllMatchEntity();
-        for (EcsEntity entity : entities) {
-            update(entity);
+        int size = super.fillMatchEntity(queryBuffer);
+        EcsEntity[] entities = queryBuffer.getEntities();
+        for (int i = 0; i < size; i++) {
+            update(entities[i]);
         }
+        markWritten(queryBuffer, 0, size);
+        queryBuffer.clear();
     }
 
     protected abstract void update(EcsEntity entity);
@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
 import java.lang.reflect.Type;
@@ -29,6 +30,8 @@ public abstract class EcsFiveComponentUpdateSystem<T1 extends EcsComponent,
     private ComponentFilterParam<T3> componentMatchType3;
     private ComponentFilterParam<T4> componentMatchType4;
     private ComponentFilterParam<T5> componentMatchType5;
+    private EntityQueryBuffer queryBuffer;
+    private final RangeTask chunkTask = this::updateRange;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -46,18 +49,38 @@ public abstract class EcsFiveComponentUpdateSystem<T1 extends EcsComponent,
         componentMatchTypes.add(componentMatchType3);
         componentMatchTypes.add(componentMatchType4);
         componentMatchTypes.add(componentMatchType5);
+        queryBuffer = createQueryBuffer(
+                componentMatchType1.getType(),
+                componentMatchType2.getType(),
+                componentMatchType3.getType(),
+                componentMatchType4.getType(),
+                componentMatchType5.getType());
         return componentMatchTypes;
     }
 
     @Override
     protected void update() {
-        for (EcsEntity entity : super.getAllMatchEntity()) {
-            update(entity, entity.getComponent(componentMatchType1.getType()),
-                    entity.getComponent(componentMatchType2.getType()),
-                    entity.getComponent(componentMatchType3.getType()),
-                    entity.getComponent(componentMatchType4.getType()),
-                    entity.getComponent(componentMatchType5.getType()));
+        int size = super.fillMatchEntity(queryBuffer);
+        super.forEachChunk(size, chunkTask);
+        queryBuffer.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateRange(int from, int to) {
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        EcsComponent[] components2 = queryBuffer.getColumn(1);
+        EcsComponent[] components3 = queryBuffer.getColumn(2);
+        EcsComponent[] components4 = queryBuffer.getColumn(3);
+        EcsComponent[] components5 = queryBuffer.getColumn(4);
+        for (int i = from; i < to; i++) {
+            update(entities[i], (T1) components1[i],
+                    (T2) components2[i],
+                    (T3) components3[i],
+                    (T4) components4[i],
+                    (T5) components5[i]);
         }
+        markWritten(queryBuffer, from, to);
     }
 
     protected abstract void update(EcsEntity entity, T1 component, T2 component1, T3 component2, T4 component3, T5 component5);
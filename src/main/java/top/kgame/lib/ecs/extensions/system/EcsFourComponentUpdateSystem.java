@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
 import java.lang.reflect.Type;
@@ -27,6 +28,8 @@ public abstract class EcsFourComponentUpdateSystem<T1 extends EcsComponent,
     private ComponentFilterParam<T2> componentMatchType2;
     private ComponentFilterParam<T3> componentMatchType3;
     private ComponentFilterParam<T4> componentMatchType4;
+    private EntityQueryBuffer queryBuffer;
+    private final RangeTask chunkTask = this::updateRange;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -42,17 +45,35 @@ public abstract class EcsFourComponentUpdateSystem<T1 extends EcsComponent,
         componentMatchTypes.add(componentMatchType2);
         componentMatchTypes.add(componentMatchType3);
         componentMatchTypes.add(componentMatchType4);
+        queryBuffer = createQueryBuffer(
+                componentMatchType1.getType(),
+                componentMatchType2.getType(),
+                componentMatchType3.getType(),
+                componentMatchType4.getType());
         return componentMatchTypes;
     }
 
     @Override
     protected void update() {
-        for (EcsEntity entity : super.getAllMatchEntity()) {
-            update(entity, entity.getComponent(componentMatchType1.getType()),
-                    entity.getComponent(componentMatchType2.getType()),
-                    entity.getComponent(componentMatchType3.getType()),
-                    entity.getComponent(componentMatchType4.getType()));
+        int size = super.fillMatchEntity(queryBuffer);
+        super.forEachChunk(size, chunkTask);
+        queryBuffer.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateRange(int from, int to) {
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        EcsComponent[] components2 = queryBuffer.getColumn(1);
+        EcsComponent[] components3 = queryBuffer.getColumn(2);
+        EcsComponent[] components4 = queryBuffer.getColumn(3);
+        for (int i = from; i < to; i++) {
+            update(entities[i], (T1) components1[i],
+                    (T2) components2[i],
+                    (T3) components3[i],
+                    (T4) components4[i]);
         }
+        markWritten(queryBuffer, from, to);
     }
 
     protected abstract void update(EcsEntity entity, T1 component1, T2 component2, T3 component3, T4 component4);
@@ -2,7 +2,9 @@ package top.kgame.lib.ecs.extensions.system;
 
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.command.EcsCommandScope;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.exception.InvalidSystemInitFinishSingle;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
@@ -22,6 +24,7 @@ public abstract class EcsInitializeSystem<T extends EcsComponent> extends EcsLog
     public static abstract class SystemInitFinishSingle implements EcsComponent {}
 
     private ComponentFilterParam<T> matchComponentMatchType;
+    private EntityQueryBuffer queryBuffer;
     private SystemInitFinishSingle systemInitFinishSingle;
 
     public EcsInitializeSystem() {}
@@ -35,14 +38,24 @@ public abstract class EcsInitializeSystem<T extends EcsComponent> extends EcsLog
         super.onInit();
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     protected void update() {
-        Collection<EcsEntity> entityList = super.getAllMatchEntity();
-        for (EcsEntity entity : entityList) {
-            if (onInitialize(entity, entity.getComponent(matchComponentMatchType.getType()))) {
-                entity.addComponent(systemInitFinishSingle);
+        int size = super.fillMatchEntity(queryBuffer);
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        for (int i = 0; i < size; i++) {
+            if (!onInitialize(entities[i], (T) components1[i])) {
+                continue;
+            }
+            if (isParallelUpdating()) {
+                addDelayAddComponent(entities[i], systemInitFinishSingle, EcsCommandScope.SYSTEM);
+            } else {
+                entities[i].addComponent(systemInitFinishSingle);
             }
         }
+        markWritten(queryBuffer, 0, size);
+        queryBuffer.clear();
     }
 
     @SuppressWarnings("unchecked")
@@ -54,6 +67,7 @@ public abstract class EcsInitializeSystem<T extends EcsComponent> extends EcsLog
         List<ComponentFilterParam<?>> typeList = new ArrayList<>();
         typeList.add(matchComponentMatchType);
         typeList.add(ComponentFilterParam.exclude(systemInitFinishSingle.getClass()));
+        queryBuffer = createQueryBuffer(matchComponentMatchType.getType());
         return typeList;
     }
 
@@ -7,6 +7,7 @@ import top.kgame.lib.ecs.core.ComponentFilterParam;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 abstract class EcsLogicSystem extends EcsSystem {
@@ -38,6 +39,12 @@ abstract class EcsLogicSystem extends EcsSystem {
                 extraMatchComponent.add(ComponentFilterParam.exclude(clazz));
             }
         }
+        Collection<Class<? extends EcsComponent>> changedComponent = getChangedFilterComponent();
+        if (changedComponent != null && !changedComponent.isEmpty()) {
+            for (Class<? extends EcsComponent> clazz : changedComponent) {
+                extraMatchComponent.add(ComponentFilterParam.changed(clazz));
+            }
+        }
     }
 
     protected abstract Collection<ComponentFilterParam<?>> getMatchComponent();
@@ -51,4 +58,12 @@ abstract class EcsLogicSystem extends EcsSystem {
      * 额外需要排除的Component类
      */
     public abstract Collection<Class<? extends EcsComponent>> getExtraExcludeComponent();
+
+    /**
+     * 变更过滤的Component类，不为空时只更新上次运行后这些组件被写入过的实体块
+     * @see ComponentFilterParam#changed(Class)
+     */
+    protected Collection<Class<? extends EcsComponent>> getChangedFilterComponent() {
+        return Collections.emptyList();
+    }
 }
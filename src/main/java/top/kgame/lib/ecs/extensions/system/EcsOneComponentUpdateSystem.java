@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
 import java.lang.reflect.Type;
@@ -20,6 +21,8 @@ import java.util.List;
  */
 public abstract class EcsOneComponentUpdateSystem<T extends EcsComponent> extends EcsLogicSystem {
     private ComponentFilterParam<T> matchComponentMatchType;
+    private EntityQueryBuffer queryBuffer;
+    private final RangeTask chunkTask = this::updateRange;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -29,15 +32,25 @@ public abstract class EcsOneComponentUpdateSystem<T extends EcsComponent> extend
 
         List<ComponentFilterParam<?>> typeList = new ArrayList<>();
         typeList.add(matchComponentMatchType);
+        queryBuffer = createQueryBuffer(matchComponentMatchType.getType());
         return typeList;
     }
 
     @Override
     protected void update() {
-        Collection<EcsEntity> entities = super.getAllMatchEntity();
-        for (EcsEntity entity : entities) {
-            update(entity, entity.getComponent(matchComponentMatchType.getType()));
+        int size = super.fillMatchEntity(queryBuffer);
+        super.forEachChunk(size, chunkTask);
+        queryBuffer.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateRange(int from, int to) {
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        for (int i = from; i < to; i++) {
+            update(entities[i], (T) components1[i]);
         }
+        markWritten(queryBuffer, from, to);
     }
 
     protected abstract void update(EcsEntity entity, T component);
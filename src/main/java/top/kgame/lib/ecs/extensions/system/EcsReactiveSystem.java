@@ -0,0 +1,81 @@
+package top.kgame.lib.ecs.extensions.system;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.QueryJournal;
+import top.kgame.lib.ecs.tools.ClassUtils;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 响应式系统基类
+ * <p>
+ * 只处理上次运行后进入或离开查询的实体，不需要添加标记组件，也不遍历整个查询。
+ * 实体被销毁后才处理离开时，实体已经没有组件，需要读取组件的清理逻辑仍使用 {@link EcsDestroySystem}。
+ *
+ * @param <T> 进入查询时处理所需的组件类型
+ * @see QueryJournal
+ */
+public abstract class EcsReactiveSystem<T extends EcsComponent> extends EcsLogicSystem {
+    private Class<T> componentType;
+    private QueryJournal queryJournal;
+    private final Consumer<EcsEntity> enteredTask = entity -> onEntityEntered(entity, entity.getComponent(componentType));
+    private final Consumer<EcsEntity> leftTask = this::onEntityLeft;
+
+    @Override
+    protected void onInit() {
+        super.onInit();
+        queryJournal = enableQueryJournal();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Collection<ComponentFilterParam<?>> getMatchComponent() {
+        Type[] parameterizedTypes = ClassUtils.generateParameterizedType(this.getClass());
+        componentType = (Class<T>) parameterizedTypes[0];
+
+        List<ComponentFilterParam<?>> typeList = new ArrayList<>();
+        typeList.add(ComponentFilterParam.require(componentType));
+        return typeList;
+    }
+
+    @Override
+    protected void update() {
+        queryJournal.drain(enteredTask, leftTask);
+    }
+
+    protected abstract void onEntityEntered(EcsEntity entity, T component);
+
+    protected abstract void onEntityLeft(EcsEntity entity);
+
+    @Override
+    public Collection<Class<? extends EcsComponent>> getExtraRequirementComponent() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<Class<? extends EcsComponent>> getExtraExcludeComponent() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected void onStart() {
+
+    }
+
+    @Override
+    protected void onStop() {
+
+    }
+
+    @Override
+    protected void onDestroy() {
+
+    }
+}
@@ -3,6 +3,7 @@ package top.kgame.lib.ecs.extensions.system;
 import top.kgame.lib.ecs.EcsComponent;
 import top.kgame.lib.ecs.EcsEntity;
 import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
 import top.kgame.lib.ecs.tools.ClassUtils;
 
 import java.lang.reflect.Type;
@@ -22,6 +23,8 @@ import java.util.List;
 public abstract class EcsTwoComponentUpdateSystem<T1 extends EcsComponent, T2 extends EcsComponent> extends EcsLogicSystem {
     private ComponentFilterParam<T1> componentMatchType1;
     private ComponentFilterParam<T2> componentMatchType2;
+    private EntityQueryBuffer queryBuffer;
+    private final RangeTask chunkTask = this::updateRange;
 
     @SuppressWarnings("unchecked")
     @Override
@@ -33,15 +36,29 @@ public abstract class EcsTwoComponentUpdateSystem<T1 extends EcsComponent, T2 ex
         List<ComponentFilterParam<?>> componentMatchTypes = new ArrayList<>();
         componentMatchTypes.add(componentMatchType1);
         componentMatchTypes.add(componentMatchType2);
+        queryBuffer = createQueryBuffer(
+                componentMatchType1.getType(),
+                componentMatchType2.getType());
         return componentMatchTypes;
     }
 
     @Override
     protected void update() {
-        for (EcsEntity entity : super.getAllMatchEntity()) {
-            update(entity, entity.getComponent(componentMatchType1.getType()),
-                    entity.getComponent(componentMatchType2.getType()));
+        int size = super.fillMatchEntity(queryBuffer);
+        super.forEachChunk(size, chunkTask);
+        queryBuffer.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void updateRange(int from, int to) {
+        EcsEntity[] entities = queryBuffer.getEntities();
+        EcsComponent[] components1 = queryBuffer.getColumn(0);
+        EcsComponent[] components2 = queryBuffer.getColumn(1);
+        for (int i = from; i < to; i++) {
+            update(entities[i], (T1) components1[i],
+                    (T2) components2[i]);
         }
+        markWritten(queryBuffer, from, to);
     }
 
     protected abstract void update(EcsEntity entity, T1 component, T2 component1);
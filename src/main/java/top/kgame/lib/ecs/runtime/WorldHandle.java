@@ -0,0 +1,112 @@
+package top.kgame.lib.ecs.runtime;
+
+import top.kgame.lib.ecs.EcsWorld;
+
+/**
+ * WorldRuntime 中托管的 EcsWorld，记录驱动状态和耗时统计。
+ * <p>统计数据由工作线程写入，可以在任意线程读取。</p>
+ */
+public final class WorldHandle {
+    // 耗时平滑系数，新样本占 1/8
+    private static final int COST_SMOOTH_SHIFT = 3;
+
+    private final EcsWorld world;
+    private final int tickInterval;
+
+    // 以下字段只由所属工作线程读写
+    long nextTickTime;
+
+    private volatile WorldRuntime.Worker worker;
+    private volatile boolean removed = false;
+    private volatile long averageTickCost = 0;
+    private volatile long lastTickCost = 0;
+    private volatile long lag = 0;
+    private volatile long tickCount = 0;
+
+    WorldHandle(EcsWorld world, int tickInterval) {
+        this.world = world;
+        this.tickInterval = tickInterval;
+    }
+
+    public EcsWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * 更新间隔，单位毫秒
+     */
+    public int getTickInterval() {
+        return tickInterval;
+    }
+
+    /**
+     * 当前所在工作线程的序号，工作线程之间迁移时会变化
+     */
+    public int getWorkerIndex() {
+        return worker.index;
+    }
+
+    /**
+     * 最近一次update相对计划时间的延迟，单位毫秒
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * update的平滑平均耗时，单位纳秒
+     */
+    public long getAverageTickCost() {
+        return averageTickCost;
+    }
+
+    public long getLastTickCost() {
+        return lastTickCost;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * 负载，平均耗时占更新间隔的比例
+     */
+    double getLoad() {
+        return (double) averageTickCost / (tickInterval * 1_000_000L);
+    }
+
+    WorldRuntime.Worker getWorker() {
+        return worker;
+    }
+
+    void setWorker(WorldRuntime.Worker worker) {
+        this.worker = worker;
+    }
+
+    void markRemoved() {
+        removed = true;
+    }
+
+    void recordTick(long lag, long cost) {
+        this.lag = lag;
+        this.lastTickCost = cost;
+        long average = averageTickCost;
+        this.averageTickCost = tickCount == 0 ? cost : average + ((cost - average) >> COST_SMOOTH_SHIFT);
+        this.tickCount = tickCount + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "WorldHandle{" +
+                "tickInterval=" + tickInterval +
+                ", worker=" + worker.index +
+                ", lag=" + lag +
+                ", averageTickCost=" + averageTickCost +
+                ", tickCount=" + tickCount +
+                '}';
+    }
+}
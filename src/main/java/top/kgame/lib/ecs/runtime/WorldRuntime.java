@@ -0,0 +1,390 @@
+package top.kgame.lib.ecs.runtime;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import top.kgame.lib.ecs.EcsWorld;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多World运行时，在固定数量的工作线程上按各自的更新间隔驱动 EcsWorld。
+ * <p>每个 EcsWorld 同一时间只属于一个工作线程，update、close 都在该线程执行，EcsWorld 本身无需线程安全。</p>
+ * <p>新加入的 EcsWorld 分配到负载最低的工作线程；运行期间按 update 平均耗时定期迁移，
+ * 每次最多迁移一个 EcsWorld，迁移发生在两次 update 之间。</p>
+ * <p>托管期间不要在其他线程直接操作 EcsWorld，跨线程的操作通过 {@link EcsWorld#submitCommand} 提交。</p>
+ */
+public class WorldRuntime {
+    private static final Logger logger = LogManager.getLogger(WorldRuntime.class);
+    private static final long DEFAULT_REBALANCE_INTERVAL = 1000;
+
+    private final Worker[] workers;
+    private final List<WorldHandle> handles = new CopyOnWriteArrayList<>();
+    private final long rebalanceInterval;
+    private final AtomicLong nextRebalanceTime = new AtomicLong();
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running = false;
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param workerCount 工作线程数量
+     */
+    public WorldRuntime(int workerCount) {
+        this(workerCount, new DefaultThreadFactory(), DEFAULT_REBALANCE_INTERVAL);
+    }
+
+    /**
+     * @param workerCount 工作线程数量
+     * @param threadFactory 工作线程工厂，可以使用 {@code Thread.ofVirtual().factory()} 创建虚拟线程
+     * @param rebalanceInterval 负载均衡间隔，单位毫秒，小于等于0时不自动均衡
+     */
+    public WorldRuntime(int workerCount, ThreadFactory threadFactory, long rebalanceInterval) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.rebalanceInterval = rebalanceInterval;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(i, threadFactory);
+        }
+    }
+
+    public synchronized void start() {
+        if (running || shutdown) {
+            return;
+        }
+        running = true;
+        nextRebalanceTime.set(currentTime() + rebalanceInterval);
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * 停止所有工作线程，并在各自的工作线程上关闭仍在托管的 EcsWorld
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+        }
+        for (WorldHandle handle : handles) {
+            handle.markRemoved();
+        }
+        if (!running) {
+            for (WorldHandle handle : handles) {
+                handle.getWorld().close();
+            }
+            handles.clear();
+            return;
+        }
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        Worker current = null;
+        for (Worker worker : workers) {
+            if (worker.thread == Thread.currentThread()) {
+                current = worker;
+                continue;
+            }
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // 所有工作线程退出后才处理仍在迁移途中的 EcsWorld，退出前的工作线程可能迁移到已处理过的收件箱
+        for (Worker worker : workers) {
+            if (worker == current) {
+                continue;
+            }
+            WorldHandle handle;
+            while ((handle = worker.inbox.poll()) != null) {
+                worker.closeWorld(handle);
+            }
+        }
+        handles.clear();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * 托管 EcsWorld，从下一个更新间隔开始驱动
+     * @param world EcsWorld
+     * @param tickInterval 更新间隔，单位毫秒
+     */
+    public WorldHandle addWorld(EcsWorld world, int tickInterval) {
+        if (tickInterval <= 0) {
+            throw new IllegalArgumentException("tickInterval must be positive: " + tickInterval);
+        }
+        if (shutdown) {
+            throw new IllegalStateException("WorldRuntime has been shutdown");
+        }
+        WorldHandle handle = new WorldHandle(world, tickInterval);
+        handle.nextTickTime = currentTime() + tickInterval;
+        Worker worker;
+        synchronized (this) {
+            worker = lightestWorker();
+            handle.setWorker(worker);
+            handles.add(handle);
+        }
+        worker.post(handle);
+        return handle;
+    }
+
+    /**
+     * 停止驱动 EcsWorld，并在其工作线程上关闭
+     */
+    public void removeWorld(WorldHandle handle) {
+        if (!handles.remove(handle)) {
+            return;
+        }
+        handle.markRemoved();
+        LockSupport.unpark(handle.getWorker().thread);
+    }
+
+    public List<WorldHandle> getWorlds() {
+        return Collections.unmodifiableList(handles);
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    /**
+     * 工作线程的负载，即所属 EcsWorld 平均耗时占更新间隔比例之和
+     */
+    public double getWorkerLoad(int workerIndex) {
+        return workers[workerIndex].load();
+    }
+
+    /**
+     * 将一个 EcsWorld 从负载最高的工作线程迁移到负载最低的工作线程，迁移后两者差距缩小时才迁移
+     * @return 是否发生迁移
+     */
+    public synchronized boolean rebalance() {
+        if (workers.length < 2) {
+            return false;
+        }
+        Worker heaviest = workers[0];
+        Worker lightest = workers[0];
+        double heaviestLoad = heaviest.load();
+        double lightestLoad = heaviestLoad;
+        for (int i = 1; i < workers.length; i++) {
+            double load = workers[i].load();
+            if (load > heaviestLoad) {
+                heaviest = workers[i];
+                heaviestLoad = load;
+            }
+            if (load < lightestLoad) {
+                lightest = workers[i];
+                lightestLoad = load;
+            }
+        }
+        double gap = heaviestLoad - lightestLoad;
+        WorldHandle candidate = null;
+        double candidateGap = gap;
+        for (WorldHandle handle : handles) {
+            if (handle.getWorker() != heaviest) {
+                continue;
+            }
+            double newGap = Math.abs(gap - 2 * handle.getLoad());
+            if (newGap < candidateGap) {
+                candidate = handle;
+                candidateGap = newGap;
+            }
+        }
+        if (candidate == null) {
+            return false;
+        }
+        logger.debug("WorldRuntime move world from worker {} to worker {}, load gap {} -> {}",
+                heaviest.index, lightest.index, gap, candidateGap);
+        candidate.setWorker(lightest);
+        LockSupport.unpark(heaviest.thread);
+        return true;
+    }
+
+    /**
+     * 运行时时钟，单位毫秒，单调递增
+     */
+    public long currentTime() {
+        return startMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private Worker lightestWorker() {
+        Worker result = workers[0];
+        double resultLoad = result.load();
+        int resultCount = result.worldCount();
+        for (int i = 1; i < workers.length; i++) {
+            double load = workers[i].load();
+            int count = workers[i].worldCount();
+            if (load < resultLoad || (load == resultLoad && count < resultCount)) {
+                result = workers[i];
+                resultLoad = load;
+                resultCount = count;
+            }
+        }
+        return result;
+    }
+
+    private void tryRebalance(long now) {
+        if (rebalanceInterval <= 0) {
+            return;
+        }
+        long next = nextRebalanceTime.get();
+        if (now < next || !nextRebalanceTime.compareAndSet(next, now + rebalanceInterval)) {
+            return;
+        }
+        rebalance();
+    }
+
+    final class Worker implements Runnable {
+        final int index;
+        private final Thread thread;
+        // 新分配或迁移过来的 EcsWorld
+        private final ConcurrentLinkedQueue<WorldHandle> inbox = new ConcurrentLinkedQueue<>();
+        // 只由本线程访问
+        private final List<WorldHandle> worlds = new ArrayList<>();
+
+        private Worker(int index, ThreadFactory threadFactory) {
+            this.index = index;
+            this.thread = threadFactory.newThread(this);
+        }
+
+        private void post(WorldHandle handle) {
+            inbox.add(handle);
+            LockSupport.unpark(thread);
+        }
+
+        private double load() {
+            double load = 0;
+            for (WorldHandle handle : handles) {
+                if (handle.getWorker() == this) {
+                    load += handle.getLoad();
+                }
+            }
+            return load;
+        }
+
+        private int worldCount() {
+            int count = 0;
+            for (WorldHandle handle : handles) {
+                if (handle.getWorker() == this) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                WorldHandle received;
+                while ((received = inbox.poll()) != null) {
+                    worlds.add(received);
+                }
+                long now = currentTime();
+                long nextWakeTime = Long.MAX_VALUE;
+                for (int i = 0; i < worlds.size(); i++) {
+                    WorldHandle handle = worlds.get(i);
+                    if (handle.isRemoved()) {
+                        worlds.remove(i--);
+                        closeWorld(handle);
+                        continue;
+                    }
+                    if (handle.getWorker() != this) {
+                        worlds.remove(i--);
+                        handle.getWorker().post(handle);
+                        continue;
+                    }
+                    if (now >= handle.nextTickTime && !tick(handle, now)) {
+                        worlds.remove(i--);
+                        continue;
+                    }
+                    nextWakeTime = Math.min(nextWakeTime, handle.nextTickTime);
+                }
+                tryRebalance(now);
+                long parkTime = nextWakeTime == Long.MAX_VALUE ? rebalanceIntervalOrDefault() : nextWakeTime - currentTime();
+                if (parkTime > 0) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(parkTime));
+                }
+            }
+            WorldHandle received;
+            while ((received = inbox.poll()) != null) {
+                worlds.add(received);
+            }
+            for (WorldHandle handle : worlds) {
+                closeWorld(handle);
+            }
+            worlds.clear();
+        }
+
+        /**
+         * @return EcsWorld 是否继续由运行时驱动
+         */
+        private boolean tick(WorldHandle handle, long now) {
+            EcsWorld world = handle.getWorld();
+            long startTime = System.nanoTime();
+            try {
+                world.update(now);
+            } catch (RuntimeException e) {
+                logger.error("WorldRuntime update world failed, world removed from runtime and closed. {}", handle, e);
+                handles.remove(handle);
+                handle.markRemoved();
+                closeWorld(handle);
+                return false;
+            }
+            handle.recordTick(now - handle.nextTickTime, System.nanoTime() - startTime);
+            if (world.isClosed()) {
+                handles.remove(handle);
+                handle.markRemoved();
+                return false;
+            }
+            handle.nextTickTime += handle.getTickInterval();
+            // 落后超过一个间隔时丢弃积压，避免连续追帧
+            if (handle.nextTickTime <= now) {
+                handle.nextTickTime = now + handle.getTickInterval();
+            }
+            return true;
+        }
+
+        private void closeWorld(WorldHandle handle) {
+            try {
+                handle.getWorld().close();
+            } catch (RuntimeException e) {
+                logger.error("WorldRuntime close world failed. {}", handle, e);
+            }
+        }
+
+        private long rebalanceIntervalOrDefault() {
+            return rebalanceInterval > 0 ? rebalanceInterval : DEFAULT_REBALANCE_INTERVAL;
+        }
+    }
+
+    private static final class DefaultThreadFactory implements ThreadFactory {
+        private static final AtomicInteger RUNTIME_ID = new AtomicInteger();
+        private final int runtimeId = RUNTIME_ID.incrementAndGet();
+        private final AtomicInteger threadId = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ecs-world-runtime-" + runtimeId + "-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
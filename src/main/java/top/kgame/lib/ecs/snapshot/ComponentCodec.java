@@ -0,0 +1,25 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 组件的二进制编解码器，编码和解码必须读写相同的字节数
+ * @param <T> 组件类型
+ */
+public interface ComponentCodec<T extends EcsComponent> {
+    void encode(T component, ByteBuffer buffer);
+
+    /**
+     * @return 新的组件实例
+     */
+    T decode(ByteBuffer buffer);
+
+    /**
+     * 编码格式的版本，参与快照结构哈希。修改编码格式时需要增加版本，旧格式的存档和快照会被拒绝
+     */
+    default int version() {
+        return 0;
+    }
+}
@@ -0,0 +1,125 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按声明顺序反射读写基本类型字段的编解码器，用于所有实例字段都是基本类型的组件。
+ * 继承的字段同样编码，从最上层的父类开始，每个类内按声明顺序
+ */
+final class FieldComponentCodec<T extends EcsComponent> implements ComponentCodec<T> {
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+
+    private FieldComponentCodec(Constructor<T> constructor, Field[] fields) {
+        this.constructor = constructor;
+        this.fields = fields;
+    }
+
+    /**
+     * @return 存在非基本类型的实例字段或没有无参构造函数（如匿名类）时返回null
+     */
+    static <T extends EcsComponent> FieldComponentCodec<T> of(Class<T> componentClass) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> klass = componentClass; klass != null && klass != Object.class; klass = klass.getSuperclass()) {
+            hierarchy.add(klass);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            for (Field field : hierarchy.get(i).getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                if (!field.getType().isPrimitive()) {
+                    return null;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        try {
+            Constructor<T> constructor = componentClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return new FieldComponentCodec<>(constructor, fields.toArray(new Field[0]));
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 字段名和类型按编码顺序计算的哈希，字段增删、重排或改变类型时变化
+     */
+    int layoutHash() {
+        int hash = 1;
+        for (Field field : fields) {
+            hash = 31 * hash + field.getName().hashCode();
+            hash = 31 * hash + field.getType().getName().hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public void encode(T component, ByteBuffer buffer) {
+        try {
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == int.class) {
+                    buffer.putInt(field.getInt(component));
+                } else if (type == long.class) {
+                    buffer.putLong(field.getLong(component));
+                } else if (type == float.class) {
+                    buffer.putFloat(field.getFloat(component));
+                } else if (type == double.class) {
+                    buffer.putDouble(field.getDouble(component));
+                } else if (type == boolean.class) {
+                    buffer.put(field.getBoolean(component) ? (byte) 1 : (byte) 0);
+                } else if (type == byte.class) {
+                    buffer.put(field.getByte(component));
+                } else if (type == short.class) {
+                    buffer.putShort(field.getShort(component));
+                } else {
+                    buffer.putChar(field.getChar(component));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public T decode(ByteBuffer buffer) {
+        try {
+            T component = constructor.newInstance();
+            for (Field field : fields) {
+                Class<?> type = field.getType();
+                if (type == int.class) {
+                    field.setInt(component, buffer.getInt());
+                } else if (type == long.class) {
+                    field.setLong(component, buffer.getLong());
+                } else if (type == float.class) {
+                    field.setFloat(component, buffer.getFloat());
+                } else if (type == double.class) {
+                    field.setDouble(component, buffer.getDouble());
+                } else if (type == boolean.class) {
+                    field.setBoolean(component, buffer.get() != 0);
+                } else if (type == byte.class) {
+                    field.setByte(component, buffer.get());
+                } else if (type == short.class) {
+                    field.setShort(component, buffer.getShort());
+                } else {
+                    field.setChar(component, buffer.getChar());
+                }
+            }
+            return component;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package top.kgame.lib.ecs.snapshot;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecs.exception.SnapshotFormatException;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 世界快照解码器，将 {@link SnapshotEncoder} 输出的帧应用到另一个 EcsWorld。
+ * <p>远端实体按实体类型通过本地的实体工厂创建，远端ID到本地实体的映射由解码器维护。
+ * 同步组件按帧中的组件掩码增删，数据掩码中的组件替换为解码出的新实例；不同步的组件保持不变。
+ * 远端销毁的实体在本地请求销毁，下一次update时移除。同步的World单例按帧设置或移除，完整帧中不存在的同步单例被移除。</p>
+ * <p>过期、乱序以及基线晚于已应用帧的增量帧被忽略。只能在World线程调用。</p>
+ */
+public class SnapshotDecoder {
+    private static final Logger logger = LogManager.getLogger(SnapshotDecoder.class);
+
+    private final EcsWorld ecsWorld;
+    private final SnapshotSchema schema;
+    private final Map<Integer, EcsEntity> remoteEntities = new HashMap<>();
+    private int lastFrameId = 0;
+    private long lastWorldTime = 0;
+    private final long[] mask;
+    private final long[] changedMask;
+
+    public SnapshotDecoder(EcsWorld ecsWorld, SnapshotSchema schema) {
+        this.ecsWorld = ecsWorld;
+        this.schema = schema;
+        schema.build();
+        this.mask = new long[schema.wordCount()];
+        this.changedMask = new long[schema.wordCount()];
+    }
+
+    /**
+     * 应用一帧，读取位置移动到帧末尾
+     * @return 帧被忽略时返回false，应用成功后应向编码端确认 {@link #getLastFrameId()}
+     * @throws SnapshotFormatException 帧类型未知或双方同步的组件不一致
+     */
+    public boolean apply(ByteBuffer frame) {
+        byte frameType = frame.get();
+        if (frameType != SnapshotEncoder.FULL_FRAME && frameType != SnapshotEncoder.DELTA_FRAME) {
+            throw new SnapshotFormatException("unknown snapshot frame type " + frameType);
+        }
+        int schemaHash = frame.getInt();
+        if (schemaHash != schema.schemaHash()) {
+            throw new SnapshotFormatException("snapshot schema mismatch, remote " + schemaHash + " local " + schema.schemaHash());
+        }
+        int frameId = frame.getInt();
+        int baselineFrameId = frame.getInt();
+        long worldTime = frame.getLong();
+        if (frameId <= lastFrameId) {
+            return false;
+        }
+        boolean full = frameType == SnapshotEncoder.FULL_FRAME;
+        if (!full && (lastFrameId == 0 || baselineFrameId > lastFrameId)) {
+            return false;
+        }
+        if (!full) {
+            int destroyedCount = frame.getInt();
+            for (int i = 0; i < destroyedCount; i++) {
+                destroyLocal(remoteEntities.remove(frame.getInt()));
+            }
+        }
+        int entityCount = frame.getInt();
+        Set<Integer> present = full ? new HashSet<>(entityCount * 2) : null;
+        for (int i = 0; i < entityCount; i++) {
+            int remoteId = readEntity(frame);
+            if (present != null) {
+                present.add(remoteId);
+            }
+        }
+        if (present != null) {
+            Iterator<Map.Entry<Integer, EcsEntity>> iterator = remoteEntities.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, EcsEntity> entry = iterator.next();
+                if (!present.contains(entry.getKey())) {
+                    destroyLocal(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        readSingletons(frame, full);
+        lastFrameId = frameId;
+        lastWorldTime = worldTime;
+        return true;
+    }
+
+    /**
+     * @return 远端实体在本地对应的实体，不存在时返回null
+     */
+    public EcsEntity getEntity(int remoteId) {
+        return remoteEntities.get(remoteId);
+    }
+
+    public int getEntityCount() {
+        return remoteEntities.size();
+    }
+
+    /**
+     * 最近一次应用的帧ID，尚未应用时为0
+     */
+    public int getLastFrameId() {
+        return lastFrameId;
+    }
+
+    /**
+     * 最近一次应用的帧编码时远端的世界时间
+     */
+    public long getLastWorldTime() {
+        return lastWorldTime;
+    }
+
+    private int readEntity(ByteBuffer frame) {
+        int remoteId = frame.getInt();
+        int type = frame.getInt();
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = frame.getLong();
+        }
+        for (int i = 0; i < changedMask.length; i++) {
+            changedMask[i] = frame.getLong();
+        }
+        EcsEntity entity = remoteEntities.get(remoteId);
+        if (entity == null || entity.getArchetype() == EntityArchetype.EMPTY_INSTANCE) {
+            entity = ecsWorld.createEntity(type);
+            remoteEntities.put(remoteId, entity);
+        }
+        for (int wire = 0; wire < schema.size(); wire++) {
+            boolean inMask = (mask[wire >>> 6] & (1L << wire)) != 0;
+            boolean changed = (changedMask[wire >>> 6] & (1L << wire)) != 0;
+            Class<? extends EcsComponent> componentClass = schema.componentClass(wire);
+            boolean has = entity.hasComponent(componentClass);
+            if (!inMask) {
+                if (has) {
+                    entity.removeComponent(componentClass);
+                }
+            } else if (changed) {
+                applyComponent(entity, wire, schema.codec(wire).decode(frame), has);
+            } else if (!has) {
+                if (schema.isTag(wire)) {
+                    entity.addComponent(schema.createTag(wire));
+                } else {
+                    logger.warn("snapshot component {} missing on entity {} without data, remote entity:{}",
+                            componentClass.getSimpleName(), entity.getIndex(), remoteId);
+                }
+            }
+        }
+        return remoteId;
+    }
+
+    private void readSingletons(ByteBuffer frame, boolean full) {
+        boolean[] present = full ? new boolean[schema.size()] : null;
+        int count = frame.getInt();
+        for (int i = 0; i < count; i++) {
+            int wire = frame.getInt();
+            if (wire < 0 || wire >= schema.size()) {
+                throw new SnapshotFormatException("invalid singleton wire " + wire);
+            }
+            if (frame.get() == 0) {
+                ecsWorld.removeSingleton(schema.componentClass(wire));
+                continue;
+            }
+            ecsWorld.setSingleton(schema.isTag(wire) ? schema.createTag(wire) : schema.codec(wire).decode(frame));
+            if (present != null) {
+                present[wire] = true;
+            }
+        }
+        if (present != null) {
+            for (int wire = 0; wire < present.length; wire++) {
+                if (!present[wire]) {
+                    ecsWorld.removeSingleton(schema.componentClass(wire));
+                }
+            }
+        }
+    }
+
+    private void applyComponent(EcsEntity entity, int wire, EcsComponent component, boolean has) {
+        if (!has) {
+            entity.addComponent(component);
+            return;
+        }
+        if (schema.isShared(wire)) {
+            // 共享组件的值属于原型，值不同时迁移到对应的原型
+            if (!component.equals(entity.getComponent(schema.componentClass(wire)))) {
+                entity.removeComponent(schema.componentClass(wire));
+                entity.addComponent(component);
+            }
+            return;
+        }
+        entity.getArchetype().setComponent(entity.getRow(), schema.componentIndex(wire), component);
+    }
+
+    private void destroyLocal(EcsEntity entity) {
+        if (entity != null && entity.getArchetype() != EntityArchetype.EMPTY_INSTANCE) {
+            ecsWorld.requestDestroyEntity(entity);
+        }
+    }
+}
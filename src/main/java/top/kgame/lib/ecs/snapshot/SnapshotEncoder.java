@@ -0,0 +1,291 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.EntityArchetype;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * 世界快照编码器，每帧输出一个二进制帧：完整帧包含所有实体，增量帧只包含相对已确认基线的变化。
+ * <p>增量帧包含基线之后销毁的实体ID、新建和结构变化的实体，以及写入版本晚于基线的组件数据。
+ * 销毁的实体ID包括基线之后的帧中发送过、当前已不存在的实体，确认尚未到达时接收端可能已经创建了这些实体。
+ * 变化按原型中的变更版本分块判断，更新系统基类遍历后只自动标记ComponentAccess声明写入的组件，其他直接修改组件字段的写入需调用 {@link EcsEntity#markChanged(Class)}。</p>
+ * <p>帧写入可复用的直接内存缓冲区，返回的缓冲区在下一次编码前有效。
+ * 每个接收端使用独立的编码器，接收端确认收到的帧后调用 {@link #acknowledge(int)}，作为后续增量帧的基线。
+ * 只能在World线程调用。</p>
+ * <pre>
+ * 帧头：byte 帧类型, int 结构哈希, int 帧ID, int 基线帧ID(完整帧为0), long 世界时间
+ * 增量帧：int 销毁数量, int[] 销毁的实体ID
+ * int 实体数量，每个实体：int ID, int 实体类型, long[] 组件掩码, long[] 数据掩码, 数据掩码中各组件的数据
+ * int 单例数量，每个单例：int 线上编号, byte 是否存在, 存在且不是标签组件时为组件数据
+ * </pre>
+ * <p>完整帧包含所有同步的World单例，增量帧只包含基线之后设置、移除或标记修改过的单例。</p>
+ */
+public class SnapshotEncoder {
+    static final byte FULL_FRAME = 0;
+    static final byte DELTA_FRAME = 1;
+    private static final int INIT_CAPACITY = 64 * 1024;
+    // 未确认的基线最多保留的数量，超出后丢弃最旧的
+    private static final int MAX_BASELINES = 64;
+
+    private final EcsWorld ecsWorld;
+    private final SnapshotSchema schema;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(INIT_CAPACITY);
+    private final ArrayDeque<Baseline> baselines = new ArrayDeque<>();
+    private int nextFrameId = 1;
+    // 本帧编码时存活的实体ID，升序
+    private int[] aliveIds = new int[64];
+    private int aliveCount = 0;
+    // 本帧需要报告销毁的实体ID
+    private int[] destroyedIds = new int[64];
+    private int destroyedCount = 0;
+    // 当前原型包含的同步组件线上编号
+    private final int[] archetypeWires;
+    private int archetypeWireCount = 0;
+    private final long[] archetypeMask;
+    private final long[] changedMask;
+
+    public SnapshotEncoder(EcsWorld ecsWorld, SnapshotSchema schema) {
+        this.ecsWorld = ecsWorld;
+        this.schema = schema;
+        schema.build();
+        this.archetypeWires = new int[schema.size()];
+        this.archetypeMask = new long[schema.wordCount()];
+        this.changedMask = new long[schema.wordCount()];
+    }
+
+    /**
+     * 编码包含所有实体的完整帧
+     */
+    public ByteBuffer encodeFull() {
+        return encode(null);
+    }
+
+    /**
+     * 编码相对指定基线的增量帧，基线已被丢弃或不存在时编码完整帧
+     * @param baselineFrameId 接收端已确认的帧ID
+     */
+    public ByteBuffer encodeDelta(int baselineFrameId) {
+        for (Baseline baseline : baselines) {
+            if (baseline.frameId == baselineFrameId) {
+                return encode(baseline);
+            }
+        }
+        return encode(null);
+    }
+
+    /**
+     * 接收端确认收到指定帧，早于该帧的基线不再需要
+     */
+    public void acknowledge(int frameId) {
+        while (!baselines.isEmpty() && baselines.peekFirst().frameId < frameId) {
+            baselines.pollFirst();
+        }
+    }
+
+    /**
+     * 最近一次编码的帧ID，尚未编码时为0
+     */
+    public int getLastFrameId() {
+        return nextFrameId - 1;
+    }
+
+    private ByteBuffer encode(Baseline baseline) {
+        int frameId = nextFrameId++;
+        // 推进之后的写入版本都大于 version，下一次增量不会遗漏本帧之后的写入
+        int version = ecsWorld.advanceChangeVersion() - 1;
+        collectAliveIds();
+        while (true) {
+            try {
+                buffer.clear();
+                writeFrame(baseline, frameId);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+            }
+        }
+        buffer.flip();
+        int[] ids = Arrays.copyOf(aliveIds, aliveCount);
+        Baseline previous = baselines.peekLast();
+        baselines.addLast(new Baseline(frameId, version, ids, previous == null ? ids : diff(ids, previous.ids)));
+        if (baselines.size() > MAX_BASELINES) {
+            baselines.pollFirst();
+        }
+        return buffer;
+    }
+
+    private void collectAliveIds() {
+        aliveCount = 0;
+        for (EntityArchetype archetype : ecsWorld.getArchetypes()) {
+            int count = archetype.entityCount();
+            if (aliveCount + count > aliveIds.length) {
+                aliveIds = Arrays.copyOf(aliveIds, Math.max(aliveCount + count, aliveIds.length * 2));
+            }
+            for (int row = 0; row < count; row++) {
+                aliveIds[aliveCount++] = archetype.getEntity(row).getIndex();
+            }
+        }
+        Arrays.sort(aliveIds, 0, aliveCount);
+    }
+
+    private void writeFrame(Baseline baseline, int frameId) {
+        buffer.put(baseline == null ? FULL_FRAME : DELTA_FRAME);
+        buffer.putInt(schema.schemaHash());
+        buffer.putInt(frameId);
+        buffer.putInt(baseline == null ? 0 : baseline.frameId);
+        buffer.putLong(ecsWorld.getCurrentTime());
+        if (baseline != null) {
+            writeDestroyed(baseline);
+        }
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+        for (EntityArchetype archetype : ecsWorld.getArchetypes()) {
+            if (archetype.entityCount() > 0) {
+                count += writeArchetype(archetype, baseline);
+            }
+        }
+        buffer.putInt(countPosition, count);
+        writeSingletons(baseline);
+    }
+
+    private void writeSingletons(Baseline baseline) {
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+        for (int wire = 0; wire < schema.size(); wire++) {
+            int componentIndex = schema.componentIndex(wire);
+            EcsComponent singleton = ecsWorld.getSingleton(componentIndex);
+            if (baseline == null ? singleton == null : ecsWorld.getSingletonChangeVersion(componentIndex) - baseline.version <= 0) {
+                continue;
+            }
+            buffer.putInt(wire);
+            buffer.put(singleton == null ? (byte) 0 : (byte) 1);
+            if (singleton != null && !schema.isTag(wire)) {
+                schema.codec(wire).encode(singleton, buffer);
+            }
+            count++;
+        }
+        buffer.putInt(countPosition, count);
+    }
+
+    /**
+     * 写入基线及之后各帧中发送过、当前已不存在的实体ID
+     */
+    private void writeDestroyed(Baseline baseline) {
+        destroyedCount = 0;
+        collectDestroyed(baseline.ids);
+        boolean after = false;
+        for (Baseline sent : baselines) {
+            if (after) {
+                collectDestroyed(sent.created);
+            }
+            after |= sent == baseline;
+        }
+        Arrays.sort(destroyedIds, 0, destroyedCount);
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+        int count = 0;
+        for (int i = 0; i < destroyedCount; i++) {
+            if (i == 0 || destroyedIds[i] != destroyedIds[i - 1]) {
+                buffer.putInt(destroyedIds[i]);
+                count++;
+            }
+        }
+        buffer.putInt(countPosition, count);
+    }
+
+    private void collectDestroyed(int[] ids) {
+        for (int id : ids) {
+            if (Arrays.binarySearch(aliveIds, 0, aliveCount, id) < 0) {
+                if (destroyedCount == destroyedIds.length) {
+                    destroyedIds = Arrays.copyOf(destroyedIds, destroyedIds.length * 2);
+                }
+                destroyedIds[destroyedCount++] = id;
+            }
+        }
+    }
+
+    /**
+     * @return ids 中不在 previousIds 中的实体ID，两个数组均为升序
+     */
+    private static int[] diff(int[] ids, int[] previousIds) {
+        int[] result = new int[ids.length];
+        int count = 0;
+        int previous = 0;
+        for (int id : ids) {
+            while (previous < previousIds.length && previousIds[previous] < id) {
+                previous++;
+            }
+            if (previous == previousIds.length || previousIds[previous] != id) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int writeArchetype(EntityArchetype archetype, Baseline baseline) {
+        Arrays.fill(archetypeMask, 0L);
+        archetypeWireCount = 0;
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if (archetype.hasComponent(schema.componentIndex(wire))) {
+                archetypeWires[archetypeWireCount++] = wire;
+                archetypeMask[wire >>> 6] |= 1L << wire;
+            }
+        }
+        int written = 0;
+        for (int row = 0; row < archetype.entityCount(); row++) {
+            EcsEntity entity = archetype.getEntity(row);
+            boolean full = baseline == null || Arrays.binarySearch(baseline.ids, entity.getIndex()) < 0;
+            boolean structureChanged = !full && archetype.getRowVersion(row) - baseline.version > 0;
+            Arrays.fill(changedMask, 0L);
+            boolean dataChanged = false;
+            for (int i = 0; i < archetypeWireCount; i++) {
+                int wire = archetypeWires[i];
+                if (schema.isTag(wire)) {
+                    continue;
+                }
+                if (full || archetype.getChangeVersion(schema.componentIndex(wire), row) - baseline.version > 0) {
+                    changedMask[wire >>> 6] |= 1L << wire;
+                    dataChanged = true;
+                }
+            }
+            if (!full && !structureChanged && !dataChanged) {
+                continue;
+            }
+            writeEntity(archetype, row, entity);
+            written++;
+        }
+        return written;
+    }
+
+    private void writeEntity(EntityArchetype archetype, int row, EcsEntity entity) {
+        buffer.putInt(entity.getIndex());
+        buffer.putInt(entity.getType());
+        for (long word : archetypeMask) {
+            buffer.putLong(word);
+        }
+        for (long word : changedMask) {
+            buffer.putLong(word);
+        }
+        for (int i = 0; i < archetypeWireCount; i++) {
+            int wire = archetypeWires[i];
+            if ((changedMask[wire >>> 6] & (1L << wire)) != 0) {
+                EcsComponent component = archetype.getComponent(row, schema.componentIndex(wire));
+                schema.codec(wire).encode(component, buffer);
+            }
+        }
+    }
+
+    /**
+     * @param ids 帧编码时存活的实体ID
+     * @param created 上一帧编码之后新出现的实体ID
+     */
+    private record Baseline(int frameId, int version, int[] ids, int[] created) {
+    }
+}
@@ -0,0 +1,218 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.annotation.SharedComponent;
+import top.kgame.lib.ecs.annotation.TagComponent;
+import top.kgame.lib.ecs.exception.NoDefaultConstructorException;
+import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+import top.kgame.lib.ecs.extensions.component.InitializedComponent;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 快照中同步哪些组件以及如何编码，由 EcsWorld 中注册的组件类型生成。
+ * <p>同步的组件包括：标签组件（只同步有无）、注册了编解码器的组件、所有实例字段都是基本类型且有无参构造函数的组件（自动按字段编码）。
+ * 其他组件以及 DestroyingComponent、InitializedComponent 这类World本地的状态标记不同步。</p>
+ * <p>组件按类名排序得到线上编号，编码端和解码端的同步组件集合必须一致，由结构哈希校验。
+ * 结构哈希包含按字段自动编码的组件的字段名和类型，以及注册的编解码器的版本，字段布局或编码格式变化后旧数据会被拒绝。
+ * 自定义编解码器和排除项需在第一次编码或解码之前设置。</p>
+ */
+public class SnapshotSchema {
+    private final EcsWorld ecsWorld;
+    private final Map<Class<? extends EcsComponent>, ComponentCodec<?>> codecs = new HashMap<>();
+    private final Set<Class<? extends EcsComponent>> excluded = new HashSet<>();
+    private boolean built = false;
+    // 线上编号 -> 组件信息
+    private int[] componentIndexes;
+    // 组件索引 -> 线上编号，不同步的组件为-1
+    private int[] wires;
+    private Class<? extends EcsComponent>[] componentClasses;
+    private ComponentCodec<?>[] wireCodecs;
+    // 线上编号 -> 标签组件实例，第一次解码时创建
+    private EcsComponent[] tagInstances;
+    private boolean[] tags;
+    private boolean[] shared;
+    private int schemaHash;
+
+    private SnapshotSchema(EcsWorld ecsWorld, boolean replication) {
+        this.ecsWorld = ecsWorld;
+        if (replication) {
+            excluded.add(DestroyingComponent.class);
+            excluded.add(InitializedComponent.class);
+        }
+    }
+
+    public static SnapshotSchema of(EcsWorld ecsWorld) {
+        return new SnapshotSchema(ecsWorld, true);
+    }
+
+    /**
+     * 存档使用的结构，保留 InitializedComponent 这类World本地的状态标记，恢复后实体不会被重复初始化
+     * @see WorldCheckpoint
+     */
+    public static SnapshotSchema forCheckpoint(EcsWorld ecsWorld) {
+        return new SnapshotSchema(ecsWorld, false);
+    }
+
+    /**
+     * 为组件类型指定编解码器，覆盖按字段自动编码
+     */
+    public <T extends EcsComponent> SnapshotSchema register(Class<T> componentClass, ComponentCodec<T> codec) {
+        checkNotBuilt();
+        codecs.put(componentClass, codec);
+        return this;
+    }
+
+    /**
+     * 不同步指定的组件类型
+     */
+    public SnapshotSchema exclude(Class<? extends EcsComponent> componentClass) {
+        checkNotBuilt();
+        excluded.add(componentClass);
+        return this;
+    }
+
+    public boolean isReplicated(Class<? extends EcsComponent> componentClass) {
+        build();
+        for (Class<? extends EcsComponent> replicated : componentClasses) {
+            if (replicated == componentClass) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkNotBuilt() {
+        if (built) {
+            throw new IllegalStateException("SnapshotSchema can't be modified after use");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void build() {
+        if (built) {
+            return;
+        }
+        List<Class<? extends EcsComponent>> replicated = new ArrayList<>();
+        Map<Class<? extends EcsComponent>, ComponentCodec<?>> resolved = new HashMap<>();
+        for (int index = 0; index < ecsWorld.getComponentCount(); index++) {
+            Class<? extends EcsComponent> componentClass = ecsWorld.getComponentClass(index);
+            if (componentClass == null || excluded.contains(componentClass)) {
+                continue;
+            }
+            if (componentClass.isAnnotationPresent(TagComponent.class)) {
+                replicated.add(componentClass);
+                continue;
+            }
+            ComponentCodec<?> codec = codecs.get(componentClass);
+            if (codec == null) {
+                codec = FieldComponentCodec.of(componentClass);
+            }
+            if (codec != null) {
+                replicated.add(componentClass);
+                resolved.put(componentClass, codec);
+            }
+        }
+        replicated.sort(Comparator.comparing(Class::getName));
+        int size = replicated.size();
+        componentIndexes = new int[size];
+        componentClasses = (Class<? extends EcsComponent>[]) new Class<?>[size];
+        wireCodecs = new ComponentCodec<?>[size];
+        tags = new boolean[size];
+        tagInstances = new EcsComponent[size];
+        shared = new boolean[size];
+        wires = new int[ecsWorld.getComponentCount()];
+        Arrays.fill(wires, -1);
+        int hash = 1;
+        for (int wire = 0; wire < size; wire++) {
+            Class<? extends EcsComponent> componentClass = replicated.get(wire);
+            componentIndexes[wire] = ecsWorld.getComponentIndex(componentClass);
+            wires[componentIndexes[wire]] = wire;
+            componentClasses[wire] = componentClass;
+            wireCodecs[wire] = resolved.get(componentClass);
+            tags[wire] = componentClass.isAnnotationPresent(TagComponent.class);
+            shared[wire] = componentClass.isAnnotationPresent(SharedComponent.class);
+            hash = 31 * hash + componentClass.getName().hashCode();
+            if (wireCodecs[wire] instanceof FieldComponentCodec<?> fieldCodec) {
+                hash = 31 * hash + fieldCodec.layoutHash();
+            } else if (wireCodecs[wire] != null) {
+                hash = 31 * (31 * hash + 1) + wireCodecs[wire].version();
+            }
+        }
+        schemaHash = hash;
+        built = true;
+    }
+
+    int size() {
+        return componentIndexes.length;
+    }
+
+    /**
+     * 组件位掩码占用的long数量
+     */
+    int wordCount() {
+        return (componentIndexes.length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    int componentIndex(int wire) {
+        return componentIndexes[wire];
+    }
+
+    /**
+     * @return 组件不同步时返回-1
+     */
+    int wireOf(int componentIndex) {
+        return componentIndex < wires.length ? wires[componentIndex] : -1;
+    }
+
+    Class<? extends EcsComponent> componentClass(int wire) {
+        return componentClasses[wire];
+    }
+
+    @SuppressWarnings("unchecked")
+    ComponentCodec<EcsComponent> codec(int wire) {
+        return (ComponentCodec<EcsComponent>) wireCodecs[wire];
+    }
+
+    /**
+     * 标签组件不编码数据，解码时创建实例并复用，构造函数可以是私有的（如 InitializedComponent）
+     */
+    EcsComponent createTag(int wire) {
+        EcsComponent tag = tagInstances[wire];
+        if (tag != null) {
+            return tag;
+        }
+        Class<? extends EcsComponent> componentClass = componentClasses[wire];
+        try {
+            Constructor<? extends EcsComponent> constructor = componentClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            tag = constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            throw new NoDefaultConstructorException(componentClass);
+        }
+        tagInstances[wire] = tag;
+        return tag;
+    }
+
+    boolean isTag(int wire) {
+        return tags[wire];
+    }
+
+    boolean isShared(int wire) {
+        return shared[wire];
+    }
+
+    int schemaHash() {
+        return schemaHash;
+    }
+}
@@ -0,0 +1,388 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.EcsEntityManager;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecs.exception.SnapshotFormatException;
+import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 世界存档，以二进制格式保存和恢复所有实体（ID、实体类型、组件）和单例组件。
+ * <p>按原型逐个写入 FileChannel，组件数据按列连续编码。读取时将文件映射到内存，
+ * 每个原型只查找或创建一次，实体按原型整批放入，不经过实体工厂，也不逐个迁移原型。
+ * 恢复后实体ID、空闲槽位的复用顺序与存档时一致。</p>
+ * <p>存档包含的组件由 {@link SnapshotSchema#forCheckpoint(top.kgame.lib.ecs.EcsWorld)} 决定，
+ * 实体上有不在结构中的组件时存档失败。请求销毁但尚未移除的实体不写入，恢复后视为已销毁。
+ * World时间和System状态不在存档中。只能在World线程调用。</p>
+ * <p>读取失败时已恢复的实体、单例组件和槽位状态被撤销，World回到读取前的状态，可以继续使用或重新读取。</p>
+ * <pre>
+ * 文件头：int 魔数, int 版本, int 结构哈希
+ * 实体槽位：int 槽位数量, int[] 各槽位代数, int 空闲槽位数量, int[] 空闲槽位
+ * 单例组件：int 数量，每个：int 线上编号, 组件数据(标签组件无数据)
+ * int 原型数量，每个原型：long[] 组件掩码, 共享组件数据, int 实体数量, int[] 实体ID, int[] 实体类型, 各数据组件的列
+ * </pre>
+ */
+public class WorldCheckpoint {
+    static final int MAGIC = 0x4B454353;
+    static final int VERSION = 1;
+    private static final int BUFFER_CAPACITY = 1024 * 1024;
+
+    private final EcsEntityManager entityManager;
+    private final SnapshotSchema schema;
+    private final int destroyingIndex;
+    // 读取时设置的单例组件索引和被替换的原值，读取失败时撤销
+    private final List<Integer> restoredSingletons = new ArrayList<>();
+    private final List<EcsComponent> previousSingletons = new ArrayList<>();
+
+    private WorldCheckpoint(EcsEntityManager entityManager, SnapshotSchema schema) {
+        this.entityManager = entityManager;
+        this.schema = schema;
+        this.destroyingIndex = entityManager.getComponentIndex(DestroyingComponent.class);
+        schema.build();
+    }
+
+    /**
+     * 将World写入文件，已存在的文件被覆盖
+     * @throws SnapshotFormatException 实体或单例上有不在结构中的组件
+     */
+    public static void save(EcsEntityManager entityManager, SnapshotSchema schema, Path path) throws IOException {
+        WorldCheckpoint checkpoint = new WorldCheckpoint(entityManager, schema);
+        List<EntityArchetype> archetypes = checkpoint.collectArchetypes();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(channel);
+            checkpoint.write(output, archetypes);
+            output.flush();
+        }
+    }
+
+    /**
+     * 从文件恢复到没有实体的World
+     * @return 恢复的实体数量
+     * @throws IllegalStateException World中已经存在实体
+     * @throws SnapshotFormatException 文件格式错误、数据被截断或结构与存档时不一致，World保持读取前的状态
+     */
+    public static int load(EcsEntityManager entityManager, SnapshotSchema schema, Path path) throws IOException {
+        if (!entityManager.getAllEntity().isEmpty()) {
+            throw new IllegalStateException("checkpoint can only be loaded into a world without entities");
+        }
+        WorldCheckpoint checkpoint = new WorldCheckpoint(entityManager, schema);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new SnapshotFormatException("checkpoint file too large: " + size);
+            }
+            MappedByteBuffer input = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return checkpoint.readOrDiscard(input);
+        }
+    }
+
+    private List<EntityArchetype> collectArchetypes() {
+        List<EntityArchetype> result = new ArrayList<>();
+        for (EntityArchetype archetype : entityManager.getArchetypes()) {
+            if (archetype.entityCount() == 0 || (destroyingIndex >= 0 && archetype.hasComponent(destroyingIndex))) {
+                continue;
+            }
+            for (int componentIndex = 0; componentIndex < entityManager.getComponentCount(); componentIndex++) {
+                if (archetype.hasComponent(componentIndex) && schema.wireOf(componentIndex) < 0) {
+                    throw new SnapshotFormatException("component not in checkpoint schema: "
+                            + entityManager.getComponentClass(componentIndex).getName());
+                }
+            }
+            result.add(archetype);
+        }
+        return result;
+    }
+
+    private void write(Output output, List<EntityArchetype> archetypes) throws IOException {
+        output.putInt(MAGIC);
+        output.putInt(VERSION);
+        output.putInt(schema.schemaHash());
+        int slotCount = entityManager.getEntitySlotCount();
+        output.putInt(slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            output.putInt(entityManager.getEntityGeneration(slot));
+        }
+        int[] freeSlots = entityManager.getFreeEntitySlots();
+        output.putInt(freeSlots.length);
+        for (int slot : freeSlots) {
+            output.putInt(slot);
+        }
+        writeSingletons(output);
+        output.putInt(archetypes.size());
+        long[] mask = new long[schema.wordCount()];
+        for (EntityArchetype archetype : archetypes) {
+            writeArchetype(output, archetype, mask);
+        }
+    }
+
+    private void writeSingletons(Output output) throws IOException {
+        List<EcsComponent> singletons = new ArrayList<>();
+        for (int componentIndex = 0; componentIndex < entityManager.getComponentCount(); componentIndex++) {
+            EcsComponent singleton = entityManager.getSingleton(componentIndex);
+            if (singleton == null) {
+                continue;
+            }
+            if (schema.wireOf(componentIndex) < 0) {
+                throw new SnapshotFormatException("singleton not in checkpoint schema: " + singleton.getClass().getName());
+            }
+            singletons.add(singleton);
+        }
+        output.putInt(singletons.size());
+        for (EcsComponent singleton : singletons) {
+            int wire = schema.wireOf(entityManager.getComponentIndex(singleton.getClass()));
+            output.putInt(wire);
+            if (!schema.isTag(wire)) {
+                output.encode(schema.codec(wire), singleton);
+            }
+        }
+    }
+
+    private void writeArchetype(Output output, EntityArchetype archetype, long[] mask) throws IOException {
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = 0L;
+        }
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if (archetype.hasComponent(schema.componentIndex(wire))) {
+                mask[wire >>> 6] |= 1L << wire;
+            }
+        }
+        for (long word : mask) {
+            output.putLong(word);
+        }
+        int count = archetype.entityCount();
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if (schema.isShared(wire) && archetype.hasComponent(schema.componentIndex(wire))) {
+                output.encode(schema.codec(wire), archetype.getComponent(0, schema.componentIndex(wire)));
+            }
+        }
+        output.putInt(count);
+        for (int row = 0; row < count; row++) {
+            output.putInt(archetype.getEntity(row).getIndex());
+        }
+        for (int row = 0; row < count; row++) {
+            output.putInt(archetype.getEntity(row).getType());
+        }
+        for (int wire = 0; wire < schema.size(); wire++) {
+            int componentIndex = schema.componentIndex(wire);
+            if (!isDataColumn(wire) || !archetype.hasComponent(componentIndex)) {
+                continue;
+            }
+            ComponentCodec<EcsComponent> codec = schema.codec(wire);
+            EcsComponent[] column = archetype.getComponentColumn(componentIndex);
+            for (int row = 0; row < count; row++) {
+                output.encode(codec, column != null ? column[row] : archetype.getComponent(row, componentIndex));
+            }
+        }
+    }
+
+    /**
+     * 读取失败时撤销已恢复的内容，数据越界、数量非法等错误转换为 {@link SnapshotFormatException}
+     */
+    private int readOrDiscard(ByteBuffer input) {
+        int slotCount = entityManager.getEntitySlotCount();
+        int[] generations = new int[slotCount];
+        entityManager.copyEntityGenerations(0, generations, slotCount);
+        int[] freeSlots = entityManager.getFreeEntitySlots();
+        try {
+            return read(input);
+        } catch (RuntimeException e) {
+            discard(slotCount, generations, freeSlots);
+            if (e instanceof BufferUnderflowException || e instanceof IndexOutOfBoundsException
+                    || e instanceof IllegalArgumentException || e instanceof NegativeArraySizeException) {
+                throw new SnapshotFormatException("corrupted checkpoint: " + e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    private void discard(int slotCount, int[] generations, int[] freeSlots) {
+        EcsEntity[] restored = entityManager.getAllEntity().toArray(new EcsEntity[0]);
+        entityManager.destroyEntities(restored, restored.length);
+        for (int i = restoredSingletons.size() - 1; i >= 0; i--) {
+            EcsComponent previous = previousSingletons.get(i);
+            if (previous == null) {
+                entityManager.removeSingleton(restoredSingletons.get(i));
+            } else {
+                entityManager.setSingleton(previous);
+            }
+        }
+        entityManager.restoreEntitySlots(slotCount, generations, freeSlots);
+        entityManager.finishRestoreEntities();
+    }
+
+    private int read(ByteBuffer input) {
+        if (input.getInt() != MAGIC) {
+            throw new SnapshotFormatException("not a world checkpoint");
+        }
+        int version = input.getInt();
+        if (version != VERSION) {
+            throw new SnapshotFormatException("unsupported checkpoint version " + version);
+        }
+        int schemaHash = input.getInt();
+        if (schemaHash != schema.schemaHash()) {
+            throw new SnapshotFormatException("checkpoint schema mismatch, file " + schemaHash + " local " + schema.schemaHash());
+        }
+        int slotCount = readCount(input, Integer.BYTES, "slot");
+        if (slotCount > EcsEntityManager.MAX_ENTITY_SLOT_COUNT) {
+            throw new SnapshotFormatException("slot count " + slotCount + " exceeds limit " + EcsEntityManager.MAX_ENTITY_SLOT_COUNT);
+        }
+        int[] generations = readInts(input, slotCount);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (generations[slot] < 0 || generations[slot] > EcsEntityManager.MAX_ENTITY_GENERATION) {
+                throw new SnapshotFormatException("invalid generation " + generations[slot] + " of slot " + slot);
+            }
+        }
+        int[] freeSlots = readInts(input, readCount(input, Integer.BYTES, "free slot"));
+        entityManager.restoreEntitySlots(slotCount, generations, freeSlots);
+        int singletonCount = readCount(input, Integer.BYTES, "singleton");
+        for (int i = 0; i < singletonCount; i++) {
+            int wire = input.getInt();
+            if (wire < 0 || wire >= schema.size()) {
+                throw new SnapshotFormatException("invalid singleton wire " + wire);
+            }
+            EcsComponent singleton = schema.isTag(wire) ? schema.createTag(wire) : schema.codec(wire).decode(input);
+            restoredSingletons.add(schema.componentIndex(wire));
+            previousSingletons.add(entityManager.setSingleton(singleton));
+        }
+        // 每个原型至少包含组件掩码和实体数量
+        int archetypeCount = readCount(input, schema.wordCount() * Long.BYTES + Integer.BYTES, "archetype");
+        int entityCount = 0;
+        long[] mask = new long[schema.wordCount()];
+        for (int i = 0; i < archetypeCount; i++) {
+            entityCount += readArchetype(input, mask);
+        }
+        entityManager.finishRestoreEntities();
+        return entityCount;
+    }
+
+    private int readArchetype(ByteBuffer input, long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = input.getLong();
+        }
+        List<Class<? extends EcsComponent>> componentTypes = new ArrayList<>();
+        List<EcsComponent> archetypeComponents = new ArrayList<>();
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if ((mask[wire >>> 6] & (1L << wire)) == 0) {
+                continue;
+            }
+            componentTypes.add(schema.componentClass(wire));
+            if (schema.isShared(wire)) {
+                archetypeComponents.add(schema.codec(wire).decode(input));
+            } else if (schema.isTag(wire)) {
+                archetypeComponents.add(schema.createTag(wire));
+            }
+        }
+        EntityArchetype archetype = entityManager.getOrCreateArchetype(componentTypes, archetypeComponents);
+        // 每个实体至少包含ID和实体类型
+        int count = readCount(input, Integer.BYTES * 2, "entity");
+        int[] ids = readInts(input, count);
+        int[] types = readInts(input, count);
+        EcsEntity[] entities = entityManager.restoreEntities(archetype, ids, types, count);
+        if (count == 0) {
+            return 0;
+        }
+        int baseRow = entities[0].getRow();
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if ((mask[wire >>> 6] & (1L << wire)) == 0 || !isDataColumn(wire)) {
+                continue;
+            }
+            ComponentCodec<EcsComponent> codec = schema.codec(wire);
+            int componentIndex = schema.componentIndex(wire);
+            for (int row = baseRow; row < baseRow + count; row++) {
+                archetype.setComponent(row, componentIndex, codec.decode(input));
+            }
+        }
+        return count;
+    }
+
+    private boolean isDataColumn(int wire) {
+        return !schema.isTag(wire) && !schema.isShared(wire);
+    }
+
+    /**
+     * 读取数量并按每个元素的最小字节数校验剩余长度，避免按损坏的数量分配内存
+     */
+    private static int readCount(ByteBuffer input, int minBytes, String name) {
+        int count = input.getInt();
+        if (count < 0 || (long) count * minBytes > input.remaining()) {
+            throw new SnapshotFormatException("invalid " + name + " count " + count + ", remaining " + input.remaining());
+        }
+        return count;
+    }
+
+    private static int[] readInts(ByteBuffer input, int count) {
+        int[] result = new int[count];
+        input.asIntBuffer().get(result);
+        input.position(input.position() + count * Integer.BYTES);
+        return result;
+    }
+
+    /**
+     * 写入缓冲区，剩余空间不足时写入文件
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_CAPACITY);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        /**
+         * 组件编码长度未知，缓冲区不足时写入文件后重新编码，单个组件超过缓冲区容量时扩容
+         */
+        void encode(ComponentCodec<EcsComponent> codec, EcsComponent component) throws IOException {
+            while (true) {
+                int position = buffer.position();
+                try {
+                    codec.encode(component, buffer);
+                    return;
+                } catch (BufferOverflowException e) {
+                    buffer.position(position);
+                    if (position == 0) {
+                        buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                    } else {
+                        flush();
+                    }
+                }
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
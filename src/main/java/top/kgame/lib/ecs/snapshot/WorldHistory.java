@@ -0,0 +1,369 @@
+package top.kgame.lib.ecs.snapshot;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsSystem;
+import top.kgame.lib.ecs.core.EcsEntityManager;
+import top.kgame.lib.ecs.core.EcsSystemManager;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecs.core.QueryJournal;
+import top.kgame.lib.ecs.exception.SnapshotFormatException;
+import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * World状态的历史记录，用于回滚到之前的某一帧后重新模拟，最多保留指定数量的帧。
+ * <p>原型按 {@link EntityArchetype#CHANGE_BLOCK_SHIFT} 划分的块保存实体ID、类型和组件数据，
+ * 块中没有实体进出、组件也没有被写入时直接引用上一帧的块，记录一帧的开销与变化的块数成正比。
+ * 实体槽位代数同样按块比较，未变化的块在帧之间共享。
+ * 更新系统基类遍历后只自动标记ComponentAccess声明写入的组件，其他直接修改组件字段的写入需调用 {@link EcsEntity#markChanged(Class)}，否则该修改不会被记录。</p>
+ * <p>回滚时移除所有实体，按记录的槽位状态和块整批恢复，实体ID以及之后分配的实体ID与记录时一致。
+ * 原有的 EcsEntity 对象失效，需按实体ID重新获取。标签组件和共享组件属于原型，不单独保存。只能在World线程调用。</p>
+ * <p>每帧同时保存各System的下次更新时间和上次运行版本、块中各组件的写入版本，以及查询日志中尚未取出的记录。
+ * 回滚时恢复这些状态，恢复过程本身不产生日志记录，重新模拟时 {@link top.kgame.lib.ecs.annotation.TickRate}、
+ * 变更过滤和响应式System的结果与第一次模拟一致。块的结构版本为回滚时的版本，快照编码器在回滚后应重新发送完整帧。</p>
+ * @see SnapshotSchema#forCheckpoint(top.kgame.lib.ecs.EcsWorld)
+ */
+public class WorldHistory {
+    private static final int GENERATION_BLOCK_SIZE = 1024;
+    private static final int INIT_BUFFER_CAPACITY = 64 * 1024;
+
+    private final EcsEntityManager entityManager;
+    private final EcsSystemManager systemManager;
+    private final SnapshotSchema schema;
+    private final int capacity;
+    private final int destroyingIndex;
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    // 最近一次记录或回滚的帧中各原型的块，之后未变化的块直接复用
+    private Map<EntityArchetype, Block[]> lastBlocks = new IdentityHashMap<>();
+    private int lastVersion = 0;
+    private ByteBuffer buffer = ByteBuffer.allocate(INIT_BUFFER_CAPACITY);
+    private final int[] generationScratch = new int[GENERATION_BLOCK_SIZE];
+    private final int[] dataWires;
+
+    public WorldHistory(EcsEntityManager entityManager, EcsSystemManager systemManager, SnapshotSchema schema, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("WorldHistory capacity must be positive: " + capacity);
+        }
+        this.entityManager = entityManager;
+        this.systemManager = systemManager;
+        this.schema = schema;
+        this.capacity = capacity;
+        this.destroyingIndex = entityManager.getComponentIndex(DestroyingComponent.class);
+        schema.build();
+        this.dataWires = new int[schema.size()];
+    }
+
+    /**
+     * 记录当前状态，不晚于该时间的已有记录被替换
+     * @throws SnapshotFormatException 实体或单例上有不在结构中的组件
+     */
+    public void capture(long time) {
+        Frame previous = frames.peekLast();
+        int sinceVersion = lastVersion;
+        // 推进之后的写入版本都大于 version，下一帧不会遗漏本帧之后的写入
+        int version = entityManager.advanceChangeVersion() - 1;
+        List<EntityArchetype> archetypes = new ArrayList<>();
+        List<Block[]> archetypeBlocks = new ArrayList<>();
+        Map<EntityArchetype, Block[]> currentBlocks = new IdentityHashMap<>();
+        for (EntityArchetype archetype : entityManager.getArchetypes()) {
+            if (archetype.entityCount() == 0 || (destroyingIndex >= 0 && archetype.hasComponent(destroyingIndex))) {
+                continue;
+            }
+            Block[] blocks = captureArchetype(archetype, lastBlocks.get(archetype), sinceVersion);
+            archetypes.add(archetype);
+            archetypeBlocks.add(blocks);
+            currentBlocks.put(archetype, blocks);
+        }
+        int slotCount = entityManager.getEntitySlotCount();
+        Frame frame = new Frame(time, slotCount,
+                captureGenerations(slotCount, previous == null ? null : previous.generations),
+                entityManager.getFreeEntitySlots(),
+                encode(this::writeSingletons), entityManager.getSingletonChangeVersions(),
+                archetypes.toArray(new EntityArchetype[0]), archetypeBlocks.toArray(new Block[0][]),
+                captureSystems(), captureJournals());
+        while (!frames.isEmpty() && frames.peekLast().time >= time) {
+            frames.pollLast();
+        }
+        frames.addLast(frame);
+        if (frames.size() > capacity) {
+            frames.pollFirst();
+        }
+        lastBlocks = currentBlocks;
+        lastVersion = version;
+    }
+
+    /**
+     * 恢复到指定时间记录的状态，之后的记录被丢弃
+     * @return 没有该时间的记录时返回false
+     */
+    public boolean restore(long time) {
+        Frame frame = null;
+        Iterator<Frame> iterator = frames.descendingIterator();
+        while (iterator.hasNext()) {
+            Frame candidate = iterator.next();
+            if (candidate.time == time) {
+                frame = candidate;
+                break;
+            }
+        }
+        if (frame == null) {
+            return false;
+        }
+        while (frames.peekLast() != frame) {
+            frames.pollLast();
+        }
+        EcsEntity[] alive = entityManager.getAllEntity().toArray(new EcsEntity[0]);
+        entityManager.destroyEntities(alive, alive.length);
+        int[] generations = new int[frame.slotCount];
+        for (int block = 0; block < frame.generations.length; block++) {
+            int[] values = frame.generations[block];
+            System.arraycopy(values, 0, generations, block * GENERATION_BLOCK_SIZE, values.length);
+        }
+        entityManager.restoreEntitySlots(frame.slotCount, generations, frame.freeSlots);
+        restoreSingletons(ByteBuffer.wrap(frame.singletons));
+        entityManager.restoreSingletonChangeVersions(frame.singletonVersions);
+        Map<EntityArchetype, Block[]> restoredBlocks = new IdentityHashMap<>();
+        for (int i = 0; i < frame.archetypes.length; i++) {
+            restoreArchetype(frame.archetypes[i], frame.blocks[i]);
+            restoredBlocks.put(frame.archetypes[i], frame.blocks[i]);
+        }
+        entityManager.finishRestoreEntities();
+        for (QueryJournal journal : entityManager.getQueryJournals()) {
+            journal.restorePending(frame.journals.get(journal), entityManager);
+        }
+        restoreSystems(frame.systems, time);
+        // 恢复时写入的版本不晚于 lastVersion，恢复出的块与记录一致，下一帧可以继续复用
+        lastVersion = entityManager.advanceChangeVersion() - 1;
+        lastBlocks = restoredBlocks;
+        return true;
+    }
+
+    /**
+     * 已记录的帧数
+     */
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * 最早一帧的时间，没有记录时返回 {@link Long#MIN_VALUE}
+     */
+    public long getOldestTime() {
+        return frames.isEmpty() ? Long.MIN_VALUE : frames.peekFirst().time;
+    }
+
+    public void clear() {
+        frames.clear();
+        lastBlocks = new IdentityHashMap<>();
+    }
+
+    private Block[] captureArchetype(EntityArchetype archetype, Block[] previous, int sinceVersion) {
+        if (previous == null) {
+            checkSchema(archetype);
+        }
+        int dataWireCount = collectDataWires(archetype);
+        int count = archetype.entityCount();
+        int blockSize = 1 << EntityArchetype.CHANGE_BLOCK_SHIFT;
+        Block[] blocks = new Block[(count + blockSize - 1) >> EntityArchetype.CHANGE_BLOCK_SHIFT];
+        for (int block = 0; block < blocks.length; block++) {
+            int from = block << EntityArchetype.CHANGE_BLOCK_SHIFT;
+            int rows = Math.min(blockSize, count - from);
+            if (previous != null && block < previous.length && previous[block].rows == rows
+                    && !archetype.isChangedSince(block, sinceVersion)) {
+                blocks[block] = previous[block];
+            } else {
+                blocks[block] = captureBlock(archetype, dataWireCount, from, rows);
+            }
+        }
+        return blocks;
+    }
+
+    private void checkSchema(EntityArchetype archetype) {
+        for (int componentIndex = 0; componentIndex < entityManager.getComponentCount(); componentIndex++) {
+            if (archetype.hasComponent(componentIndex) && schema.wireOf(componentIndex) < 0) {
+                throw new SnapshotFormatException("component not in history schema: "
+                        + entityManager.getComponentClass(componentIndex).getName());
+            }
+        }
+    }
+
+    private int collectDataWires(EntityArchetype archetype) {
+        int count = 0;
+        for (int wire = 0; wire < schema.size(); wire++) {
+            if (!schema.isTag(wire) && !schema.isShared(wire) && archetype.hasComponent(schema.componentIndex(wire))) {
+                dataWires[count++] = wire;
+            }
+        }
+        return count;
+    }
+
+    private SystemState[] captureSystems() {
+        List<SystemState> states = new ArrayList<>();
+        systemManager.forEachSystem(system ->
+                states.add(new SystemState(system, system.getNextUpdateTime(), system.getLastRunVersion())));
+        return states.toArray(new SystemState[0]);
+    }
+
+    private Map<QueryJournal, QueryJournal.Pending> captureJournals() {
+        Map<QueryJournal, QueryJournal.Pending> result = new IdentityHashMap<>();
+        for (QueryJournal journal : entityManager.getQueryJournals()) {
+            QueryJournal.Pending pending = journal.capturePending();
+            if (pending != null) {
+                result.put(journal, pending);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录该帧之后才加入的System恢复为未运行过的状态
+     */
+    private void restoreSystems(SystemState[] states, long time) {
+        Map<EcsSystem, SystemState> recorded = new IdentityHashMap<>();
+        for (SystemState state : states) {
+            recorded.put(state.system, state);
+        }
+        systemManager.forEachSystem(system -> {
+            SystemState state = recorded.get(system);
+            if (state == null) {
+                system.restoreRollbackState(Long.MIN_VALUE, 0, time);
+            } else {
+                system.restoreRollbackState(state.nextUpdateTime, state.lastRunVersion, time);
+            }
+        });
+    }
+
+    private Block captureBlock(EntityArchetype archetype, int dataWireCount, int from, int rows) {
+        int[] ids = new int[rows];
+        int[] types = new int[rows];
+        int[] changeVersions = new int[dataWireCount];
+        for (int i = 0; i < dataWireCount; i++) {
+            changeVersions[i] = archetype.getChangeVersion(schema.componentIndex(dataWires[i]), from);
+        }
+        for (int i = 0; i < rows; i++) {
+            EcsEntity entity = archetype.getEntity(from + i);
+            ids[i] = entity.getIndex();
+            types[i] = entity.getType();
+        }
+        byte[] data = encode(output -> {
+            for (int i = 0; i < dataWireCount; i++) {
+                int wire = dataWires[i];
+                int componentIndex = schema.componentIndex(wire);
+                ComponentCodec<EcsComponent> codec = schema.codec(wire);
+                EcsComponent[] column = archetype.getComponentColumn(componentIndex);
+                for (int row = from; row < from + rows; row++) {
+                    codec.encode(column != null ? column[row] : archetype.getComponent(row, componentIndex), output);
+                }
+            }
+        });
+        return new Block(rows, ids, types, data, changeVersions);
+    }
+
+    private void restoreArchetype(EntityArchetype archetype, Block[] blocks) {
+        int dataWireCount = collectDataWires(archetype);
+        for (Block block : blocks) {
+            EcsEntity[] entities = entityManager.restoreEntities(archetype, block.ids, block.types, block.rows);
+            int baseRow = entities[0].getRow();
+            ByteBuffer input = ByteBuffer.wrap(block.data);
+            for (int i = 0; i < dataWireCount; i++) {
+                int wire = dataWires[i];
+                int componentIndex = schema.componentIndex(wire);
+                ComponentCodec<EcsComponent> codec = schema.codec(wire);
+                for (int row = baseRow; row < baseRow + block.rows; row++) {
+                    archetype.setComponent(row, componentIndex, codec.decode(input));
+                }
+                archetype.restoreChangeVersion(componentIndex, baseRow, block.changeVersions[i]);
+            }
+        }
+    }
+
+    private int[][] captureGenerations(int slotCount, int[][] previous) {
+        int[][] result = new int[(slotCount + GENERATION_BLOCK_SIZE - 1) / GENERATION_BLOCK_SIZE][];
+        for (int block = 0; block < result.length; block++) {
+            int from = block * GENERATION_BLOCK_SIZE;
+            int length = Math.min(GENERATION_BLOCK_SIZE, slotCount - from);
+            entityManager.copyEntityGenerations(from, generationScratch, length);
+            int[] last = previous != null && block < previous.length ? previous[block] : null;
+            if (last != null && Arrays.equals(last, 0, last.length, generationScratch, 0, length)) {
+                result[block] = last;
+            } else {
+                result[block] = Arrays.copyOf(generationScratch, length);
+            }
+        }
+        return result;
+    }
+
+    private void writeSingletons(ByteBuffer output) {
+        int countPosition = output.position();
+        output.putInt(0);
+        int count = 0;
+        for (int componentIndex = 0; componentIndex < entityManager.getComponentCount(); componentIndex++) {
+            EcsComponent singleton = entityManager.getSingleton(componentIndex);
+            if (singleton == null) {
+                continue;
+            }
+            int wire = schema.wireOf(componentIndex);
+            if (wire < 0) {
+                throw new SnapshotFormatException("singleton not in history schema: " + singleton.getClass().getName());
+            }
+            output.putInt(wire);
+            if (!schema.isTag(wire)) {
+                schema.codec(wire).encode(singleton, output);
+            }
+            count++;
+        }
+        output.putInt(countPosition, count);
+    }
+
+    private void restoreSingletons(ByteBuffer input) {
+        for (int componentIndex = 0; componentIndex < entityManager.getComponentCount(); componentIndex++) {
+            entityManager.removeSingleton(componentIndex);
+        }
+        int count = input.getInt();
+        for (int i = 0; i < count; i++) {
+            int wire = input.getInt();
+            entityManager.setSingleton(schema.isTag(wire) ? schema.createTag(wire) : schema.codec(wire).decode(input));
+        }
+    }
+
+    /**
+     * 写入可复用的缓冲区后拷贝出来，缓冲区不足时扩容重写
+     */
+    private byte[] encode(Consumer<ByteBuffer> writer) {
+        while (true) {
+            try {
+                buffer.clear();
+                writer.accept(buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * 原型中连续 rows 行的实体和组件数据，创建后不再修改，可在多帧之间共享
+     * @param changeVersions 各数据组件在该块的写入版本，与 dataWires 顺序一致
+     */
+    private record Block(int rows, int[] ids, int[] types, byte[] data, int[] changeVersions) {
+    }
+
+    private record SystemState(EcsSystem system, long nextUpdateTime, int lastRunVersion) {
+    }
+
+    private record Frame(long time, int slotCount, int[][] generations, int[] freeSlots,
+                         byte[] singletons, int[] singletonVersions, EntityArchetype[] archetypes, Block[][] blocks,
+                         SystemState[] systems, Map<QueryJournal, QueryJournal.Pending> journals) {
+    }
+}
@@ -18,14 +18,22 @@ public class EcsClassScanner {
     private Set<Class<? extends EntityFactory>> entityFactoryClass;
     private final Set<Class<? extends EcsComponent>> componentClasses = new HashSet<>();
 
+    private ClassLoader classLoader;
+
     private static final Map<String, EcsClassScanner> SCANNERS = new ConcurrentHashMap<>();
     public static EcsClassScanner getInstance(String packageName) {
-        return SCANNERS.computeIfAbsent(packageName, name -> {
-            EcsClassScanner newInstance = new EcsClassScanner();
-            newInstance.loadPackage(packageName);
-            newInstance.loadComponent(packageName);
-            return newInstance;
-        });
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        EcsClassScanner scanner = SCANNERS.computeIfAbsent(packageName, name -> create(name, classLoader));
+        // 缓存的结果由其他类加载器扫描得到时（如加载了另一个构建的类）重新扫描，不使用缓存
+        return scanner.classLoader == classLoader ? scanner : create(packageName, classLoader);
+    }
+
+    private static EcsClassScanner create(String packageName, ClassLoader classLoader) {
+        EcsClassScanner newInstance = new EcsClassScanner();
+        newInstance.classLoader = classLoader;
+        newInstance.loadPackage(packageName);
+        newInstance.loadComponent(packageName);
+        return newInstance;
     }
 
     public Set<Class<? extends EntityFactory>> getEntityFactoryClass() {
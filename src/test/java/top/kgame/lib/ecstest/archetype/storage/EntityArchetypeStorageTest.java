@@ -0,0 +1,98 @@
+package top.kgame.lib.ecstest.archetype.storage;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntityArchetype 列存储测试
+ * 验证组件按列存储在原型中，实体迁移后组件实例保持不变
+ */
+class EntityArchetypeStorageTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testComponentStoredInArchetypeColumn() {
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EntityArchetype archetype = entity1.getArchetype();
+
+        assertSame(archetype, entity2.getArchetype());
+        assertEquals(2, archetype.entityCount());
+        assertSame(entity1, archetype.getEntity(entity1.getRow()));
+        assertSame(entity2, archetype.getEntity(entity2.getRow()));
+
+        EcsComponent[] column = archetype.getComponentColumn(Component1.class);
+        assertNotNull(column);
+        assertSame(entity1.getComponent(Component1.class), column[entity1.getRow()]);
+        assertSame(entity2.getComponent(Component1.class), column[entity2.getRow()]);
+        assertNull(archetype.getComponentColumn(Component3.class));
+    }
+
+    @Test
+    void testComponentInstanceKeptAfterMigration() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EntityArchetype oldArchetype = entity.getArchetype();
+        Component1 component1 = entity.getComponent(Component1.class);
+        Component2 component2 = entity.getComponent(Component2.class);
+        Component3 component3 = new Component3();
+
+        assertTrue(entity.addComponent(component3));
+        assertNotSame(oldArchetype, entity.getArchetype());
+        assertEquals(0, oldArchetype.entityCount());
+        assertSame(component1, entity.getComponent(Component1.class));
+        assertSame(component2, entity.getComponent(Component2.class));
+        assertSame(component3, entity.getComponent(Component3.class));
+
+        assertSame(component2, entity.removeComponent(Component2.class));
+        assertNull(entity.getComponent(Component2.class));
+        assertFalse(entity.hasComponent(Component2.class));
+        assertSame(component1, entity.getComponent(Component1.class));
+        assertSame(component3, entity.getComponent(Component3.class));
+    }
+
+    @Test
+    void testRowFixedAfterRemoveEntity() {
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EcsEntity entity3 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EntityArchetype archetype = entity1.getArchetype();
+        Component1 component3 = entity3.getComponent(Component1.class);
+
+        entity1.addComponent(new Component3());
+
+        // 最后一行交换到被移除的行
+        assertEquals(2, archetype.entityCount());
+        assertEquals(0, entity3.getRow());
+        assertEquals(1, entity2.getRow());
+        assertSame(entity2, archetype.getEntity(entity2.getRow()));
+        assertSame(entity3, archetype.getEntity(entity3.getRow()));
+        assertSame(component3, entity3.getComponent(Component1.class));
+    }
+
+    @Test
+    void testDestroyedEntityHasNoComponent() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        ecsWorld.requestDestroyEntity(entity);
+        ecsWorld.update(0);
+
+        assertNull(ecsWorld.getEntity(entity.getIndex()));
+        assertNull(entity.getComponent(Component1.class));
+        assertFalse(entity.addComponent(new Component2()));
+    }
+}
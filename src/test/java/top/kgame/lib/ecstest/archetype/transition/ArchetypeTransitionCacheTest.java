@@ -0,0 +1,49 @@
+package top.kgame.lib.ecstest.archetype.transition;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 原型迁移边缓存测试
+ */
+class ArchetypeTransitionCacheTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testTransitionCachedAfterFirstChange() {
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EntityArchetype sourceArchetype = entity1.getArchetype();
+
+        entity1.addComponent(new Component3());
+        EntityArchetype targetArchetype = entity1.getArchetype();
+        assertEquals(0, ecsWorld.getArchetypeTransitionHitCount());
+        assertEquals(1, ecsWorld.getArchetypeTransitionMissCount());
+
+        // 相同迁移直接命中缓存
+        entity2.addComponent(new Component3());
+        assertSame(targetArchetype, entity2.getArchetype());
+        assertEquals(1, ecsWorld.getArchetypeTransitionHitCount());
+
+        // 添加迁移同时缓存了反向的移除迁移
+        entity1.removeComponent(Component3.class);
+        entity2.removeComponent(Component3.class);
+        assertSame(sourceArchetype, entity1.getArchetype());
+        assertSame(sourceArchetype, entity2.getArchetype());
+        assertEquals(3, ecsWorld.getArchetypeTransitionHitCount());
+        assertEquals(1, ecsWorld.getArchetypeTransitionMissCount());
+    }
+}
@@ -0,0 +1,104 @@
+package top.kgame.lib.ecstest.command;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.command.EcsCommandBuffer;
+import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EcsCommandBuffer 测试
+ * 验证编码命令与自定义命令按添加顺序执行，执行期间添加的命令同样执行，缓冲区可重复使用
+ */
+class EcsCommandBufferTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testExecuteInOrder() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        List<String> trace = new ArrayList<>();
+
+        buffer.addComponent(entity, new Component3());
+        buffer.addCommand(() -> trace.add("added:" + entity.hasComponent(Component3.class)));
+        buffer.removeComponent(entity, Component1.class);
+        buffer.addCommand(() -> trace.add("removed:" + !entity.hasComponent(Component1.class)));
+        assertEquals(4, buffer.size());
+
+        buffer.execute();
+        assertEquals(List.of("added:true", "removed:true"), trace);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testAddDuringExecute() {
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        List<Integer> trace = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            buffer.addCommand(() -> {
+                trace.add(value);
+                if (value < 100) {
+                    buffer.addCommand(() -> trace.add(value + 100));
+                }
+            });
+        }
+        buffer.execute();
+
+        assertEquals(20, trace.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, trace.get(i).intValue());
+            assertEquals(i + 100, trace.get(i + 10).intValue());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testReuseAndMove() {
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        EcsCommandBuffer target = new EcsCommandBuffer();
+        List<Integer> trace = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                buffer.addCommand(() -> trace.add(value));
+            }
+            buffer.moveTo(target);
+            assertTrue(buffer.isEmpty());
+            assertEquals(100, target.size());
+            target.execute();
+            assertEquals(100, trace.size());
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, trace.get(i).intValue());
+            }
+            trace.clear();
+        }
+    }
+
+    @Test
+    void testDestroyEntity() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        buffer.destroyEntity(entity);
+        buffer.execute();
+        assertTrue(entity.hasComponent(DestroyingComponent.class));
+
+        ecsWorld.update(1);
+        assertNull(ecsWorld.getEntity(entity.getIndex()));
+    }
+}
@@ -0,0 +1,97 @@
+package top.kgame.lib.ecstest.command;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.command.EcsCommand;
+import top.kgame.lib.ecs.command.EcsCommandAddComponent;
+import top.kgame.lib.ecs.command.EcsCommandQueue;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EcsCommandQueue 多生产者单消费者测试，以及 EcsWorld 跨线程提交命令测试
+ */
+class EcsCommandQueueTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testCapacity() {
+        EcsCommandQueue queue = new EcsCommandQueue(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(() -> {}));
+        }
+        assertFalse(queue.offer(() -> {}));
+        assertNotNull(queue.poll());
+        assertTrue(queue.offer(() -> {}));
+        assertEquals(4, queue.execute());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testMultipleProducers() throws InterruptedException {
+        int producerCount = 4;
+        int commandCount = 20000;
+        EcsCommandQueue queue = new EcsCommandQueue(256);
+        List<List<Integer>> received = new ArrayList<>();
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            List<Integer> values = new ArrayList<>();
+            received.add(values);
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < commandCount; i++) {
+                    int value = i;
+                    EcsCommand command = () -> values.add(value);
+                    while (!queue.offer(command)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        int total = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (total < producerCount * commandCount && System.currentTimeMillis() < deadline) {
+            total += queue.execute();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(producerCount * commandCount, total);
+        // 同一生产者的命令保持提交顺序
+        for (List<Integer> values : received) {
+            assertEquals(commandCount, values.size());
+            for (int i = 0; i < commandCount; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    void testWorldSubmitCommand() throws InterruptedException {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E12.getId());
+
+        Thread producer = new Thread(() -> ecsWorld.submitCommand(new EcsCommandAddComponent(entity, new Component3())));
+        producer.start();
+        producer.join();
+        assertFalse(entity.hasComponent(Component3.class));
+
+        ecsWorld.update(1);
+        assertTrue(entity.hasComponent(Component3.class));
+    }
+}
@@ -0,0 +1,93 @@
+package top.kgame.lib.ecstest.component.archetype;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 标签组件和共享组件测试
+ * 验证两者只保存在原型中，共享组件按值划分原型，查询匹配所有划分
+ */
+class ArchetypeComponentTest extends EcsTestBase {
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.update(1);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testTagComponent() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.TEAM.getId(), 3, null);
+        MarkerTag first = new MarkerTag();
+        MarkerTag second = new MarkerTag();
+
+        assertTrue(entities[0].addComponent(first));
+        assertTrue(entities[1].addComponent(second));
+        assertFalse(entities[1].addComponent(new MarkerTag()));
+        EntityArchetype archetype = entities[0].getArchetype();
+        assertSame(archetype, entities[1].getArchetype());
+        assertNull(archetype.getComponentColumn(MarkerTag.class));
+        assertSame(first, entities[0].getComponent(MarkerTag.class));
+        assertSame(first, entities[1].getComponent(MarkerTag.class));
+        assertNotNull(entities[1].getComponent(Component1.class));
+
+        assertSame(first, entities[0].removeComponent(MarkerTag.class));
+        assertFalse(entities[0].hasComponent(MarkerTag.class));
+        assertTrue(entities[1].hasComponent(MarkerTag.class));
+        assertFalse(entities[2].hasComponent(MarkerTag.class));
+    }
+
+    @Test
+    void testSharedComponentPartition() {
+        EcsEntity[] team1 = ecsWorld.createEntities(EntityIndex.TEAM.getId(), 5, null);
+        EcsEntity[] team2 = ecsWorld.createEntities(EntityIndex.E1.getId(), 3, (entity, index) ->
+                assertTrue(entity.addComponent(new TeamComponent(2))));
+
+        EntityArchetype archetype1 = team1[0].getArchetype();
+        EntityArchetype archetype2 = team2[0].getArchetype();
+        assertNotSame(archetype1, archetype2);
+        assertEquals(5, archetype1.entityCount());
+        assertEquals(3, archetype2.entityCount());
+        assertNull(archetype1.getComponentColumn(TeamComponent.class));
+        assertSame(team1[0].getComponent(TeamComponent.class), team1[4].getComponent(TeamComponent.class));
+        assertEquals(2, team2[2].getComponent(TeamComponent.class).getTeam());
+
+        // 相等的值进入同一原型
+        EcsEntity moved = team2[0];
+        moved.removeComponent(TeamComponent.class);
+        assertNotSame(archetype2, moved.getArchetype());
+        assertTrue(moved.addComponent(new TeamComponent(2)));
+        assertSame(archetype2, moved.getArchetype());
+        assertEquals(3, archetype2.entityCount());
+
+        // 添加普通组件时共享值随实体迁移
+        assertTrue(team2[1].addComponent(new MarkerTag()));
+        assertEquals(2, team2[1].getComponent(TeamComponent.class).getTeam());
+        assertTrue(team1[1].addComponent(new MarkerTag()));
+        assertNotSame(team1[1].getArchetype(), team2[1].getArchetype());
+        assertEquals(EntityTeamFactory.TEAM, team1[1].getComponent(TeamComponent.class).getTeam());
+
+        assertEquals(8, ecsWorld.destroyAll(List.of(ComponentFilterParam.require(TeamComponent.class))));
+        ecsWorld.update(2);
+        assertTrue(ecsWorld.getAllEntity().isEmpty());
+    }
+}
@@ -0,0 +1,23 @@
+package top.kgame.lib.ecstest.component.archetype;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.extensions.entity.BaseEntityFactory;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntityTeamFactory extends BaseEntityFactory {
+    public static final int TEAM = 1;
+
+    @Override
+    public int typeId() {
+        return EntityIndex.TEAM.getId();
+    }
+
+    @Override
+    protected Collection<EcsComponent> generateComponent() {
+        return List.of(new Component1(), new TeamComponent(TEAM));
+    }
+}
@@ -0,0 +1,8 @@
+package top.kgame.lib.ecstest.component.archetype;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.TagComponent;
+
+@TagComponent
+public class MarkerTag implements EcsComponent {
+}
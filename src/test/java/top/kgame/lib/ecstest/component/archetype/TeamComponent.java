@@ -0,0 +1,33 @@
+package top.kgame.lib.ecstest.component.archetype;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.SharedComponent;
+
+@SharedComponent
+public class TeamComponent implements EcsComponent {
+    private final int team;
+
+    public TeamComponent() {
+        this(0);
+    }
+
+    public TeamComponent(int team) {
+        this.team = team;
+    }
+
+    public int getTeam() {
+        return team;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return team == ((TeamComponent) o).team;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(team);
+    }
+}
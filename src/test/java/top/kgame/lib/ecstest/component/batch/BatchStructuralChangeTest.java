@@ -0,0 +1,142 @@
+package top.kgame.lib.ecstest.component.batch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.command.EcsCommandBuffer;
+import top.kgame.lib.ecs.core.ComponentFilter;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQuery;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量结构变更测试
+ * 验证连续的同类型增删组件命令按源原型分组迁移，结果与逐个执行一致
+ */
+class BatchStructuralChangeTest extends EcsTestBase {
+    private Method findOrCreateEntityQueryMethod;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        try {
+            findOrCreateEntityQueryMethod = EcsWorld.class.getDeclaredMethod("findOrCreateEntityQuery", ComponentFilter.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        findOrCreateEntityQueryMethod.setAccessible(true);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private EntityQuery query(Class<? extends EcsComponent> type) throws Exception {
+        ComponentFilter filter = ComponentFilter.generate(ecsWorld, List.of(ComponentFilterParam.require(type)));
+        return (EntityQuery) findOrCreateEntityQueryMethod.invoke(ecsWorld, filter);
+    }
+
+    @Test
+    void testBatchAddComponent() throws Exception {
+        List<EcsEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            entities.add(ecsWorld.createEntity(i % 3 == 0 ? EntityIndex.E1.getId() : EntityIndex.E12.getId()));
+        }
+        EntityQuery component3Query = query(Component3.class);
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        List<Component3> components = new ArrayList<>();
+        for (EcsEntity entity : entities) {
+            Component3 component = new Component3();
+            components.add(component);
+            buffer.addComponent(entity, component);
+        }
+        long lookups = ecsWorld.getArchetypeTransitionHitCount() + ecsWorld.getArchetypeTransitionMissCount();
+
+        buffer.execute();
+
+        // 两个源原型，各查找一次目标原型
+        assertEquals(lookups + 2, ecsWorld.getArchetypeTransitionHitCount() + ecsWorld.getArchetypeTransitionMissCount());
+        assertEquals(150, component3Query.entityCount());
+        for (int i = 0; i < entities.size(); i++) {
+            EcsEntity entity = entities.get(i);
+            assertSame(components.get(i), entity.getComponent(Component3.class));
+            assertNotNull(entity.getComponent(Component1.class));
+            assertSame(entity, entity.getArchetype().getEntity(entity.getRow()));
+            assertEquals(i % 3 != 0, entity.hasComponent(Component2.class));
+        }
+    }
+
+    @Test
+    void testBatchRemoveComponent() throws Exception {
+        List<EcsEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entities.add(ecsWorld.createEntity(i % 2 == 0 ? EntityIndex.E1.getId() : EntityIndex.E12.getId()));
+        }
+        EntityQuery component1Query = query(Component1.class);
+        EcsEntity[] array = entities.toArray(new EcsEntity[0]);
+        List<Component2> component2List = new ArrayList<>();
+        for (EcsEntity entity : entities) {
+            component2List.add(entity.getComponent(Component2.class));
+        }
+
+        assertEquals(100, ecsWorld.removeComponents(array, Component1.class, 0, array.length));
+        assertEquals(0, component1Query.entityCount());
+        for (int i = 0; i < entities.size(); i++) {
+            EcsEntity entity = entities.get(i);
+            assertFalse(entity.hasComponent(Component1.class));
+            assertSame(component2List.get(i), entity.getComponent(Component2.class));
+        }
+        // 已经没有该组件的实体跳过
+        assertEquals(0, ecsWorld.removeComponents(array, Component1.class, 0, array.length));
+    }
+
+    @Test
+    void testDuplicateEntity() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsEntity other = ecsWorld.createEntity(EntityIndex.E1.getId());
+        Component3 first = new Component3();
+        EcsEntity[] entities = {entity, other, entity};
+        EcsComponent[] components = {first, new Component3(), new Component3()};
+
+        assertEquals(2, ecsWorld.addComponents(entities, components, 0, entities.length));
+        assertSame(first, entity.getComponent(Component3.class));
+    }
+
+    @Test
+    void testCustomCommandBetweenBatches() {
+        List<EcsEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(ecsWorld.createEntity(EntityIndex.E1.getId()));
+        }
+        EcsCommandBuffer buffer = new EcsCommandBuffer();
+        List<Boolean> trace = new ArrayList<>();
+        for (EcsEntity entity : entities) {
+            buffer.addComponent(entity, new Component3());
+        }
+        buffer.addCommand(() -> trace.add(entities.get(9).hasComponent(Component3.class)));
+        for (EcsEntity entity : entities) {
+            buffer.removeComponent(entity, Component3.class);
+        }
+        buffer.addCommand(() -> trace.add(entities.get(0).hasComponent(Component3.class)));
+
+        buffer.execute();
+        assertEquals(List.of(true, false), trace);
+    }
+}
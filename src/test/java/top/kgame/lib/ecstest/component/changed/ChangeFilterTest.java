@@ -0,0 +1,174 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.ComponentFilter;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component5;
+import top.kgame.lib.ecstest.util.component.ComponentLexicographic;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 组件变更过滤测试
+ * 验证System只遍历上次运行后组件被写入过的实体块，并行批次中System自身的写入不会在下次运行时再次命中
+ */
+class ChangeFilterTest extends EcsTestBase {
+    private static final int BLOCK_SIZE = 1 << EntityArchetype.CHANGE_BLOCK_SHIFT;
+    private static final int SNAPSHOT = EntityIndex.SNAPSHOT.getId();
+    private final Context context = new Context();
+    private ForkJoinPool executor;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.setContext(context);
+    }
+
+    @AfterEach
+    void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+        context.synced.clear();
+        context.written.clear();
+        context.read.clear();
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private static void write(EcsEntity entity) {
+        entity.getComponent(ComponentPosition.class).x = 1;
+        entity.markChanged(ComponentPosition.class);
+    }
+
+    @Test
+    void testSkipUnchangedBlocks() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, BLOCK_SIZE * 2 + 10, null);
+
+        updateWorld(1, 2, 1);
+        assertEquals(entities.length, context.synced.size());
+
+        updateWorld(2, 3, 1);
+        assertTrue(context.synced.isEmpty());
+
+        EcsEntity changed = entities[BLOCK_SIZE + 3];
+        write(changed);
+        updateWorld(3, 4, 1);
+        assertEquals(BLOCK_SIZE, context.synced.size());
+        assertTrue(context.synced.contains(changed));
+
+        updateWorld(4, 5, 1);
+        assertTrue(context.synced.isEmpty());
+    }
+
+    @Test
+    void testNewEntityMarkedChanged() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, BLOCK_SIZE + 10, null);
+        updateWorld(1, 2, 1);
+
+        EcsEntity created = ecsWorld.createEntity(SNAPSHOT);
+        updateWorld(2, 3, 1);
+        assertEquals(11, context.synced.size());
+        assertTrue(context.synced.contains(created));
+        assertFalse(context.synced.contains(entities[0]));
+    }
+
+    @Test
+    void testRemovedEntityMarksMovedRow() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, BLOCK_SIZE + 10, null);
+        updateWorld(1, 2, 1);
+
+        // 最后一行交换到第0行，第0块的内容发生变化
+        ecsWorld.requestDestroyEntity(entities[0]);
+        updateWorld(2, 3, 1);
+        assertTrue(context.synced.contains(entities[entities.length - 1]));
+        assertFalse(context.synced.contains(entities[BLOCK_SIZE]));
+    }
+
+    @Test
+    void testReadOnlySystemNotMarkedChanged() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, BLOCK_SIZE * 2, null);
+        updateWorld(1, 2, 1);
+
+        // SystemChangedRead 每次都遍历 ComponentPosition，未声明写入时不会使变更过滤命中
+        for (int time = 2; time < 6; time++) {
+            updateWorld(time, time + 1, 1);
+            assertEquals(entities.length, context.read.size());
+            assertTrue(context.synced.isEmpty(), "rerun at " + time);
+        }
+    }
+
+    @Test
+    void testDeclaredWriteInSystemMarkedChanged() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, BLOCK_SIZE * 2, null);
+        updateWorld(1, 2, 1);
+        EcsEntity moving = entities[BLOCK_SIZE + 3];
+        moving.addComponent(new ComponentTag());
+        updateWorld(2, 3, 1);
+
+        // SystemChangedMove 只修改字段，不调用markChanged，声明写入的组件仍被变更过滤感知
+        for (int time = 3; time < 6; time++) {
+            updateWorld(time, time + 1, 1);
+            assertEquals(List.of(moving), context.synced, "rerun at " + time);
+        }
+        assertEquals(4, moving.getComponent(ComponentPosition.class).x);
+    }
+
+    @Test
+    void testOwnWritesIgnoredInParallelStage() {
+        executor = new ForkJoinPool(4);
+        ecsWorld.setParallelExecutor(executor);
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E0.getId(), BLOCK_SIZE * 2, (entity, index) ->
+                entity.addComponent(new Component5()));
+
+        updateWorld(1, 2, 1);
+        assertEquals(entities.length, context.written.size());
+        // 同批次的其他System不推进版本，本System写入的版本不晚于自身的lastRunVersion
+        for (int time = 2; time < 20; time++) {
+            updateWorld(time, time + 1, 1);
+            assertTrue(context.written.isEmpty(), "rerun at " + time);
+        }
+
+        entities[0].markChanged(Component5.class);
+        updateWorld(20, 21, 1);
+        assertEquals(BLOCK_SIZE, context.written.size());
+        updateWorld(21, 22, 1);
+        assertTrue(context.written.isEmpty());
+    }
+
+    @Test
+    void testChangedFilterNotEqualsRequire() {
+        ComponentFilter changed = ComponentFilter.generate(ecsWorld, List.of(ComponentFilterParam.changed(ComponentLexicographic.class)));
+        ComponentFilter require = ComponentFilter.generate(ecsWorld, List.of(ComponentFilterParam.require(ComponentLexicographic.class)));
+        assertNotEquals(require, changed);
+        assertTrue(changed.hasChangedFilter());
+        assertFalse(require.hasChangedFilter());
+        assertEquals(require.firstRequiredIndex(), changed.firstRequiredIndex());
+        assertEquals(ecsWorld.getComponentIndex(ComponentLexicographic.class), changed.getChangedIndexes()[0]);
+    }
+
+    public static class Context {
+        final List<EcsEntity> synced = new ArrayList<>();
+        final List<EcsEntity> written = new ArrayList<>();
+        final List<EcsEntity> read = new ArrayList<>();
+    }
+}
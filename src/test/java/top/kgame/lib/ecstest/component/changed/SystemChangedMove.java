@@ -0,0 +1,28 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 移动带 ComponentTag 的实体，只修改组件字段，不调用markChanged，通过ComponentAccess声明写入
+ */
+@ComponentAccess(write = ComponentPosition.class)
+public class SystemChangedMove extends EcsOneComponentUpdateSystem<ComponentPosition> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentPosition component) {
+        component.x++;
+    }
+
+    @Override
+    public Collection<Class<? extends EcsComponent>> getExtraRequirementComponent() {
+        return List.of(ComponentTag.class);
+    }
+}
@@ -0,0 +1,18 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component4;
+import top.kgame.lib.ecstest.util.component.ComponentLexicographic;
+
+/**
+ * 与 SystemChangedParallelWriter 读写不冲突，同批次并行更新
+ */
+@ComponentAccess(write = Component4.class)
+public class SystemChangedParallelPartner extends EcsOneComponentUpdateSystem<ComponentLexicographic> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentLexicographic component) {
+    }
+}
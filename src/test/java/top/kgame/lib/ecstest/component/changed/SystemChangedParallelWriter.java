@@ -0,0 +1,33 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component5;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 与 SystemChangedParallelPartner 同批次并行更新，只处理 Component5 被写入过的实体，并写入 Component5
+ */
+@ComponentAccess(write = Component5.class)
+public class SystemChangedParallelWriter extends EcsOneComponentUpdateSystem<Component5> {
+
+    @Override
+    protected void update(EcsEntity entity, Component5 component) {
+        ChangeFilterTest.Context context = getWorld().getContext();
+        if (null == context) {
+            return;
+        }
+        context.written.add(entity);
+        component.data += "w";
+        entity.markChanged(Component5.class);
+    }
+
+    @Override
+    protected Collection<Class<? extends EcsComponent>> getChangedFilterComponent() {
+        return List.of(Component5.class);
+    }
+}
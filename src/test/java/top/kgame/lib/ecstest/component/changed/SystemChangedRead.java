@@ -0,0 +1,19 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+
+/**
+ * 每次运行都遍历所有 ComponentPosition，只读取不写入，未标记ComponentAccess
+ */
+public class SystemChangedRead extends EcsOneComponentUpdateSystem<ComponentPosition> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentPosition component) {
+        ChangeFilterTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.read.add(entity);
+        }
+    }
+}
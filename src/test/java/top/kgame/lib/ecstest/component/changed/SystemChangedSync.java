@@ -0,0 +1,28 @@
+package top.kgame.lib.ecstest.component.changed;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 只同步上次运行后 ComponentPosition 被写入过的实体
+ */
+public class SystemChangedSync extends EcsOneComponentUpdateSystem<ComponentPosition> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentPosition component) {
+        ChangeFilterTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.synced.add(entity);
+        }
+    }
+
+    @Override
+    protected Collection<Class<? extends EcsComponent>> getChangedFilterComponent() {
+        return List.of(ComponentPosition.class);
+    }
+}
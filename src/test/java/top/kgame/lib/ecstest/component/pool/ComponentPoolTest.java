@@ -0,0 +1,69 @@
+package top.kgame.lib.ecstest.component.pool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 组件对象池测试
+ * 验证 EcsPoolable 组件在实体销毁时清理并回收，工厂创建实体时复用
+ */
+class ComponentPoolTest extends EcsTestBase {
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.update(1);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testComponentReusedAfterDestroy() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.POOLED.getId());
+        PooledComponent component = entity.getComponent(PooledComponent.class);
+        component.value = 10;
+        assertEquals(0, ecsWorld.getPooledComponentCount(PooledComponent.class));
+
+        ecsWorld.requestDestroyEntity(entity);
+        ecsWorld.update(2);
+        assertEquals(1, ecsWorld.getPooledComponentCount(PooledComponent.class));
+        assertEquals(0, component.value);
+        assertEquals(1, component.cleanCount);
+
+        EcsEntity reused = ecsWorld.createEntity(EntityIndex.POOLED.getId());
+        assertSame(component, reused.getComponent(PooledComponent.class));
+        assertEquals(0, ecsWorld.getPooledComponentCount(PooledComponent.class));
+    }
+
+    @Test
+    void testBulkDestroyReleasesComponents() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.POOLED.getId(), 100, null);
+        ecsWorld.requestDestroyEntities(entities, 60);
+        ecsWorld.update(2);
+        assertEquals(60, ecsWorld.getPooledComponentCount(PooledComponent.class));
+
+        ecsWorld.createEntities(EntityIndex.POOLED.getId(), 100, null);
+        assertEquals(0, ecsWorld.getPooledComponentCount(PooledComponent.class));
+        assertEquals(140, ecsWorld.getAllEntity().size());
+    }
+
+    @Test
+    void testObtainNotPoolableComponent() {
+        assertInstanceOf(PooledComponent.class, ecsWorld.obtainComponent(PooledComponent.class));
+        assertThrows(IllegalArgumentException.class, () -> ecsWorld.obtainComponent(Component1.class));
+        assertEquals(0, ecsWorld.getPooledComponentCount(Component1.class));
+    }
+}
@@ -0,0 +1,22 @@
+package top.kgame.lib.ecstest.component.pool;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.extensions.entity.BaseEntityFactory;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntityPooledFactory extends BaseEntityFactory {
+
+    @Override
+    public int typeId() {
+        return EntityIndex.POOLED.getId();
+    }
+
+    @Override
+    protected Collection<EcsComponent> generateComponent() {
+        return List.of(obtainComponent(PooledComponent.class), new Component1());
+    }
+}
@@ -0,0 +1,15 @@
+package top.kgame.lib.ecstest.component.pool;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.core.EcsPoolable;
+
+public class PooledComponent implements EcsComponent, EcsPoolable {
+    public int value = 0;
+    public int cleanCount = 0;
+
+    @Override
+    public void clean() {
+        value = 0;
+        cleanCount++;
+    }
+}
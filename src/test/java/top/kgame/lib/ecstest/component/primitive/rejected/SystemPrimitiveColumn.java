@@ -0,0 +1,15 @@
+package top.kgame.lib.ecstest.component.primitive.rejected;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.component.primitive.storage.PositionComponent;
+
+/**
+ * 以基本类型组件作为查询列，初始化时被拒绝
+ */
+public class SystemPrimitiveColumn extends EcsOneComponentUpdateSystem<PositionComponent> {
+
+    @Override
+    protected void update(EcsEntity entity, PositionComponent component) {
+    }
+}
@@ -0,0 +1,26 @@
+package top.kgame.lib.ecstest.component.primitive.storage;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.extensions.entity.BaseEntityFactory;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntityPositionFactory extends BaseEntityFactory {
+
+    @Override
+    public int typeId() {
+        return EntityIndex.POSITION.getId();
+    }
+
+    @Override
+    protected Collection<EcsComponent> generateComponent() {
+        PositionComponent position = new PositionComponent();
+        position.x = 1.5f;
+        position.mass = 2.5;
+        position.alive = true;
+        return List.of(position, new Component1());
+    }
+}
@@ -0,0 +1,15 @@
+package top.kgame.lib.ecstest.component.primitive.storage;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.PrimitiveComponent;
+
+@PrimitiveComponent
+public class PositionComponent implements EcsComponent {
+    public float x;
+    public float y;
+    public int flags;
+    public long ownerId;
+    public double mass;
+    public boolean alive;
+    public byte level;
+}
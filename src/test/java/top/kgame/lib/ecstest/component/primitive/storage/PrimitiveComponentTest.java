@@ -0,0 +1,148 @@
+package top.kgame.lib.ecstest.component.primitive.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.PrimitiveComponentView;
+import top.kgame.lib.ecs.exception.InvalidPrimitiveComponentException;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基本类型组件存储测试
+ * 验证字段值通过访问器读写，在原型迁移和行交换后保持不变；System通过访问器更新字段，不能以该组件作为查询列
+ */
+class PrimitiveComponentTest extends EcsTestBase {
+    private PrimitiveComponentView view;
+    private int x;
+    private int flags;
+    private int ownerId;
+    private int mass;
+    private int alive;
+    private int level;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.update(1);
+        view = ecsWorld.createPrimitiveView(PositionComponent.class);
+        x = view.fieldIndex("x");
+        flags = view.fieldIndex("flags");
+        ownerId = view.fieldIndex("ownerId");
+        mass = view.fieldIndex("mass");
+        alive = view.fieldIndex("alive");
+        level = view.fieldIndex("level");
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testReadWriteField() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.POSITION.getId());
+        assertTrue(view.bind(entity));
+        assertEquals(1.5f, view.getFloat(x));
+        assertEquals(2.5, view.getDouble(mass));
+        assertEquals(1, view.getInt(alive));
+
+        view.setFloat(x, 3f);
+        view.setInt(flags, 7);
+        view.setLong(ownerId, 1L << 40);
+        view.setInt(alive, 0);
+
+        PositionComponent copy = entity.getComponent(PositionComponent.class);
+        assertEquals(3f, copy.x);
+        assertEquals(7, copy.flags);
+        assertEquals(1L << 40, copy.ownerId);
+        assertFalse(copy.alive);
+        // getComponent 返回副本，修改不写回
+        copy.x = 100f;
+        assertEquals(3f, view.getFloat(x));
+        assertThrows(IllegalArgumentException.class, () -> view.getInt(x));
+        assertThrows(IllegalArgumentException.class, () -> view.fieldIndex("z"));
+    }
+
+    @Test
+    void testNarrowIntField() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.POSITION.getId());
+        assertTrue(view.bind(entity));
+        // 按字段类型截断，访问器读出的值与组件副本一致
+        view.setInt(level, 300);
+        view.setInt(alive, 2);
+        assertEquals(44, view.getInt(level));
+        assertEquals(1, view.getInt(alive));
+
+        PositionComponent copy = entity.getComponent(PositionComponent.class);
+        assertEquals(44, copy.level);
+        assertTrue(copy.alive);
+    }
+
+    @Test
+    void testFieldKeptAfterStructuralChange() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.POSITION.getId(), 40, (entity, index) -> {
+            view.bind(entity);
+            view.setInt(flags, index);
+        });
+        for (int i = 0; i < entities.length; i += 2) {
+            assertTrue(entities[i].addComponent(new Component2()));
+        }
+        ecsWorld.requestDestroyEntity(entities[1]);
+        ecsWorld.requestDestroyEntity(entities[2]);
+        ecsWorld.update(2);
+
+        for (int i = 3; i < entities.length; i++) {
+            assertTrue(view.bind(entities[i]));
+            assertEquals(i, view.getInt(flags));
+            assertEquals(1.5f, view.getFloat(x));
+        }
+        PositionComponent removed = (PositionComponent) entities[4].removeComponent(PositionComponent.class);
+        assertEquals(4, removed.flags);
+        assertFalse(view.bind(entities[4]));
+        assertThrows(IllegalStateException.class, () -> view.getInt(flags));
+    }
+
+    @Test
+    void testSystemUpdateThroughView() {
+        Context context = new Context();
+        context.moveStep = 2f;
+        ecsWorld.setContext(context);
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.POSITION.getId(), 200, null);
+        entities[0].addComponent(new Component2());
+
+        updateWorld(2, 5, 1);
+        for (EcsEntity entity : entities) {
+            assertTrue(view.bind(entity));
+            assertEquals(7.5f, view.getFloat(x));
+        }
+    }
+
+    @Test
+    void testPrimitiveQueryColumnRejected() {
+        // 内置System以基本类型组件作为查询列时，初始化即抛出异常，而不是更新时拿到null
+        assertThrows(InvalidPrimitiveComponentException.class, () -> EcsWorld.generateInstance(
+                this.getClass().getPackage().getName(), "top.kgame.lib.ecstest.util",
+                "top.kgame.lib.ecstest.component.primitive.rejected"));
+    }
+
+    @Test
+    void testNotPrimitiveComponent() {
+        assertFalse(ecsWorld.isPrimitiveComponent(Component1.class));
+        assertTrue(ecsWorld.isPrimitiveComponent(PositionComponent.class));
+        assertThrows(IllegalArgumentException.class, () -> ecsWorld.createPrimitiveView(Component1.class));
+    }
+
+    public static class Context {
+        float moveStep;
+    }
+}
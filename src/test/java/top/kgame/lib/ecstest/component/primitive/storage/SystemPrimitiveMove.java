@@ -0,0 +1,38 @@
+package top.kgame.lib.ecstest.component.primitive.storage;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.PrimitiveComponentView;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component1;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 额外依赖基本类型组件，通过访问器读写字段
+ */
+public class SystemPrimitiveMove extends EcsOneComponentUpdateSystem<Component1> {
+    private PrimitiveComponentView view;
+    private int x;
+
+    @Override
+    protected void onStart() {
+        view = getWorld().createPrimitiveView(PositionComponent.class);
+        x = view.fieldIndex("x");
+    }
+
+    @Override
+    protected void update(EcsEntity entity, Component1 component) {
+        PrimitiveComponentTest.Context context = getWorld().getContext();
+        if (null == context || !view.bind(entity)) {
+            return;
+        }
+        view.setFloat(x, view.getFloat(x) + context.moveStep);
+    }
+
+    @Override
+    public Collection<Class<? extends EcsComponent>> getExtraRequirementComponent() {
+        return List.of(PositionComponent.class);
+    }
+}
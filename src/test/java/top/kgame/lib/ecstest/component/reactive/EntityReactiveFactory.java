@@ -0,0 +1,23 @@
+package top.kgame.lib.ecstest.component.reactive;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.extensions.entity.BaseEntityFactory;
+import top.kgame.lib.ecstest.util.component.Component5;
+import top.kgame.lib.ecstest.util.component.ComponentLexicographic;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntityReactiveFactory extends BaseEntityFactory {
+
+    @Override
+    public int typeId() {
+        return EntityIndex.REACTIVE.getId();
+    }
+
+    @Override
+    protected Collection<EcsComponent> generateComponent() {
+        return List.of(new Component5(), new ComponentLexicographic());
+    }
+}
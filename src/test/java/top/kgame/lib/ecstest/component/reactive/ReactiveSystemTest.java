@@ -0,0 +1,103 @@
+package top.kgame.lib.ecstest.component.reactive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component5;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询结构变更日志测试
+ * 验证实体进入和离开查询时被记录，并按取出时的状态合并
+ */
+class ReactiveSystemTest extends EcsTestBase {
+    private final Context context = new Context();
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.setContext(context);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+        context.entered.clear();
+        context.left.clear();
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testEnteredReportedOnce() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.REACTIVE.getId(), 3, null);
+        updateWorld(1, 2, 1);
+        assertEquals(List.of(entities), context.entered);
+        assertTrue(context.left.isEmpty());
+
+        updateWorld(2, 3, 1);
+        assertTrue(context.entered.isEmpty());
+        for (EcsEntity entity : entities) {
+            assertEquals("5r", entity.getComponent(Component5.class).data);
+        }
+    }
+
+    @Test
+    void testRemoveAndAddComponent() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.REACTIVE.getId());
+        updateWorld(1, 2, 1);
+
+        EcsComponent component = entity.removeComponent(Component5.class);
+        updateWorld(2, 3, 1);
+        assertEquals(List.of(entity), context.left);
+        assertTrue(context.entered.isEmpty());
+
+        entity.addComponent(component);
+        updateWorld(3, 4, 1);
+        assertEquals(List.of(entity), context.entered);
+        assertTrue(context.left.isEmpty());
+    }
+
+    @Test
+    void testTransientChangesMerged() {
+        EcsEntity stable = ecsWorld.createEntity(EntityIndex.REACTIVE.getId());
+        updateWorld(1, 2, 1);
+
+        // 进入后又离开，不报告
+        EcsEntity transientEntity = ecsWorld.createEntity(EntityIndex.REACTIVE.getId());
+        transientEntity.removeComponent(Component5.class);
+        // 离开后又进入，先报告离开再报告进入
+        EcsComponent component = stable.removeComponent(Component5.class);
+        stable.addComponent(component);
+        updateWorld(2, 3, 1);
+        assertEquals(List.of(stable), context.left);
+        assertEquals(List.of(stable), context.entered);
+    }
+
+    @Test
+    void testDestroyedEntityLeft() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.REACTIVE.getId());
+        updateWorld(1, 2, 1);
+        ecsWorld.requestDestroyEntity(entity);
+        updateWorld(2, 3, 1);
+        List<EcsEntity> left = new ArrayList<>(context.left);
+        updateWorld(3, 4, 1);
+        left.addAll(context.left);
+        assertEquals(List.of(entity), left);
+        assertNull(ecsWorld.getEntity(entity.getIndex()));
+    }
+
+    public static class Context {
+        final List<EcsEntity> entered = new ArrayList<>();
+        final List<EcsEntity> left = new ArrayList<>();
+    }
+}
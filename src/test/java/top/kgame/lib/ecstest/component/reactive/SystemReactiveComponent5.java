@@ -0,0 +1,28 @@
+package top.kgame.lib.ecstest.component.reactive;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsReactiveSystem;
+import top.kgame.lib.ecstest.util.component.Component5;
+
+/**
+ * 记录进入和离开查询的实体，进入时在 Component5 上追加 "r"
+ */
+public class SystemReactiveComponent5 extends EcsReactiveSystem<Component5> {
+
+    @Override
+    protected void onEntityEntered(EcsEntity entity, Component5 component) {
+        component.data += "r";
+        ReactiveSystemTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.entered.add(entity);
+        }
+    }
+
+    @Override
+    protected void onEntityLeft(EcsEntity entity) {
+        ReactiveSystemTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.left.add(entity);
+        }
+    }
+}
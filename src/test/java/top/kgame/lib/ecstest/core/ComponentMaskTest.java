@@ -0,0 +1,62 @@
+package top.kgame.lib.ecstest.core;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.core.ComponentMask;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ComponentMask 位运算测试，覆盖单个long和超过64个组件的情况
+ */
+class ComponentMaskTest {
+
+    private static ComponentMask mask(int... indexes) {
+        BitSet bitSet = new BitSet();
+        for (int index : indexes) {
+            bitSet.set(index);
+        }
+        return ComponentMask.of(bitSet);
+    }
+
+    @Test
+    void testGet() {
+        ComponentMask mask = mask(0, 63, 64, 130);
+        assertTrue(mask.get(0));
+        assertTrue(mask.get(63));
+        assertTrue(mask.get(64));
+        assertTrue(mask.get(130));
+        assertFalse(mask.get(1));
+        assertFalse(mask.get(129));
+        assertFalse(mask.get(500));
+        assertFalse(mask.get(-1));
+    }
+
+    @Test
+    void testContainsAll() {
+        assertTrue(mask(1, 2, 3).containsAll(mask(1, 3)));
+        assertFalse(mask(1, 2).containsAll(mask(1, 3)));
+        assertTrue(mask(1, 70, 200).containsAll(mask(70, 200)));
+        assertFalse(mask(1, 70).containsAll(mask(1, 200)));
+        assertTrue(mask(5).containsAll(ComponentMask.EMPTY));
+        assertTrue(ComponentMask.EMPTY.containsAll(ComponentMask.EMPTY));
+    }
+
+    @Test
+    void testIntersects() {
+        assertTrue(mask(1, 2).intersects(mask(2, 3)));
+        assertFalse(mask(1, 2).intersects(mask(3, 4)));
+        assertTrue(mask(1, 100).intersects(mask(100)));
+        assertFalse(mask(1, 100).intersects(mask(200)));
+        assertFalse(mask(1).intersects(ComponentMask.EMPTY));
+    }
+
+    @Test
+    void testEquals() {
+        assertEquals(mask(3, 90), mask(90, 3));
+        assertEquals(mask(3, 90).hashCode(), mask(90, 3).hashCode());
+        assertNotEquals(mask(3), mask(3, 90));
+        assertSame(ComponentMask.EMPTY, mask());
+    }
+}
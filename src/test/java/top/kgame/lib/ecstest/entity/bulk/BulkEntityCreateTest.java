@@ -0,0 +1,73 @@
+package top.kgame.lib.ecstest.entity.bulk;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量创建实体测试
+ * 验证批量创建的实体与逐个创建一致，共用同一原型且ID互不重复
+ */
+class BulkEntityCreateTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testCreateEntities() {
+        EcsEntity single = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E12.getId(), 200, null);
+
+        assertEquals(200, entities.length);
+        EntityArchetype archetype = single.getArchetype();
+        assertEquals(201, archetype.entityCount());
+        Set<Integer> ids = new HashSet<>();
+        ids.add(single.getIndex());
+        for (EcsEntity entity : entities) {
+            assertSame(archetype, entity.getArchetype());
+            assertSame(entity, archetype.getEntity(entity.getRow()));
+            assertSame(entity, ecsWorld.getEntity(entity.getIndex()));
+            assertNotNull(entity.getComponent(Component1.class));
+            assertNotNull(entity.getComponent(Component2.class));
+            assertTrue(ids.add(entity.getIndex()));
+        }
+        assertNotSame(entities[0].getComponent(Component1.class), entities[1].getComponent(Component1.class));
+    }
+
+    @Test
+    void testInitializerAndSlotReuse() {
+        EcsEntity[] first = ecsWorld.createEntities(EntityIndex.E1.getId(), 10, null);
+        for (EcsEntity entity : first) {
+            ecsWorld.requestDestroyEntity(entity);
+        }
+        ecsWorld.update(0);
+        ecsWorld.update(1);
+
+        int[] indexes = new int[100];
+        EcsEntity[] second = ecsWorld.createEntities(EntityIndex.E1.getId(), 100,
+                (entity, index) -> indexes[index] = entity.getIndex());
+        for (int i = 0; i < second.length; i++) {
+            assertEquals(second[i].getIndex(), indexes[i]);
+            assertSame(second[i], ecsWorld.getEntity(indexes[i]));
+        }
+        for (EcsEntity entity : first) {
+            assertNull(ecsWorld.getEntity(entity.getIndex()));
+        }
+        assertEquals(0, ecsWorld.createEntities(EntityIndex.E1.getId(), 0, null).length);
+        assertThrows(IllegalArgumentException.class, () -> ecsWorld.createEntities(-1, 1, null));
+    }
+}
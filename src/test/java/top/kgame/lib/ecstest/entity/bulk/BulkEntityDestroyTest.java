@@ -0,0 +1,101 @@
+package top.kgame.lib.ecstest.entity.bulk;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityArchetype;
+import top.kgame.lib.ecs.extensions.component.DestroyingComponent;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量销毁实体测试
+ * 验证按查询和按ID批量销毁与逐个销毁结果一致，整个原型迁移后行号正确
+ */
+class BulkEntityDestroyTest extends EcsTestBase {
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.update(1);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testDestroyAll() {
+        EcsEntity[] entities1 = ecsWorld.createEntities(EntityIndex.E1.getId(), 50, null);
+        EcsEntity[] entities12 = ecsWorld.createEntities(EntityIndex.E12.getId(), 50, null);
+        EcsEntity[] entities23 = ecsWorld.createEntities(EntityIndex.E23.getId(), 50, null);
+        EntityArchetype archetype1 = entities1[0].getArchetype();
+
+        assertEquals(100, ecsWorld.destroyAll(List.of(ComponentFilterParam.require(Component1.class))));
+        assertEquals(0, ecsWorld.destroyAll(List.of(ComponentFilterParam.require(Component1.class))));
+        assertEquals(0, archetype1.entityCount());
+        EntityArchetype destroyingArchetype = entities1[0].getArchetype();
+        assertEquals(50, destroyingArchetype.entityCount());
+        for (EcsEntity entity : entities1) {
+            assertTrue(entity.hasComponent(DestroyingComponent.class));
+            assertSame(entity, destroyingArchetype.getEntity(entity.getRow()));
+            assertNotNull(entity.getComponent(Component1.class));
+        }
+
+        ecsWorld.update(2);
+        assertEquals(50, ecsWorld.getAllEntity().size());
+        assertEquals(0, destroyingArchetype.entityCount());
+        for (EcsEntity entity : entities12) {
+            assertNull(ecsWorld.getEntity(entity.getIndex()));
+            assertNull(entity.getComponent(Component1.class));
+        }
+        for (EcsEntity entity : entities23) {
+            assertSame(entity, ecsWorld.getEntity(entity.getIndex()));
+            assertFalse(entity.hasComponent(DestroyingComponent.class));
+        }
+    }
+
+    @Test
+    void testDestroyEntities() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E12.getId(), 10, null);
+        int[] ids = {entities[1].getIndex(), entities[3].getIndex(), entities[3].getIndex(), 0};
+
+        assertEquals(2, ecsWorld.destroyEntities(ids));
+        ecsWorld.update(2);
+
+        assertEquals(8, entities[0].getArchetype().entityCount());
+        assertNull(ecsWorld.getEntity(entities[1].getIndex()));
+        assertNull(ecsWorld.getEntity(entities[3].getIndex()));
+        for (int i : new int[]{0, 2, 4, 5, 6, 7, 8, 9}) {
+            EcsEntity entity = entities[i];
+            assertSame(entity, ecsWorld.getEntity(entity.getIndex()));
+            assertSame(entity, entity.getArchetype().getEntity(entity.getRow()));
+        }
+    }
+
+    @Test
+    void testDuplicateEntityNotMoveWholeArchetype() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E1.getId(), 2, null);
+        EntityArchetype archetype = entities[0].getArchetype();
+        EcsEntity[] moving = {entities[0], entities[0]};
+        EcsComponent[] components = {new Component3(), new Component3()};
+
+        assertEquals(1, ecsWorld.addComponents(moving, components, 0, 2));
+        assertSame(archetype, entities[1].getArchetype());
+        assertEquals(1, archetype.entityCount());
+        assertSame(components[0], entities[0].getComponent(Component3.class));
+    }
+}
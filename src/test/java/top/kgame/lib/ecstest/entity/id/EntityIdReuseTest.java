@@ -0,0 +1,92 @@
+package top.kgame.lib.ecstest.entity.id;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 实体ID复用测试
+ * 验证销毁实体的槽位被复用后，旧ID不会查到新实体
+ */
+class EntityIdReuseTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testStaleIdNotResolvedAfterReuse() {
+        EcsEntity oldEntity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        int oldId = oldEntity.getIndex();
+        assertTrue(oldId > 0);
+        ecsWorld.requestDestroyEntity(oldEntity);
+        ecsWorld.update(0);
+
+        EcsEntity newEntity = ecsWorld.createEntity(EntityIndex.E1.getId());
+        assertNotEquals(oldId, newEntity.getIndex());
+        assertNull(ecsWorld.getEntity(oldId));
+        assertSame(newEntity, ecsWorld.getEntity(newEntity.getIndex()));
+
+        // 使用旧ID请求销毁不会影响新实体
+        ecsWorld.requestDestroyEntity(oldId);
+        ecsWorld.update(1);
+        assertSame(newEntity, ecsWorld.getEntity(newEntity.getIndex()));
+    }
+
+    @Test
+    void testSlotRetiredBeforeGenerationWraps() {
+        // 只有一个空闲槽位时反复复用同一槽位，代数用尽后改用新槽位，ID不会重复
+        Set<Integer> usedIds = new HashSet<>();
+        int firstId = 0;
+        // 代数占9位，每个槽位最多分配 1 << 9 次
+        for (int i = 0; i < (1 << 9) + 10; i++) {
+            EcsEntity entity = ecsWorld.createEntity(EntityIndex.E1.getId());
+            if (i == 0) {
+                firstId = entity.getIndex();
+            }
+            assertTrue(usedIds.add(entity.getIndex()), "entity id reused at " + i);
+            ecsWorld.requestDestroyEntity(entity);
+            ecsWorld.update(i);
+            assertNull(ecsWorld.getEntity(firstId));
+        }
+    }
+
+    @Test
+    void testMoreThan65535LiveEntities() {
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E1.getId(), 70000, null);
+        Set<Integer> ids = new HashSet<>();
+        for (EcsEntity entity : entities) {
+            assertTrue(ids.add(entity.getIndex()));
+            assertSame(entity, ecsWorld.getEntity(entity.getIndex()));
+        }
+        assertEquals(70000, ecsWorld.getAllEntity().size());
+    }
+
+    @Test
+    void testEntityCountStaysFlatWithChurn() {
+        Set<Integer> aliveIds = new HashSet<>();
+        long time = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 10; i++) {
+                EcsEntity entity = ecsWorld.createEntity(EntityIndex.E12.getId());
+                assertTrue(aliveIds.add(entity.getIndex()), "entity id should be unique among alive entities");
+                ecsWorld.requestDestroyEntity(entity);
+            }
+            ecsWorld.update(time++);
+            aliveIds.clear();
+            assertTrue(ecsWorld.getAllEntity().isEmpty());
+        }
+        assertNull(ecsWorld.getEntity(0));
+        assertNull(ecsWorld.getEntity(-1));
+    }
+}
@@ -0,0 +1,21 @@
+package top.kgame.lib.ecstest.parallel.chunk;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ParallelChunk;
+import top.kgame.lib.ecs.command.EcsCommandScope;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component1;
+
+/**
+ * 每块16个实体并行更新，通过延迟命令记录实体执行顺序
+ */
+@ParallelChunk(16)
+public class ChunkSystem extends EcsOneComponentUpdateSystem<Component1> {
+
+    @Override
+    protected void update(EcsEntity entity, Component1 component) {
+        component.data += "c";
+        SystemParallelChunkTest.Context context = getWorld().getContext();
+        addDelayCommand(() -> context.commandOrder.add(entity.getIndex()), EcsCommandScope.SYSTEM);
+    }
+}
@@ -0,0 +1,82 @@
+package top.kgame.lib.ecstest.parallel.chunk;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 单个EcsSystem分块并行更新测试
+ * 验证所有实体都被更新一次，延迟命令按实体顺序提交
+ */
+class SystemParallelChunkTest extends EcsTestBase {
+    private final Context context = new Context();
+    private ForkJoinPool executor;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.setContext(context);
+        executor = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+        context.commandOrder.clear();
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testChunkUpdate() {
+        ecsWorld.setParallelExecutor(executor);
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E1.getId(), 1000, null);
+        List<Integer> expectedOrder = new ArrayList<>();
+        for (EcsEntity entity : entities) {
+            expectedOrder.add(entity.getIndex());
+        }
+
+        updateWorld(1, 2, 1);
+        for (EcsEntity entity : entities) {
+            assertEquals("1c", entity.getComponent(Component1.class).data);
+        }
+        assertEquals(expectedOrder, context.commandOrder);
+
+        updateWorld(2, 3, 1);
+        for (EcsEntity entity : entities) {
+            assertEquals("1cc", entity.getComponent(Component1.class).data);
+        }
+        assertEquals(expectedOrder, context.commandOrder);
+    }
+
+    @Test
+    void testSequentialWithoutExecutor() {
+        List<Integer> expectedOrder = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expectedOrder.add(ecsWorld.createEntity(EntityIndex.E1.getId()).getIndex());
+        }
+        updateWorld(1, 2, 1);
+        assertEquals(expectedOrder, context.commandOrder);
+    }
+
+    public static class Context {
+        final List<Integer> commandOrder = new ArrayList<>();
+    }
+}
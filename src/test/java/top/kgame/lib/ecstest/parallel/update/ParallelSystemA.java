@@ -0,0 +1,18 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component1;
+
+/**
+ * 写入Component1
+ */
+@ComponentAccess(write = Component1.class)
+public class ParallelSystemA extends EcsOneComponentUpdateSystem<Component1> {
+
+    @Override
+    protected void update(EcsEntity entity, Component1 component) {
+        component.data += "a";
+    }
+}
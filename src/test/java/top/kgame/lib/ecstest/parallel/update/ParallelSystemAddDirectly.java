@@ -0,0 +1,29 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.command.EcsCommandAddComponent;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component5;
+import top.kgame.lib.ecstest.util.component.ComponentLexicographic;
+
+/**
+ * 与A、B同批次并行更新，Context要求时直接添加组件、向World添加延迟命令或设置单例
+ */
+@ComponentAccess(write = Component5.class)
+public class ParallelSystemAddDirectly extends EcsOneComponentUpdateSystem<ComponentLexicographic> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentLexicographic component) {
+        SystemParallelUpdateTest.Context context = getWorld().getContext();
+        if (context != null && context.addComponentDirectly) {
+            entity.addComponent(new Component5());
+        }
+        if (context != null && context.addWorldCommand) {
+            getWorld().addDelayCommand(new EcsCommandAddComponent(entity, new Component5()));
+        }
+        if (context != null && context.setSingleton) {
+            getWorld().setSingleton(new Component5());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.command.EcsCommandScope;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component4;
+
+/**
+ * 写入Component2，与A无冲突；通过延迟命令添加Component4
+ */
+@ComponentAccess(write = Component2.class)
+public class ParallelSystemB extends EcsOneComponentUpdateSystem<Component2> {
+
+    @Override
+    protected void update(EcsEntity entity, Component2 component) {
+        component.data += "b";
+        if (!entity.hasComponent(Component4.class)) {
+            addDelayAddComponent(entity, new Component4(), EcsCommandScope.SYSTEM);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsTwoComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component3;
+
+/**
+ * 读取Component1写入Component3，与ParallelSystemA冲突
+ */
+@ComponentAccess(write = Component3.class)
+public class ParallelSystemC extends EcsTwoComponentUpdateSystem<Component1, Component3> {
+
+    @Override
+    protected void update(EcsEntity entity, Component1 component1, Component3 component3) {
+        component3.data = component1.data;
+    }
+}
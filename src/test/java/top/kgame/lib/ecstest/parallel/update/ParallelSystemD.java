@@ -0,0 +1,20 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.After;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component4;
+
+/**
+ * 写入Component4，与ParallelSystemC读写不冲突，但声明了先后顺序
+ */
+@After(ParallelSystemC.class)
+@ComponentAccess(write = Component4.class)
+public class ParallelSystemD extends EcsOneComponentUpdateSystem<Component4> {
+
+    @Override
+    protected void update(EcsEntity entity, Component4 component) {
+        component.data += "d";
+    }
+}
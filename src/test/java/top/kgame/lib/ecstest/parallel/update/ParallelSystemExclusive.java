@@ -0,0 +1,15 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.Component2;
+
+/**
+ * 未声明读写，只能独占更新
+ */
+public class ParallelSystemExclusive extends EcsOneComponentUpdateSystem<Component2> {
+
+    @Override
+    protected void update(EcsEntity entity, Component2 component) {
+    }
+}
@@ -0,0 +1,151 @@
+package top.kgame.lib.ecstest.parallel.update;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsSystem;
+import top.kgame.lib.ecs.core.EcsSystemManager;
+import top.kgame.lib.ecs.core.SystemScheduler;
+import top.kgame.lib.ecs.exception.ParallelStructuralChangeException;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.component.Component4;
+import top.kgame.lib.ecstest.util.component.Component5;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EcsSystem 并行更新测试
+ * 验证批次划分遵循读写冲突和先后依赖，并行更新结果与依次更新一致
+ */
+class SystemParallelUpdateTest extends EcsTestBase {
+    private ForkJoinPool executor;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        executor = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testStages() {
+        EcsSystemManager systemManager = new EcsSystemManager(ecsWorld);
+        SystemScheduler scheduler = new SystemScheduler();
+        scheduler.addSystem(systemManager.createSystem(ParallelSystemA.class));
+        scheduler.addSystem(systemManager.createSystem(ParallelSystemB.class));
+        scheduler.addSystem(systemManager.createSystem(ParallelSystemC.class));
+        scheduler.addSystem(systemManager.createSystem(ParallelSystemD.class));
+        scheduler.addSystem(systemManager.createSystem(ParallelSystemExclusive.class));
+
+        List<EcsSystem[]> stages = scheduler.getStages();
+        assertEquals(4, stages.size());
+        // A、B 读写不冲突
+        assertEquals(2, stages.get(0).length);
+        assertInstanceOf(ParallelSystemA.class, stages.get(0)[0]);
+        assertInstanceOf(ParallelSystemB.class, stages.get(0)[1]);
+        // C 读取A，D 声明在C之后，未声明读写的System独占
+        assertInstanceOf(ParallelSystemC.class, stages.get(1)[0]);
+        assertInstanceOf(ParallelSystemD.class, stages.get(2)[0]);
+        assertInstanceOf(ParallelSystemExclusive.class, stages.get(3)[0]);
+        scheduler.clean();
+    }
+
+    @Test
+    void testParallelUpdate() {
+        ecsWorld.setParallelExecutor(executor);
+        EcsEntity[] entities = ecsWorld.createEntities(EntityIndex.E123.getId(), 64, null);
+
+        updateWorld(1, 2, DEFAULT_INTERVAL);
+        for (EcsEntity entity : entities) {
+            assertEquals("1a", entity.getComponent(Component1.class).data);
+            assertEquals("2b", entity.getComponent(Component2.class).data);
+            assertEquals("1a", entity.getComponent(Component3.class).data);
+            // 并行System的延迟命令在批次结束后执行，Component4 在同一帧内被后续System更新
+            assertEquals("4d", entity.getComponent(Component4.class).data);
+        }
+
+        updateWorld(2, 11, 1);
+        for (EcsEntity entity : entities) {
+            assertEquals("1" + "a".repeat(10), entity.getComponent(Component1.class).data);
+            assertEquals("2" + "b".repeat(10), entity.getComponent(Component2.class).data);
+            assertEquals("1" + "a".repeat(10), entity.getComponent(Component3.class).data);
+            assertEquals("4" + "d".repeat(10), entity.getComponent(Component4.class).data);
+        }
+    }
+
+    @Test
+    void testSequentialUpdateWithoutExecutor() {
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E123.getId());
+        updateWorld(1, 3, 1);
+
+        assertEquals("1aa", entity.getComponent(Component1.class).data);
+        assertEquals("1aa", entity.getComponent(Component3.class).data);
+        assertEquals("4dd", entity.getComponent(Component4.class).data);
+    }
+
+    @Test
+    void testStructuralChangeRejected() {
+        ecsWorld.setParallelExecutor(executor);
+        Context context = new Context();
+        context.addComponentDirectly = true;
+        ecsWorld.setContext(context);
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E123.getId());
+
+        // 并行批次中直接添加组件会抛出异常，需改用延迟命令
+        assertThrows(ParallelStructuralChangeException.class, () -> ecsWorld.update(1));
+        assertFalse(entity.hasComponent(Component5.class));
+    }
+
+    @Test
+    void testWorldDelayCommandRejected() {
+        ecsWorld.setParallelExecutor(executor);
+        Context context = new Context();
+        context.addWorldCommand = true;
+        ecsWorld.setContext(context);
+        EcsEntity entity = ecsWorld.createEntity(EntityIndex.E123.getId());
+
+        // World的命令缓冲区不是线程安全的，并行批次中需改用System的WORLD作用域缓冲区
+        assertThrows(ParallelStructuralChangeException.class, () -> ecsWorld.update(1));
+        assertFalse(entity.hasComponent(Component5.class));
+    }
+
+    @Test
+    void testSingletonChangeRejected() {
+        ecsWorld.setParallelExecutor(executor);
+        Context context = new Context();
+        context.setSingleton = true;
+        ecsWorld.setContext(context);
+        ecsWorld.createEntity(EntityIndex.E123.getId());
+
+        // 并行System读取单例时设置单例可能使数组扩容
+        assertThrows(ParallelStructuralChangeException.class, () -> ecsWorld.update(1));
+        assertNull(ecsWorld.getSingleton(Component5.class));
+    }
+
+    public static class Context {
+        boolean addComponentDirectly;
+        boolean addWorldCommand;
+        boolean setSingleton;
+    }
+}
@@ -15,6 +15,7 @@ import top.kgame.lib.ecstest.util.component.Component3;
 import top.kgame.lib.ecstest.util.entity.EntityIndex;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -224,15 +225,16 @@ public class EntityQueryPerformanceTest {
         
         EntityQuery query = findOrCreateEntityQuery(filter);
         
+        List<Component1> components = new ArrayList<>();
         // 预热
         for (int i = 0; i < 10; i++) {
-            query.getComponentDataList(Component1.class);
+            query.getComponentDataList(Component1.class, components);
         }
         
         // 性能测试
         long startTime = System.nanoTime();
         for (int i = 0; i < iterations; i++) {
-            List<Component1> components = query.getComponentDataList(Component1.class);
+            query.getComponentDataList(Component1.class, components);
             // 确保结果被使用，避免被优化掉
             if (components.size() != entityCount) {
                 throw new AssertionError("组件数量不匹配");
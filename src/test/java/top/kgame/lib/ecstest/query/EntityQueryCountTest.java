@@ -0,0 +1,80 @@
+package top.kgame.lib.ecstest.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.ComponentFilter;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQuery;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntityQuery 实体数量缓存测试
+ * 验证原型实体数量变化后查询的数量同步更新
+ */
+class EntityQueryCountTest extends EcsTestBase {
+    private Method findOrCreateEntityQueryMethod;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        try {
+            findOrCreateEntityQueryMethod = EcsWorld.class.getDeclaredMethod("findOrCreateEntityQuery", ComponentFilter.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        findOrCreateEntityQueryMethod.setAccessible(true);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private EntityQuery findOrCreateEntityQuery(ComponentFilterParam<?>... params) throws Exception {
+        ComponentFilter filter = ComponentFilter.generate(ecsWorld, List.of(params));
+        return (EntityQuery) findOrCreateEntityQueryMethod.invoke(ecsWorld, filter);
+    }
+
+    @Test
+    void testCountTracksStructuralChanges() throws Exception {
+        // 查询创建前已存在的实体也要计入
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        EntityQuery query = findOrCreateEntityQuery(
+                ComponentFilterParam.require(Component2.class),
+                ComponentFilterParam.exclude(Component3.class));
+        assertEquals(1, query.entityCount());
+        assertFalse(query.isEmpty());
+
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        ecsWorld.createEntity(EntityIndex.E123.getId());
+        assertEquals(2, query.entityCount());
+
+        entity1.addComponent(new Component3());
+        assertEquals(1, query.entityCount());
+
+        entity2.removeComponent(Component2.class);
+        assertEquals(0, query.entityCount());
+        assertTrue(query.isEmpty());
+
+        entity1.removeComponent(Component3.class);
+        assertEquals(1, query.entityCount());
+
+        ecsWorld.requestDestroyEntity(entity1);
+        ecsWorld.update(0);
+        assertTrue(query.isEmpty());
+    }
+}
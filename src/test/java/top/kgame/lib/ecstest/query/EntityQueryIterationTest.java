@@ -0,0 +1,120 @@
+package top.kgame.lib.ecstest.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.ComponentFilter;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQuery;
+import top.kgame.lib.ecs.core.EntityQueryBuffer;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntityQuery 无中间列表遍历测试
+ */
+class EntityQueryIterationTest extends EcsTestBase {
+    private EntityQuery query;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        try {
+            Method method = EcsWorld.class.getDeclaredMethod("findOrCreateEntityQuery", ComponentFilter.class);
+            method.setAccessible(true);
+            ComponentFilter filter = ComponentFilter.generate(ecsWorld, List.of(ComponentFilterParam.require(Component1.class)));
+            query = (EntityQuery) method.invoke(ecsWorld, filter);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testForEachVisitsEachEntityOnceWhileMigrating() {
+        Set<EcsEntity> created = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            created.add(ecsWorld.createEntity(EntityIndex.E1.getId()));
+            created.add(ecsWorld.createEntity(EntityIndex.E12.getId()));
+        }
+
+        // 遍历中添加组件会把实体迁移到同样匹配的原型，不应重复访问
+        List<EcsEntity> visited = new ArrayList<>();
+        query.forEach(entity -> {
+            visited.add(entity);
+            entity.addComponent(new Component3());
+        });
+
+        assertEquals(created.size(), visited.size());
+        assertEquals(created, new HashSet<>(visited));
+    }
+
+    @Test
+    void testNestedForEach() {
+        for (int i = 0; i < 5; i++) {
+            ecsWorld.createEntity(EntityIndex.E1.getId());
+        }
+        int[] pairCount = {0};
+        query.forEach(outer -> query.forEach(inner -> pairCount[0]++));
+        assertEquals(25, pairCount[0]);
+    }
+
+    @Test
+    void testFillSnapshotsComponentColumn() {
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E123.getId());
+        EntityQueryBuffer buffer = new EntityQueryBuffer(
+                ecsWorld.getComponentIndex(Component1.class),
+                ecsWorld.getComponentIndex(Component3.class));
+
+        int size = query.fill(buffer);
+        assertEquals(2, size);
+        for (int i = 0; i < size; i++) {
+            EcsEntity entity = buffer.getEntities()[i];
+            assertSame(entity.getComponent(Component1.class), buffer.getColumn(0)[i]);
+            assertSame(entity.getComponent(Component3.class), buffer.getColumn(1)[i]);
+        }
+        assertNull(entity1.getComponent(Component3.class));
+        assertNotNull(entity2.getComponent(Component3.class));
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertNull(buffer.getEntities()[0]);
+    }
+
+    @Test
+    void testComponentDataListReused() {
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsEntity entity2 = ecsWorld.createEntity(EntityIndex.E12.getId());
+        List<Component1> components = new ArrayList<>();
+
+        assertEquals(2, query.getComponentDataList(Component1.class, components));
+        assertEquals(Set.of(entity1.getComponent(Component1.class), entity2.getComponent(Component1.class)),
+                new HashSet<>(components));
+
+        // 再次填充时先清空上次的结果
+        ecsWorld.createEntity(EntityIndex.E1.getId());
+        assertEquals(3, query.getComponentDataList(Component1.class, components));
+        assertEquals(3, components.size());
+        assertEquals(components, query.getComponentDataList(Component1.class));
+    }
+}
@@ -0,0 +1,91 @@
+package top.kgame.lib.ecstest.query;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.ComponentFilter;
+import top.kgame.lib.ecs.core.ComponentFilterParam;
+import top.kgame.lib.ecs.core.EntityQuery;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+import top.kgame.lib.ecstest.util.component.Component3;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EntityQuery 索引查找测试
+ * 验证相同过滤条件复用查询，以及新原型只加入能匹配的查询
+ */
+class EntityQueryLookupTest extends EcsTestBase {
+    private Method findOrCreateEntityQueryMethod;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        try {
+            findOrCreateEntityQueryMethod = EcsWorld.class.getDeclaredMethod("findOrCreateEntityQuery", ComponentFilter.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+        findOrCreateEntityQueryMethod.setAccessible(true);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private EntityQuery findOrCreateEntityQuery(ComponentFilterParam<?>... params) throws Exception {
+        ComponentFilter filter = ComponentFilter.generate(ecsWorld, List.of(params));
+        return (EntityQuery) findOrCreateEntityQueryMethod.invoke(ecsWorld, filter);
+    }
+
+    @Test
+    void testSameFilterReturnsSameQuery() throws Exception {
+        EntityQuery query1 = findOrCreateEntityQuery(
+                ComponentFilterParam.require(Component1.class),
+                ComponentFilterParam.require(Component2.class));
+        EntityQuery query2 = findOrCreateEntityQuery(
+                ComponentFilterParam.require(Component2.class),
+                ComponentFilterParam.require(Component1.class));
+        EntityQuery query3 = findOrCreateEntityQuery(
+                ComponentFilterParam.require(Component1.class));
+        assertSame(query1, query2);
+        assertNotSame(query1, query3);
+    }
+
+    @Test
+    void testNewArchetypeAddedToMatchingQueries() throws Exception {
+        EntityQuery requireQuery = findOrCreateEntityQuery(
+                ComponentFilterParam.require(Component2.class),
+                ComponentFilterParam.require(Component3.class));
+        EntityQuery anyQuery = findOrCreateEntityQuery(
+                ComponentFilterParam.anyOf(Component2.class),
+                ComponentFilterParam.anyOf(Component3.class));
+        EntityQuery excludeQuery = findOrCreateEntityQuery(
+                ComponentFilterParam.exclude(Component3.class));
+
+        // 查询创建之后才出现的原型
+        EcsEntity entity1 = ecsWorld.createEntity(EntityIndex.E1.getId());
+        EcsEntity entity23 = ecsWorld.createEntity(EntityIndex.E23.getId());
+        entity1.addComponent(new Component3());
+
+        assertEquals(1, requireQuery.entityCount());
+        assertSame(entity23, requireQuery.getEntityList().get(0));
+        assertEquals(2, anyQuery.entityCount());
+        assertEquals(0, excludeQuery.entityCount());
+
+        entity1.removeComponent(Component3.class);
+        assertEquals(1, excludeQuery.entityCount());
+    }
+}
@@ -0,0 +1,10 @@
+package top.kgame.lib.ecstest.runtime;
+
+/**
+ * 控制 {@link RuntimeLoadSystem} 每次更新的耗时和是否抛出异常
+ */
+public class RuntimeContext {
+    volatile long costMillis;
+    volatile boolean fail;
+    volatile Thread updateThread;
+}
@@ -0,0 +1,27 @@
+package top.kgame.lib.ecstest.runtime;
+
+import top.kgame.lib.ecs.extensions.system.EcsStandaloneUpdateSystem;
+
+/**
+ * 按 {@link RuntimeContext} 模拟更新耗时，记录执行更新的线程
+ */
+public class RuntimeLoadSystem extends EcsStandaloneUpdateSystem {
+    @Override
+    protected void update() {
+        RuntimeContext context = getWorld().getContext();
+        if (null == context) {
+            return;
+        }
+        context.updateThread = Thread.currentThread();
+        if (context.fail) {
+            throw new IllegalStateException("world update failed");
+        }
+        if (context.costMillis > 0) {
+            try {
+                Thread.sleep(context.costMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
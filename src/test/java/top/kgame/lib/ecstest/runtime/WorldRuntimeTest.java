@@ -0,0 +1,168 @@
+package top.kgame.lib.ecstest.runtime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.runtime.WorldHandle;
+import top.kgame.lib.ecs.runtime.WorldRuntime;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WorldRuntime 测试
+ * 验证多个EcsWorld分配到不同工作线程并按间隔更新，按更新耗时迁移，移除、更新异常和关闭时EcsWorld被关闭
+ */
+class WorldRuntimeTest {
+    private static final String PACKAGE_NAME = "top.kgame.lib.ecs.nonexistent";
+    private static final String LOAD_PACKAGE_NAME = "top.kgame.lib.ecstest.runtime";
+    private WorldRuntime runtime;
+
+    @BeforeEach
+    void setUp() {
+        runtime = new WorldRuntime(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        runtime.shutdown();
+    }
+
+    @Test
+    void testWorldsDistributedAndUpdated() {
+        WorldHandle[] handles = new WorldHandle[4];
+        int[] workerWorldCount = new int[runtime.getWorkerCount()];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = runtime.addWorld(EcsWorld.generateInstance(PACKAGE_NAME), 5);
+            workerWorldCount[handles[i].getWorkerIndex()]++;
+        }
+        assertEquals(2, workerWorldCount[0]);
+        assertEquals(2, workerWorldCount[1]);
+
+        runtime.start();
+        for (WorldHandle handle : handles) {
+            waitUntil(() -> handle.getTickCount() >= 5);
+            assertTrue(handle.getAverageTickCost() >= 0);
+            assertTrue(handle.getLag() >= 0);
+        }
+
+        runtime.shutdown();
+        for (WorldHandle handle : handles) {
+            assertTrue(handle.isRemoved());
+            assertTrue(handle.getWorld().isClosed());
+        }
+        assertTrue(runtime.getWorlds().isEmpty());
+    }
+
+    @Test
+    void testRemoveWorld() {
+        WorldHandle handle = runtime.addWorld(EcsWorld.generateInstance(PACKAGE_NAME), 5);
+        WorldHandle other = runtime.addWorld(EcsWorld.generateInstance(PACKAGE_NAME), 5);
+        runtime.start();
+        waitUntil(() -> handle.getTickCount() >= 2);
+
+        runtime.removeWorld(handle);
+        assertTrue(handle.isRemoved());
+        waitUntil(() -> handle.getWorld().isClosed());
+        long tickCount = handle.getTickCount();
+        long otherTickCount = other.getTickCount();
+        waitUntil(() -> other.getTickCount() >= otherTickCount + 3);
+        assertEquals(tickCount, handle.getTickCount());
+        assertEquals(1, runtime.getWorlds().size());
+    }
+
+    @Test
+    void testRebalanceWithoutLoad() {
+        runtime.addWorld(EcsWorld.generateInstance(PACKAGE_NAME), 5);
+        runtime.addWorld(EcsWorld.generateInstance(PACKAGE_NAME), 5);
+        // 没有耗时统计时负载相同，不迁移
+        assertFalse(runtime.rebalance());
+        assertEquals(0.0, runtime.getWorkerLoad(0));
+        assertEquals(0.0, runtime.getWorkerLoad(1));
+    }
+
+    @Test
+    void testRebalanceByTickCost() {
+        WorldRuntime manual = new WorldRuntime(2, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }, 0);
+        try {
+            WorldHandle[] handles = new WorldHandle[4];
+            RuntimeContext[] contexts = new RuntimeContext[handles.length];
+            for (int i = 0; i < handles.length; i++) {
+                EcsWorld world = EcsWorld.generateInstance(LOAD_PACKAGE_NAME);
+                contexts[i] = new RuntimeContext();
+                world.setContext(contexts[i]);
+                handles[i] = manual.addWorld(world, 10);
+                // 工作线程0上的EcsWorld每次更新耗时4ms，工作线程1上的几乎不耗时
+                if (handles[i].getWorkerIndex() == 0) {
+                    contexts[i].costMillis = 4;
+                }
+            }
+            manual.start();
+            for (WorldHandle handle : handles) {
+                waitUntil(() -> handle.getTickCount() >= 5);
+            }
+            assertTrue(manual.getWorkerLoad(0) > manual.getWorkerLoad(1));
+
+            assertTrue(manual.rebalance());
+            int moved = -1;
+            for (int i = 0; i < handles.length; i++) {
+                if (contexts[i].costMillis > 0 && handles[i].getWorkerIndex() == 1) {
+                    moved = i;
+                }
+            }
+            assertTrue(moved >= 0);
+            Thread oldThread = contexts[moved].updateThread;
+            RuntimeContext movedContext = contexts[moved];
+            waitUntil(() -> movedContext.updateThread != oldThread);
+            long tickCount = handles[moved].getTickCount();
+            WorldHandle movedHandle = handles[moved];
+            waitUntil(() -> movedHandle.getTickCount() >= tickCount + 3);
+            // 迁移后两个工作线程各有一个耗时的EcsWorld
+            int[] heavyCount = new int[manual.getWorkerCount()];
+            for (int i = 0; i < handles.length; i++) {
+                if (contexts[i].costMillis > 0) {
+                    heavyCount[handles[i].getWorkerIndex()]++;
+                }
+            }
+            assertArrayEquals(new int[]{1, 1}, heavyCount);
+        } finally {
+            manual.shutdown();
+        }
+    }
+
+    @Test
+    void testFailedWorldClosed() {
+        EcsWorld world = EcsWorld.generateInstance(LOAD_PACKAGE_NAME);
+        RuntimeContext context = new RuntimeContext();
+        world.setContext(context);
+        WorldHandle handle = runtime.addWorld(world, 5);
+        runtime.start();
+        waitUntil(() -> handle.getTickCount() >= 2);
+
+        context.fail = true;
+        waitUntil(handle::isRemoved);
+        waitUntil(world::isClosed);
+        assertTrue(runtime.getWorlds().isEmpty());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not reached in time");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("interrupted");
+            }
+        }
+    }
+}
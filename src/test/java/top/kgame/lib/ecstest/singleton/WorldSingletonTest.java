@@ -0,0 +1,81 @@
+package top.kgame.lib.ecstest.singleton;
+
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecstest.component.pool.PooledComponent;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.component.Component1;
+import top.kgame.lib.ecstest.util.component.Component2;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * World单例组件测试
+ * 验证单例按类型设置、替换、移除，不影响实体和查询；设置、移除和标记修改时记录写入版本
+ */
+class WorldSingletonTest extends EcsTestBase {
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testSetGetRemove() {
+        Component1 first = new Component1();
+        Component1 second = new Component1();
+        assertNull(ecsWorld.getSingleton(Component1.class));
+        assertFalse(ecsWorld.hasSingleton(Component1.class));
+
+        assertNull(ecsWorld.setSingleton(first));
+        assertSame(first, ecsWorld.getSingleton(Component1.class));
+        assertSame(first, ecsWorld.setSingleton(second));
+        int index = ecsWorld.getComponentIndex(Component1.class);
+        assertSame(second, ecsWorld.getSingleton(index));
+        assertNull(ecsWorld.getSingleton(Component2.class));
+        assertTrue(ecsWorld.getAllEntity().isEmpty());
+
+        assertSame(second, ecsWorld.removeSingleton(Component1.class));
+        assertNull(ecsWorld.getSingleton(Component1.class));
+        assertNull(ecsWorld.removeSingleton(Component1.class));
+    }
+
+    @Test
+    void testChangeVersion() {
+        int version = ecsWorld.getChangeVersion();
+        ecsWorld.advanceChangeVersion();
+        Component1 singleton = new Component1();
+        ecsWorld.setSingleton(singleton);
+        assertTrue(ecsWorld.isSingletonChanged(Component1.class, version));
+        assertFalse(ecsWorld.isSingletonChanged(Component2.class, version));
+
+        version = ecsWorld.getChangeVersion();
+        ecsWorld.advanceChangeVersion();
+        assertFalse(ecsWorld.isSingletonChanged(Component1.class, version));
+        singleton.data = "changed";
+        ecsWorld.markSingletonChanged(Component1.class);
+        assertTrue(ecsWorld.isSingletonChanged(Component1.class, version));
+
+        version = ecsWorld.getChangeVersion();
+        ecsWorld.advanceChangeVersion();
+        ecsWorld.removeSingleton(Component1.class);
+        assertTrue(ecsWorld.isSingletonChanged(Component1.class, version));
+    }
+
+    @Test
+    void testUnregisteredComponent() {
+        // 本测试包中的组件类（包括匿名类）都会被扫描注册，改用其他测试包中的组件
+        assertThrows(IllegalArgumentException.class, () -> ecsWorld.setSingleton(new PooledComponent()));
+        assertNull(ecsWorld.getSingleton(-1));
+    }
+
+    @Test
+    void testClearedOnClose() {
+        ecsWorld.setSingleton(new Component2());
+        ecsWorld.update(1);
+        ecsWorld.close();
+        assertNull(ecsWorld.getSingleton(Component2.class));
+    }
+}
@@ -0,0 +1,298 @@
+package top.kgame.lib.ecstest.snapshot.checkpoint;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.core.EcsEntityManager;
+import top.kgame.lib.ecs.exception.SnapshotFormatException;
+import top.kgame.lib.ecs.snapshot.ComponentCodec;
+import top.kgame.lib.ecs.extensions.component.InitializedComponent;
+import top.kgame.lib.ecs.snapshot.SnapshotSchema;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.codec.ComponentNameCodec;
+import top.kgame.lib.ecstest.util.component.ComponentHealth;
+import top.kgame.lib.ecstest.util.component.ComponentName;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 世界存档测试
+ * 验证存档恢复后实体ID、类型、组件和后续分配的实体ID与原World一致，损坏的存档被拒绝且World保持读取前的状态
+ */
+class WorldCheckpointTest extends EcsTestBase {
+    private static final int SNAPSHOT = EntityIndex.SNAPSHOT.getId();
+    // 文件头之后的槽位数量
+    private static final int SLOT_COUNT_OFFSET = 12;
+    private Path path;
+    private EcsWorld target;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        try {
+            path = Files.createTempFile("world", ".ckpt");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        target = EcsWorld.generateInstance(this.getClass().getPackage().getName(), "top.kgame.lib.ecstest.util");
+    }
+
+    @AfterEach
+    void closeTarget() throws IOException {
+        target.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private static SnapshotSchema schema(EcsWorld world) {
+        return SnapshotSchema.forCheckpoint(world).register(ComponentName.class, new ComponentNameCodec());
+    }
+
+    private EcsEntity[] createUnits(int count) {
+        return ecsWorld.createEntities(SNAPSHOT, count, (entity, i) -> {
+            entity.getComponent(ComponentPosition.class).x = i;
+            entity.getComponent(ComponentPosition.class).y = -i;
+            entity.getComponent(ComponentHealth.class).hp = 0.5f * i;
+            entity.getComponent(ComponentName.class).name = "unit" + i;
+            if (i % 3 == 0) {
+                entity.addComponent(new ComponentTag());
+            }
+        });
+    }
+
+    private void assertRestored(EcsEntity[] entities) {
+        assertEquals(entities.length, target.getAllEntity().size());
+        for (int i = 0; i < entities.length; i++) {
+            EcsEntity restored = target.getEntity(entities[i].getIndex());
+            assertNotNull(restored);
+            assertEquals(SNAPSHOT, restored.getType());
+            assertEquals(i, restored.getComponent(ComponentPosition.class).x);
+            assertEquals(-i, restored.getComponent(ComponentPosition.class).y);
+            assertEquals(0.5f * i, restored.getComponent(ComponentHealth.class).hp);
+            assertEquals("unit" + i, restored.getComponent(ComponentName.class).name);
+            assertEquals(i % 3 == 0, restored.hasComponent(ComponentTag.class));
+        }
+    }
+
+    private void assertRejected(byte[] content) throws IOException {
+        Files.write(path, content);
+        assertThrows(SnapshotFormatException.class, () -> target.loadCheckpoint(schema(target), path));
+        assertTrue(target.getAllEntity().isEmpty());
+        assertNull(target.getSingleton(ComponentHealth.class));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        EcsEntity[] entities = createUnits(1000);
+        ComponentHealth global = new ComponentHealth();
+        global.hp = 99f;
+        ecsWorld.setSingleton(global);
+
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        assertEquals(entities.length, target.loadCheckpoint(schema(target), path));
+        assertRestored(entities);
+        assertEquals(99f, target.getSingleton(ComponentHealth.class).hp);
+
+        // 恢复后的实体可以正常迁移原型
+        EcsEntity restored = target.getEntity(entities[1].getIndex());
+        restored.addComponent(new ComponentTag());
+        assertTrue(restored.hasComponent(ComponentTag.class));
+        assertEquals(1, restored.getComponent(ComponentPosition.class).x);
+    }
+
+    @Test
+    void testEntityIdAllocationContinues() throws IOException {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 10, null);
+        ecsWorld.destroyEntities(new int[]{entities[2].getIndex(), entities[5].getIndex()});
+        // 请求销毁但尚未移除的实体不写入存档
+        ecsWorld.requestDestroyEntity(entities[7]);
+
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        target.loadCheckpoint(schema(target), path);
+        updateWorld(1, 2, 1);
+
+        assertEquals(7, target.getAllEntity().size());
+        assertNull(target.getEntity(entities[2].getIndex()));
+        assertNull(target.getEntity(entities[7].getIndex()));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(ecsWorld.createEntity(SNAPSHOT).getIndex(), target.createEntity(SNAPSHOT).getIndex());
+        }
+    }
+
+    @Test
+    void testPrivateTagComponentRestored() throws IOException {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 3, null);
+        entities[1].addComponent(InitializedComponent.generate());
+
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        assertEquals(entities.length, target.loadCheckpoint(schema(target), path));
+        for (int i = 0; i < entities.length; i++) {
+            assertEquals(i == 1, target.getEntity(entities[i].getIndex()).hasComponent(InitializedComponent.class));
+        }
+    }
+
+    @Test
+    void testComponentWithoutCodecRejected() {
+        ecsWorld.createEntity(SNAPSHOT);
+        assertThrows(SnapshotFormatException.class, () -> ecsWorld.saveCheckpoint(SnapshotSchema.forCheckpoint(ecsWorld), path));
+    }
+
+    /**
+     * 编译同名组件的一个版本，用独立的类加载器创建只包含该版本的World，模拟不同构建之间读写存档
+     */
+    private static EcsWorld layoutWorld(String fields) throws IOException {
+        Path root = Files.createTempDirectory("layout");
+        Path source = root.resolve("top/kgame/lib/ecstest/snapshot/layout/LayoutComponent.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "package top.kgame.lib.ecstest.snapshot.layout;"
+                + "public class LayoutComponent implements top.kgame.lib.ecs.EcsComponent {" + fields + "}", StandardCharsets.UTF_8);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        String classPath = Path.of(EcsComponent.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toString();
+        assertEquals(0, compiler.run(null, null, null, "-cp", classPath, "-d", root.toString(), source.toString()));
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(new URLClassLoader(new URL[]{root.toUri().toURL()}, WorldCheckpointTest.class.getClassLoader()));
+        try {
+            return EcsWorld.generateInstance("top.kgame.lib.ecstest.snapshot.layout", "top.kgame.lib.ecstest.util");
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    @Test
+    void testChangedFieldLayoutRejected() throws IOException {
+        EcsWorld writer = layoutWorld("public int hp; public float speed;");
+        EcsWorld reordered = layoutWorld("public float speed; public int hp;");
+        EcsWorld retyped = layoutWorld("public long hp; public float speed;");
+        try {
+            writer.createEntity(SNAPSHOT);
+            writer.saveCheckpoint(schema(writer), path);
+            assertThrows(SnapshotFormatException.class, () -> reordered.loadCheckpoint(schema(reordered), path));
+            assertThrows(SnapshotFormatException.class, () -> retyped.loadCheckpoint(schema(retyped), path));
+            assertTrue(reordered.getAllEntity().isEmpty());
+        } finally {
+            writer.close();
+            reordered.close();
+            retyped.close();
+        }
+    }
+
+    @Test
+    void testChangedCodecVersionRejected() throws IOException {
+        ecsWorld.createEntity(SNAPSHOT);
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+
+        ComponentCodec<ComponentName> upgraded = new ComponentNameCodec() {
+            @Override
+            public int version() {
+                return 1;
+            }
+        };
+        SnapshotSchema schema = SnapshotSchema.forCheckpoint(target).register(ComponentName.class, upgraded);
+        assertThrows(SnapshotFormatException.class, () -> target.loadCheckpoint(schema, path));
+        assertTrue(target.getAllEntity().isEmpty());
+    }
+
+    @Test
+    void testLoadRequiresEmptyWorld() throws IOException {
+        ecsWorld.createEntity(SNAPSHOT);
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+
+        target.createEntity(SNAPSHOT);
+        assertThrows(IllegalStateException.class, () -> target.loadCheckpoint(schema(target), path));
+    }
+
+    @Test
+    void testTruncatedCheckpointRejected() throws IOException {
+        EcsEntity[] entities = createUnits(300);
+        ecsWorld.setSingleton(new ComponentHealth());
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        byte[] content = Files.readAllBytes(path);
+
+        for (int length : new int[]{8, SLOT_COUNT_OFFSET + 2, content.length / 2, content.length - 1}) {
+            assertRejected(Arrays.copyOf(content, length));
+        }
+
+        // 读取失败后World可以继续读取完整的存档
+        Files.write(path, content);
+        assertEquals(entities.length, target.loadCheckpoint(schema(target), path));
+        assertRestored(entities);
+        assertEquals(ecsWorld.createEntity(SNAPSHOT).getIndex(), target.createEntity(SNAPSHOT).getIndex());
+    }
+
+    @Test
+    void testCorruptedCountRejected() throws IOException {
+        createUnits(10);
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        byte[] content = Files.readAllBytes(path);
+
+        for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+            byte[] corrupted = content.clone();
+            ByteBuffer.wrap(corrupted).putInt(SLOT_COUNT_OFFSET, count);
+            assertRejected(corrupted);
+        }
+    }
+
+    @Test
+    void testSlotLimitExceededRejected() throws IOException {
+        createUnits(10);
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        byte[] content = Files.readAllBytes(path);
+
+        // 槽位数量超过上限，之后的代数、空闲槽位、单例和原型数量都为0
+        int slotCount = EcsEntityManager.MAX_ENTITY_SLOT_COUNT + 1;
+        ByteBuffer oversized = ByteBuffer.allocate(SLOT_COUNT_OFFSET + Integer.BYTES * (slotCount + 4));
+        oversized.put(content, 0, SLOT_COUNT_OFFSET).putInt(slotCount);
+        assertRejected(oversized.array());
+
+        // 1号槽位的代数超出范围
+        for (int generation : new int[]{-1, EcsEntityManager.MAX_ENTITY_GENERATION + 1}) {
+            byte[] corrupted = content.clone();
+            ByteBuffer.wrap(corrupted).putInt(SLOT_COUNT_OFFSET + Integer.BYTES * 2, generation);
+            assertRejected(corrupted);
+        }
+    }
+
+    @Test
+    void testInvalidEntityIdRejected() throws IOException {
+        ecsWorld.createEntities(SNAPSHOT, 10, null);
+        ecsWorld.saveCheckpoint(schema(ecsWorld), path);
+        byte[] content = Files.readAllBytes(path);
+
+        // 定位唯一原型的第一个实体ID：槽位、空闲槽位、单例数量、原型数量、组件掩码(组件少于64个时为一个long)、实体数量
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int position = SLOT_COUNT_OFFSET;
+        position += Integer.BYTES + buffer.getInt(position) * Integer.BYTES;
+        position += Integer.BYTES + buffer.getInt(position) * Integer.BYTES;
+        position += Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+        // 第0个槽位保留，不属于任何实体
+        buffer.putInt(position, 0);
+        assertRejected(content);
+    }
+}
@@ -0,0 +1,5 @@
+package top.kgame.lib.ecstest.snapshot.replication;
+
+public class ComponentArmor extends StatBase {
+    public int bonus;
+}
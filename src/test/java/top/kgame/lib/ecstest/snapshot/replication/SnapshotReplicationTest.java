@@ -0,0 +1,216 @@
+package top.kgame.lib.ecstest.snapshot.replication;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.EcsWorld;
+import top.kgame.lib.ecs.exception.SnapshotFormatException;
+import top.kgame.lib.ecs.snapshot.SnapshotDecoder;
+import top.kgame.lib.ecs.snapshot.SnapshotEncoder;
+import top.kgame.lib.ecs.snapshot.SnapshotSchema;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.codec.ComponentNameCodec;
+import top.kgame.lib.ecstest.util.component.ComponentHealth;
+import top.kgame.lib.ecstest.util.component.ComponentName;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 世界快照编码和增量同步测试
+ * 验证完整帧和增量帧解码到另一个EcsWorld后实体和World单例的状态一致
+ */
+class SnapshotReplicationTest extends EcsTestBase {
+    private static final int SNAPSHOT = EntityIndex.SNAPSHOT.getId();
+    private EcsWorld client;
+    private SnapshotEncoder encoder;
+    private SnapshotDecoder decoder;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        client = EcsWorld.generateInstance(this.getClass().getPackage().getName(), "top.kgame.lib.ecstest.util");
+        encoder = new SnapshotEncoder(ecsWorld, SnapshotSchema.of(ecsWorld).register(ComponentName.class, new ComponentNameCodec()));
+        decoder = new SnapshotDecoder(client, SnapshotSchema.of(client).register(ComponentName.class, new ComponentNameCodec()));
+    }
+
+    @AfterEach
+    void closeClient() {
+        client.close();
+    }
+
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    @Test
+    void testFullFrame() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 3, (entity, i) -> {
+            entity.getComponent(ComponentPosition.class).x = i;
+            entity.getComponent(ComponentPosition.class).y = -i;
+            entity.getComponent(ComponentHealth.class).hp = 10f * i;
+            entity.getComponent(ComponentName.class).name = "unit" + i;
+        });
+        entities[1].addComponent(new ComponentTag());
+
+        assertTrue(decoder.apply(encoder.encodeFull()));
+        assertEquals(3, decoder.getEntityCount());
+        for (int i = 0; i < entities.length; i++) {
+            EcsEntity replica = decoder.getEntity(entities[i].getIndex());
+            assertNotNull(replica);
+            assertEquals(i, replica.getComponent(ComponentPosition.class).x);
+            assertEquals(-i, replica.getComponent(ComponentPosition.class).y);
+            assertEquals(10f * i, replica.getComponent(ComponentHealth.class).hp);
+            assertEquals("unit" + i, replica.getComponent(ComponentName.class).name);
+            assertEquals(i == 1, replica.hasComponent(ComponentTag.class));
+        }
+    }
+
+    @Test
+    void testInheritedFieldsReplicated() {
+        EcsEntity entity = ecsWorld.createEntity(SNAPSHOT);
+        ComponentArmor armor = new ComponentArmor();
+        armor.base = 7;
+        armor.scale = 1.5f;
+        armor.bonus = 3;
+        entity.addComponent(armor);
+
+        assertTrue(decoder.apply(encoder.encodeFull()));
+        ComponentArmor replica = decoder.getEntity(entity.getIndex()).getComponent(ComponentArmor.class);
+        assertEquals(7, replica.base);
+        assertEquals(1.5f, replica.scale);
+        assertEquals(3, replica.bonus);
+    }
+
+    @Test
+    void testDeltaOnlyContainsChanges() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 500, null);
+        ByteBuffer full = encoder.encodeFull();
+        int fullSize = full.remaining();
+        assertTrue(decoder.apply(full));
+        encoder.acknowledge(decoder.getLastFrameId());
+
+        EcsEntity moved = entities[400];
+        moved.getComponent(ComponentPosition.class).x = 42;
+        moved.markChanged(ComponentPosition.class);
+        ByteBuffer delta = encoder.encodeDelta(decoder.getLastFrameId());
+        assertTrue(delta.remaining() < fullSize / 2);
+        assertTrue(decoder.apply(delta));
+        assertEquals(42, decoder.getEntity(moved.getIndex()).getComponent(ComponentPosition.class).x);
+
+        // 没有变化时增量帧不包含实体
+        encoder.acknowledge(decoder.getLastFrameId());
+        ByteBuffer empty = encoder.encodeDelta(decoder.getLastFrameId());
+        assertEquals(1 + 4 + 4 + 4 + 8 + 4 + 4 + 4, empty.remaining());
+        assertTrue(decoder.apply(empty));
+    }
+
+    @Test
+    void testSingletonsReplicated() {
+        ComponentHealth clock = new ComponentHealth();
+        clock.hp = 50f;
+        ecsWorld.setSingleton(clock);
+        // 完整帧中不存在的同步单例在接收端被移除
+        client.setSingleton(new ComponentPosition());
+        assertTrue(decoder.apply(encoder.encodeFull()));
+        assertEquals(50f, client.getSingleton(ComponentHealth.class).hp);
+        assertNull(client.getSingleton(ComponentPosition.class));
+        encoder.acknowledge(decoder.getLastFrameId());
+
+        clock.hp = 20f;
+        ecsWorld.markSingletonChanged(ComponentHealth.class);
+        ecsWorld.setSingleton(new ComponentTag());
+        assertTrue(decoder.apply(encoder.encodeDelta(decoder.getLastFrameId())));
+        assertEquals(20f, client.getSingleton(ComponentHealth.class).hp);
+        assertTrue(client.hasSingleton(ComponentTag.class));
+        encoder.acknowledge(decoder.getLastFrameId());
+
+        ecsWorld.removeSingleton(ComponentHealth.class);
+        assertTrue(decoder.apply(encoder.encodeDelta(decoder.getLastFrameId())));
+        assertNull(client.getSingleton(ComponentHealth.class));
+        assertTrue(client.hasSingleton(ComponentTag.class));
+    }
+
+    @Test
+    void testStructuralChangesReplicated() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 3, null);
+        decoder.apply(encoder.encodeFull());
+        encoder.acknowledge(decoder.getLastFrameId());
+        EcsEntity destroyedReplica = decoder.getEntity(entities[0].getIndex());
+
+        ecsWorld.requestDestroyEntity(entities[0]);
+        updateWorld(1, 2, 1);
+        entities[1].removeComponent(ComponentHealth.class);
+        entities[2].addComponent(new ComponentTag());
+        EcsEntity created = ecsWorld.createEntity(SNAPSHOT);
+        created.getComponent(ComponentName.class).name = "new";
+        created.markChanged(ComponentName.class);
+
+        assertTrue(decoder.apply(encoder.encodeDelta(decoder.getLastFrameId())));
+        client.update(1);
+        assertNull(decoder.getEntity(entities[0].getIndex()));
+        assertNull(client.getEntity(destroyedReplica.getIndex()));
+        assertFalse(decoder.getEntity(entities[1].getIndex()).hasComponent(ComponentHealth.class));
+        assertTrue(decoder.getEntity(entities[2].getIndex()).hasComponent(ComponentTag.class));
+        assertEquals("new", decoder.getEntity(created.getIndex()).getComponent(ComponentName.class).name);
+        assertEquals(3, decoder.getEntityCount());
+    }
+
+    @Test
+    void testDestroyedBeforeAcknowledged() {
+        ecsWorld.createEntities(SNAPSHOT, 3, null);
+        assertTrue(decoder.apply(encoder.encodeFull()));
+        encoder.acknowledge(decoder.getLastFrameId());
+        int baseline = decoder.getLastFrameId();
+
+        // 基线之后创建的实体随增量帧发出，确认尚未到达时被销毁
+        EcsEntity created = ecsWorld.createEntity(SNAPSHOT);
+        assertTrue(decoder.apply(encoder.encodeDelta(baseline)));
+        assertNotNull(decoder.getEntity(created.getIndex()));
+        ecsWorld.requestDestroyEntity(created);
+        updateWorld(1, 2, 1);
+
+        // 携带销毁信息的帧丢失，之后的帧仍需报告销毁
+        encoder.encodeDelta(baseline);
+        assertTrue(decoder.apply(encoder.encodeDelta(baseline)));
+        client.update(1);
+        assertNull(decoder.getEntity(created.getIndex()));
+        assertEquals(3, decoder.getEntityCount());
+        assertEquals(3, client.getAllEntity().size());
+    }
+
+    @Test
+    void testStaleAndUnknownBaseline() {
+        ecsWorld.createEntity(SNAPSHOT);
+        ByteBuffer first = encoder.encodeFull();
+        byte[] firstBytes = new byte[first.remaining()];
+        first.get(firstBytes);
+        assertTrue(decoder.apply(ByteBuffer.wrap(firstBytes)));
+        // 重复的帧被忽略
+        assertFalse(decoder.apply(ByteBuffer.wrap(firstBytes)));
+
+        // 基线不存在时退化为完整帧
+        ByteBuffer frame = encoder.encodeDelta(12345);
+        assertEquals(0, frame.get(0));
+        assertTrue(decoder.apply(frame));
+        assertEquals(1, decoder.getEntityCount());
+    }
+
+    @Test
+    void testSchemaMismatch() {
+        SnapshotDecoder mismatched = new SnapshotDecoder(client, SnapshotSchema.of(client));
+        ecsWorld.createEntity(SNAPSHOT);
+        ByteBuffer frame = encoder.encodeFull();
+        assertThrows(SnapshotFormatException.class, () -> mismatched.apply(frame));
+    }
+}
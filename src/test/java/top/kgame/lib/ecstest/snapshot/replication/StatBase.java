@@ -0,0 +1,8 @@
+package top.kgame.lib.ecstest.snapshot.replication;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+public abstract class StatBase implements EcsComponent {
+    public int base;
+    public float scale = 1f;
+}
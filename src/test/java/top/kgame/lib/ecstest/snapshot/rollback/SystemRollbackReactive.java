@@ -0,0 +1,27 @@
+package top.kgame.lib.ecstest.snapshot.rollback;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.extensions.system.EcsReactiveSystem;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+
+/**
+ * 记录进入和离开 ComponentTag 查询的实体
+ */
+public class SystemRollbackReactive extends EcsReactiveSystem<ComponentTag> {
+
+    @Override
+    protected void onEntityEntered(EcsEntity entity, ComponentTag component) {
+        WorldRollbackTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.record("entered", entity);
+        }
+    }
+
+    @Override
+    protected void onEntityLeft(EcsEntity entity) {
+        WorldRollbackTest.Context context = getWorld().getContext();
+        if (null != context) {
+            context.record("left", entity);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package top.kgame.lib.ecstest.snapshot.rollback;
+
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.annotation.TickRate;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.ComponentHealth;
+
+/**
+ * 每3毫秒扣一次血，只修改字段不调用markChanged，通过ComponentAccess声明写入
+ */
+@TickRate(3)
+@ComponentAccess(write = ComponentHealth.class)
+public class SystemRollbackTick extends EcsOneComponentUpdateSystem<ComponentHealth> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentHealth component) {
+        WorldRollbackTest.Context context = getWorld().getContext();
+        if (null != context) {
+            component.hp -= 1;
+            context.record("tick", entity);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package top.kgame.lib.ecstest.snapshot.rollback;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.annotation.ComponentAccess;
+import top.kgame.lib.ecs.extensions.system.EcsOneComponentUpdateSystem;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 在 SystemRollbackChanged 之后移动带标签的实体，只修改字段不调用markChanged，通过ComponentAccess声明写入，写入在下一帧才被变更过滤看到
+ */
+@ComponentAccess(write = ComponentPosition.class)
+public class SystemRollbackWriter extends EcsOneComponentUpdateSystem<ComponentPosition> {
+
+    @Override
+    protected void update(EcsEntity entity, ComponentPosition component) {
+        if (null != getWorld().getContext()) {
+            entity.getComponent(ComponentPosition.class).y++;
+        }
+    }
+
+    @Override
+    public Collection<Class<? extends EcsComponent>> getExtraRequirementComponent() {
+        return List.of(ComponentTag.class);
+    }
+}
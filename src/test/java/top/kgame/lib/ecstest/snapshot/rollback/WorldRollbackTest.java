@@ -0,0 +1,218 @@
+package top.kgame.lib.ecstest.snapshot.rollback;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.kgame.lib.ecs.EcsEntity;
+import top.kgame.lib.ecs.snapshot.SnapshotSchema;
+import top.kgame.lib.ecstest.util.EcsTestBase;
+import top.kgame.lib.ecstest.util.codec.ComponentNameCodec;
+import top.kgame.lib.ecstest.util.component.ComponentHealth;
+import top.kgame.lib.ecstest.util.component.ComponentName;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+import top.kgame.lib.ecstest.util.component.ComponentTag;
+import top.kgame.lib.ecstest.util.entity.EntityIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * World回滚测试
+ * 验证回滚后实体、组件、World时间和重新模拟时分配的实体ID与记录时一致，
+ * 重新模拟时TickRate、变更过滤和响应式System的行为与第一次模拟相同
+ */
+class WorldRollbackTest extends EcsTestBase {
+    private static final int SNAPSHOT = EntityIndex.SNAPSHOT.getId();
+    private final Context context = new Context();
+    private int[] ids;
+
+    @BeforeEach
+    @Override
+    protected void setUp() {
+        super.setUp();
+        ecsWorld.enableRollback(SnapshotSchema.forCheckpoint(ecsWorld).register(ComponentName.class, new ComponentNameCodec()), 8);
+    }
+
+    /**
+     * 每帧的输入只取决于时间，回滚后重新模拟时输入相同
+     */
+    @Override
+    protected void beforeUpdate(long currentTime, int interval) {
+        context.time = currentTime;
+        if (ids == null) {
+            return;
+        }
+        switch ((int) currentTime) {
+            case 2 -> ecsWorld.getEntity(ids[0]).addComponent(new ComponentTag());
+            case 3 -> move(ecsWorld.getEntity(ids[1]), 3);
+            // 销毁在本帧结束时执行，离开查询的记录在下一帧才被取出
+            case 4 -> ecsWorld.requestDestroyEntity(ecsWorld.getEntity(ids[0]));
+            case 5 -> {
+                ecsWorld.createEntity(SNAPSHOT);
+                ecsWorld.getEntity(ids[2]).addComponent(new ComponentTag());
+            }
+            case 7 -> move(ecsWorld.getEntity(ids[3]), 7);
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    protected void afterUpdate(long currentTime, int interval) {
+    }
+
+    private static void move(EcsEntity entity, int x) {
+        entity.getComponent(ComponentPosition.class).x = x;
+        entity.markChanged(ComponentPosition.class);
+    }
+
+    private List<String> state() {
+        List<String> result = new ArrayList<>();
+        for (EcsEntity entity : ecsWorld.getAllEntity()) {
+            ComponentPosition position = entity.getComponent(ComponentPosition.class);
+            result.add(entity.getIndex() + ":" + position.x + "," + position.y + ","
+                    + entity.getComponent(ComponentHealth.class).hp + "," + entity.hasComponent(ComponentTag.class));
+        }
+        result.sort(null);
+        return result;
+    }
+
+    @Test
+    void testRollbackRestoresState() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 300, (entity, i) -> {
+            entity.getComponent(ComponentPosition.class).x = i;
+            entity.getComponent(ComponentName.class).name = "unit" + i;
+        });
+        ecsWorld.update(1);
+        int destroyedId = entities[10].getIndex();
+        int taggedId = entities[20].getIndex();
+
+        move(entities[200], -1);
+        ecsWorld.destroyEntities(new int[]{destroyedId});
+        ecsWorld.getEntity(taggedId).addComponent(new ComponentTag());
+        int createdId = ecsWorld.createEntity(SNAPSHOT).getIndex();
+        ecsWorld.update(2);
+
+        assertTrue(ecsWorld.rollback(1));
+        assertEquals(1, ecsWorld.getCurrentTime());
+        assertEquals(300, ecsWorld.getAllEntity().size());
+        for (int i = 0; i < entities.length; i++) {
+            EcsEntity restored = ecsWorld.getEntity(entities[i].getIndex());
+            assertNotNull(restored);
+            assertEquals(i, restored.getComponent(ComponentPosition.class).x);
+            assertEquals("unit" + i, restored.getComponent(ComponentName.class).name);
+        }
+        assertFalse(ecsWorld.getEntity(taggedId).hasComponent(ComponentTag.class));
+
+        // 重新模拟时分配的实体ID与第一次模拟一致
+        assertEquals(createdId, ecsWorld.createEntity(SNAPSHOT).getIndex());
+        ecsWorld.update(2);
+        assertFalse(ecsWorld.rollback(3));
+    }
+
+    @Test
+    void testChangesAfterRollbackRecorded() {
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 500, null);
+        int id = entities[450].getIndex();
+        float hp = entities[450].getComponent(ComponentHealth.class).hp;
+        ecsWorld.update(1);
+        move(ecsWorld.getEntity(id), 5);
+        ecsWorld.update(2);
+
+        assertTrue(ecsWorld.rollback(1));
+        assertEquals(0, ecsWorld.getEntity(id).getComponent(ComponentPosition.class).x);
+        move(ecsWorld.getEntity(id), 7);
+        ecsWorld.update(2);
+        ecsWorld.getEntity(id).getComponent(ComponentHealth.class).hp = hp + 1;
+        ecsWorld.getEntity(id).markChanged(ComponentHealth.class);
+        ecsWorld.update(3);
+
+        assertTrue(ecsWorld.rollback(2));
+        assertEquals(7, ecsWorld.getEntity(id).getComponent(ComponentPosition.class).x);
+        assertEquals(hp, ecsWorld.getEntity(id).getComponent(ComponentHealth.class).hp);
+        assertTrue(ecsWorld.rollback(1));
+        assertEquals(0, ecsWorld.getEntity(id).getComponent(ComponentPosition.class).x);
+    }
+
+    @Test
+    void testRollbackToInitialState() {
+        ecsWorld.createEntities(SNAPSHOT, 5, null);
+        ecsWorld.update(1);
+        assertTrue(ecsWorld.rollback(-1));
+        assertTrue(ecsWorld.getAllEntity().isEmpty());
+        ecsWorld.update(1);
+    }
+
+    @Test
+    void testCapacityLimit() {
+        for (int time = 1; time <= 10; time++) {
+            ecsWorld.createEntity(SNAPSHOT);
+            ecsWorld.update(time);
+        }
+        assertFalse(ecsWorld.rollback(2));
+        assertTrue(ecsWorld.rollback(3));
+        assertEquals(3, ecsWorld.getAllEntity().size());
+    }
+
+    @Test
+    void testSystemWriteRestored() {
+        ecsWorld.setContext(context);
+        EcsEntity entity = ecsWorld.createEntity(SNAPSHOT);
+        int id = entity.getIndex();
+        entity.addComponent(new ComponentTag());
+        // SystemRollbackWriter 和 SystemRollbackTick 只修改字段，不调用markChanged，写入组件由ComponentAccess声明
+        updateWorld(1, 6, 1);
+        assertEquals(5, ecsWorld.getEntity(id).getComponent(ComponentPosition.class).y);
+        assertEquals(98f, ecsWorld.getEntity(id).getComponent(ComponentHealth.class).hp);
+
+        assertTrue(ecsWorld.rollback(3));
+        assertEquals(3, ecsWorld.getEntity(id).getComponent(ComponentPosition.class).y);
+        assertEquals(99f, ecsWorld.getEntity(id).getComponent(ComponentHealth.class).hp);
+    }
+
+    @Test
+    void testResimulationDeterministic() {
+        ecsWorld.setContext(context);
+        EcsEntity[] entities = ecsWorld.createEntities(SNAPSHOT, 4, null);
+        ids = new int[entities.length];
+        for (int i = 0; i < entities.length; i++) {
+            ids[i] = entities[i].getIndex();
+        }
+        updateWorld(1, 5, 1);
+        List<String> stateAt4 = state();
+        context.log.clear();
+        updateWorld(5, 11, 1);
+        List<String> expectedLog = new ArrayList<>(context.log);
+        List<String> expectedState = state();
+        // 第一次模拟覆盖了各类跨帧状态
+        assertTrue(expectedLog.contains("5 left " + ids[0]));
+        assertTrue(expectedLog.contains("5 entered " + ids[2]));
+        assertTrue(expectedLog.contains("6 changed " + ids[2]));
+        assertTrue(expectedLog.contains("7 tick " + ids[1]));
+        assertFalse(expectedLog.contains("6 tick " + ids[1]));
+
+        assertTrue(ecsWorld.rollback(4));
+        assertEquals(stateAt4, state());
+        context.log.clear();
+        updateWorld(5, 11, 1);
+        assertEquals(expectedLog, context.log);
+        assertEquals(expectedState, state());
+
+        // 回滚到没有结构变化的帧，恢复的行不应被视为全部变更
+        assertTrue(ecsWorld.rollback(7));
+        context.log.clear();
+        updateWorld(8, 11, 1);
+        assertEquals(expectedLog.stream().filter(entry -> Long.parseLong(entry.split(" ")[0]) >= 8).toList(), context.log);
+        assertEquals(expectedState, state());
+    }
+
+    public static class Context {
+        final List<String> log = new ArrayList<>();
+        long time;
+
+        void record(String event, EcsEntity entity) {
+            log.add(time + " " + event + " " + entity.getIndex());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package top.kgame.lib.ecstest.util.codec;
+
+import top.kgame.lib.ecs.snapshot.ComponentCodec;
+import top.kgame.lib.ecstest.util.component.ComponentName;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ComponentNameCodec implements ComponentCodec<ComponentName> {
+    @Override
+    public void encode(ComponentName component, ByteBuffer buffer) {
+        byte[] bytes = component.name.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    @Override
+    public ComponentName decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        ComponentName component = new ComponentName();
+        component.name = new String(bytes, StandardCharsets.UTF_8);
+        return component;
+    }
+}
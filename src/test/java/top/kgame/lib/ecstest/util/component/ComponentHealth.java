@@ -0,0 +1,8 @@
+package top.kgame.lib.ecstest.util.component;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+public class ComponentHealth implements EcsComponent {
+    public float hp = 100f;
+    public boolean dead;
+}
@@ -0,0 +1,10 @@
+package top.kgame.lib.ecstest.util.component;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+/**
+ * 包含引用类型字段，需要注册编解码器才会同步
+ */
+public class ComponentName implements EcsComponent {
+    public String name = "";
+}
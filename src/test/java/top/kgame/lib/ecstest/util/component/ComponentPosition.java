@@ -0,0 +1,8 @@
+package top.kgame.lib.ecstest.util.component;
+
+import top.kgame.lib.ecs.EcsComponent;
+
+public class ComponentPosition implements EcsComponent {
+    public int x;
+    public int y;
+}
@@ -0,0 +1,8 @@
+package top.kgame.lib.ecstest.util.component;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.annotation.TagComponent;
+
+@TagComponent
+public class ComponentTag implements EcsComponent {
+}
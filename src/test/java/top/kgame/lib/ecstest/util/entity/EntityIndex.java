@@ -6,6 +6,11 @@ public enum EntityIndex {
     E12(3),
     E23(4),
     E123(5),
+    POOLED(6),
+    POSITION(7),
+    TEAM(8),
+    REACTIVE(9),
+    SNAPSHOT(10),
     ;
     private final int id;
     EntityIndex(int id) {
@@ -0,0 +1,23 @@
+package top.kgame.lib.ecstest.util.entity;
+
+import top.kgame.lib.ecs.EcsComponent;
+import top.kgame.lib.ecs.extensions.entity.BaseEntityFactory;
+import top.kgame.lib.ecstest.util.component.ComponentHealth;
+import top.kgame.lib.ecstest.util.component.ComponentName;
+import top.kgame.lib.ecstest.util.component.ComponentPosition;
+
+import java.util.Collection;
+import java.util.List;
+
+public class EntitySnapshotFactory extends BaseEntityFactory {
+
+    @Override
+    public int typeId() {
+        return EntityIndex.SNAPSHOT.getId();
+    }
+
+    @Override
+    protected Collection<EcsComponent> generateComponent() {
+        return List.of(new ComponentPosition(), new ComponentHealth(), new ComponentName());
+    }
+}